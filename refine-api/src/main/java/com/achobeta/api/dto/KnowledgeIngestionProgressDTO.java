@@ -0,0 +1,53 @@
+package com.achobeta.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * @Desc : 知识库入库任务进度
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class KnowledgeIngestionProgressDTO {
+
+    private boolean running;
+
+    /**
+     * 任务类型：sync（目录增量同步）或 upload（上传文档）
+     */
+    private String job;
+
+    private LocalDateTime startedAt;
+
+    private LocalDateTime finishedAt;
+
+    private int documentsTotal;
+
+    private int documentsDone;
+
+    private int documentsFailed;
+
+    private long segmentsEmbedded;
+
+    private long segmentsWritten;
+
+    private long bytesProcessed;
+
+    /**
+     * 写入吞吐（片段/秒）
+     */
+    private double segmentsPerSecond;
+
+    /**
+     * 处理吞吐（MB/秒）
+     */
+    private double megabytesPerSecond;
+
+    private String lastError;
+}
@@ -1,8 +1,11 @@
 package com.achobeta.config;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.ThreadPoolExecutor;
@@ -15,13 +18,10 @@ public class AiThreadPoolConfig {
     private int aiMaxConcurrency;
 
     @Bean
+    @ConditionalOnThreading(Threading.PLATFORM)
     public ThreadPoolTaskExecutor aiExclusiveThreadPool() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        int cpuCore = Runtime.getRuntime().availableProcessors();
-
-        int baseCoreSize = cpuCore * 2 + 1;
-
-        int corePoolSize = Math.max(baseCoreSize, aiMaxConcurrency);
+        int corePoolSize = corePoolSize();
 
         executor.setCorePoolSize(corePoolSize);
 
@@ -41,8 +41,32 @@ public class AiThreadPoolConfig {
         // 当线程池和队列都满时，让提交任务的线程自己执行，避免任务丢失
         executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
 
+        executor.setTaskDecorator(new ContextCopyingTaskDecorator());
+
         executor.initialize();//初始化
         return executor;
     }
 
+    /**
+     * 虚拟线程模式：不再维护线程池，只保留与平台线程池相同的并发上限，
+     * 超出上限时提交方阻塞等待，与CallerRunsPolicy一样起到背压作用，避免打满DashScope
+     */
+    @Bean(name = "aiExclusiveThreadPool")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public SimpleAsyncTaskExecutor virtualAiExclusiveThreadPool() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("ai-exclusive-thread-");
+        executor.setVirtualThreads(true);
+        executor.setConcurrencyLimit(corePoolSize() * 2);
+        executor.setTaskDecorator(new ContextCopyingTaskDecorator());
+        return executor;
+    }
+
+    private int corePoolSize() {
+        int cpuCore = Runtime.getRuntime().availableProcessors();
+
+        int baseCoreSize = cpuCore * 2 + 1;
+
+        return Math.max(baseCoreSize, aiMaxConcurrency);
+    }
+
 }
@@ -1,7 +1,10 @@
 package com.achobeta.config;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 
@@ -12,6 +15,7 @@ public class AsyncConfig {
      * 定义异步线程池
      */
     @Bean(name = "mistakeExecutor")
+    @ConditionalOnThreading(Threading.PLATFORM)
     public Executor mistakeExecutor() {
         // 根据实际需求调整核心线程数、队列大小等参数
         return Executors.newFixedThreadPool(5, r -> {
@@ -21,4 +25,16 @@ public class AsyncConfig {
             return thread;
         });
     }
-}
\ No newline at end of file
+
+    /**
+     * 虚拟线程模式下的异步线程池，错题记录只是阻塞写库，每个任务一个虚拟线程即可
+     */
+    @Bean(name = "mistakeExecutor")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public Executor virtualMistakeExecutor() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("mistake-record-thread-");
+        executor.setVirtualThreads(true);
+        executor.setTaskDecorator(new ContextCopyingTaskDecorator());
+        return executor;
+    }
+}
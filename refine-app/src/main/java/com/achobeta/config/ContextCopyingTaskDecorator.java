@@ -0,0 +1,45 @@
+package com.achobeta.config;
+
+import com.achobeta.types.common.UserContext;
+import org.slf4j.MDC;
+import org.springframework.core.task.TaskDecorator;
+
+import java.util.Map;
+
+/**
+ * 把提交线程的MDC(traceId)与UserContext复制到执行线程，平台线程池与虚拟线程执行器共用。
+ * 执行结束后恢复执行线程原有的上下文，避免CallerRunsPolicy在调用方线程执行时把调用方的上下文清掉
+ */
+public class ContextCopyingTaskDecorator implements TaskDecorator {
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        // 必须在提交时获取，否则等异步线程执行的时候父线程的MDC可能已经被清空
+        Map<String, String> context = MDC.getCopyOfContextMap();
+        String userId = UserContext.getUserId();
+        return () -> {
+            Map<String, String> previousContext = MDC.getCopyOfContextMap();
+            String previousUserId = UserContext.getUserId();
+            restore(context, userId);
+            try {
+                runnable.run();
+            } finally {
+                restore(previousContext, previousUserId);
+            }
+        };
+    }
+
+    private static void restore(Map<String, String> context, String userId) {
+        if (context != null) {
+            MDC.setContextMap(context);
+        } else {
+            MDC.clear();
+        }
+        if (userId != null) {
+            UserContext.setUserId(userId);
+        } else {
+            UserContext.clear();
+        }
+    }
+
+}
@@ -1,7 +1,11 @@
 package com.achobeta.config;
 
+import com.achobeta.infrastructure.gateway.CachingEmbeddingModel;
+import com.achobeta.infrastructure.gateway.EmbeddingCache;
 import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.community.model.dashscope.QwenEmbeddingModel;
+import jakarta.annotation.Resource;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -19,6 +23,12 @@ public class EmbeddingModelConfig {
     @Value("${langchain4j.community.dashscope.embedding-model.model-name}")
     private String modelName;
 
+    @Value("${langchain4j.community.dashscope.embedding-model.base-url:}")
+    private String baseUrl;
+
+    @Resource
+    private EmbeddingCache embeddingCache;
+
     /**
      * 创建 DashScope 嵌入模型 Bean
      * 
@@ -26,9 +36,12 @@ public class EmbeddingModelConfig {
      */
     @Bean("qwenEmbeddingModel")
     public EmbeddingModel qwenEmbeddingModel() {
-        return QwenEmbeddingModel.builder()
+        QwenEmbeddingModel embeddingModel = QwenEmbeddingModel.builder()
                 .apiKey(apiKey)
                 .modelName(modelName)
+                .baseUrl(StringUtils.isBlank(baseUrl) ? null : baseUrl)
                 .build();
+        // 相同文本（重复入库的文档片段、重复的检索问题）直接命中向量缓存
+        return new CachingEmbeddingModel(embeddingModel, embeddingCache, "dashscope:" + modelName);
     }
 }
\ No newline at end of file
@@ -5,6 +5,7 @@ import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.chat.listener.ChatModelListener;
 import jakarta.annotation.Resource;
 import lombok.Data;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -20,6 +21,11 @@ public class QwenModelConfig {
 
     private String apiKey;
 
+    /**
+     * 为空时使用SDK默认地址
+     */
+    private String baseUrl;
+
     @Resource
     private ChatModelListener chatModelListener;
 
@@ -28,6 +34,7 @@ public class QwenModelConfig {
         return QwenChatModel.builder()
                 .modelName(modelName)
                 .apiKey(apiKey)
+                .baseUrl(StringUtils.isBlank(baseUrl) ? null : baseUrl)
                 .listeners(List.of(chatModelListener))
                 .build();
     }
@@ -1,15 +1,16 @@
 package com.achobeta.config;
 
 import lombok.extern.slf4j.Slf4j;
-import org.slf4j.MDC;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
-import java.util.Map;
 import java.util.concurrent.*;
 
 @Slf4j
@@ -18,7 +19,11 @@ import java.util.concurrent.*;
 @EnableConfigurationProperties(ThreadPoolConfigProperties.class)
 public class ThreadPoolConfig {
 
-    @Bean
+    /**
+     * 平台线程池，同时以taskExecutor的名字作为@Async的默认执行器
+     */
+    @Bean(name = {"threadPoolExecutor", "taskExecutor"})
+    @ConditionalOnThreading(Threading.PLATFORM)
     @ConditionalOnMissingBean(ThreadPoolExecutor.class)
     public ThreadPoolTaskExecutor threadPoolExecutor(ThreadPoolConfigProperties properties) {
         // 实例化策略
@@ -40,47 +45,9 @@ public class ThreadPoolConfig {
                 handler = new ThreadPoolExecutor.AbortPolicy();
                 break;
         }
-        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor() {
-            /**
-             * 所有线程都会委托给这个execute方法，在这个方法中我们把父线程的MDC内容赋值给子线程
-             */
-            @Override
-            public void execute(Runnable runnable) {
-                // 获取父线程MDC中的内容，必须在run方法之前，否则等异步线程执行的时候有可能MDC里面的值已经被清空了，这个时候就会返回null
-                Map<String, String> context = MDC.getCopyOfContextMap();
-                super.execute(() -> {
-                    // 将父线程的MDC内容传给子线程
-                    if (context != null) {
-                        MDC.setContextMap(context);
-                    }
-                    try {
-                        // 执行异步操作
-                        runnable.run();
-                    } finally {
-                        // 清空MDC内容
-                        MDC.clear();
-                    }
-                });
-            }
-            @Override
-            public <T> Future<T> submit(Callable<T> task) {
-                // 获取父线程MDC中的内容，必须在run方法之前，否则等异步线程执行的时候有可能MDC里面的值已经被清空了，这个时候就会返回null
-                Map<String, String> context = MDC.getCopyOfContextMap();
-                return super.submit(() -> {
-                    // 将父线程的MDC内容传给子线程
-                    if (context != null) {
-                        MDC.setContextMap(context);
-                    }
-                    try {
-                        // 执行异步操作
-                        return task.call();
-                    } finally {
-                        // 清空MDC内容
-                        MDC.clear();
-                    }
-                });
-            }
-        };
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        // 所有任务都会经过装饰器，把父线程的MDC与UserContext传给子线程
+        executor.setTaskDecorator(new ContextCopyingTaskDecorator());
         executor.setCorePoolSize(properties.getCorePoolSize());
         // 配置最大线程数
         executor.setMaxPoolSize(properties.getMaxPoolSize());
@@ -99,4 +66,16 @@ public class ThreadPoolConfig {
         return executor;
     }
 
+    /**
+     * 虚拟线程模式(spring.threads.virtual.enabled=true)：每个任务一个虚拟线程，不再需要按阻塞IO调线程池大小
+     */
+    @Bean(name = {"threadPoolExecutor", "taskExecutor"})
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public SimpleAsyncTaskExecutor virtualThreadPoolExecutor() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("ab-polaris-service-");
+        executor.setVirtualThreads(true);
+        executor.setTaskDecorator(new ContextCopyingTaskDecorator());
+        return executor;
+    }
+
 }
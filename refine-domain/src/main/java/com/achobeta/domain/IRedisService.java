@@ -52,6 +52,15 @@ public interface IRedisService {
      */
     <T> RBlockingQueue<T> getBlockingQueue(String key);
 
+    /**
+     * 加锁双端队列
+     *
+     * @param key 键
+     * @param <T> 泛型
+     * @return 队列
+     */
+    <T> RBlockingDeque<T> getBlockingDeque(String key);
+
     /**
      * 延迟队列
      *
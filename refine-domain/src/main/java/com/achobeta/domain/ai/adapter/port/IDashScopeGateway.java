@@ -0,0 +1,33 @@
+package com.achobeta.domain.ai.adapter.port;
+
+import com.alibaba.dashscope.aigc.generation.GenerationParam;
+import com.alibaba.dashscope.aigc.generation.GenerationResult;
+import com.alibaba.dashscope.embeddings.TextEmbeddingParam;
+import com.alibaba.dashscope.embeddings.TextEmbeddingResult;
+import com.alibaba.dashscope.exception.InputRequiredException;
+import com.alibaba.dashscope.exception.NoApiKeyException;
+import reactor.core.publisher.Flux;
+
+/**
+ * DashScope接入网关
+ * <p>
+ * 持有复用的SDK客户端及其连接池，调用方不再每次调用都新建Generation/TextEmbedding
+ */
+public interface IDashScopeGateway {
+
+    /**
+     * 文本生成（阻塞）
+     */
+    GenerationResult call(GenerationParam param) throws NoApiKeyException, InputRequiredException;
+
+    /**
+     * 文本生成（流式），参数异常以错误信号返回
+     */
+    Flux<GenerationResult> streamCall(GenerationParam param);
+
+    /**
+     * 文本向量
+     */
+    TextEmbeddingResult embed(TextEmbeddingParam param) throws NoApiKeyException;
+
+}
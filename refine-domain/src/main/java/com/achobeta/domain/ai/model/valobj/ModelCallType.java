@@ -0,0 +1,21 @@
+package com.achobeta.domain.ai.model.valobj;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * @Desc : 大模型调用类型，用于按类型划分集群级并发配额
+ */
+@Getter
+@AllArgsConstructor
+public enum ModelCallType {
+
+    CHAT("chat", "一次性对话/生成调用"),
+    STREAM("stream", "流式对话调用"),
+    EMBEDDING("embedding", "文本向量化调用"),
+    ;
+
+    private final String code;
+    private final String info;
+
+}
@@ -1,6 +1,8 @@
 package com.achobeta.domain.ai.service;
 
 import com.achobeta.domain.conversation.model.entity.ConversationMessageEntity;
+import com.achobeta.domain.conversation.model.valobj.ConversationMemoryVO;
+import reactor.core.publisher.Flux;
 
 import java.util.List;
 import java.util.function.Consumer;
@@ -46,4 +48,44 @@ public interface IAiService {
      */
     void aiSolveQuestionWithContext(String questionId, String question, List<ConversationMessageEntity> conversationHistory, Consumer<String> contentCallback);
 
+    /**
+     * AI解答问题（无上下文，响应式）
+     * <p>
+     * 订阅时才发起调用，片段在模型推送时直接下发，不占用调用线程
+     *
+     * @param question 问题内容
+     * @return 回复片段流
+     */
+    Flux<String> aiSolveQuestionStream(String question);
+
+    /**
+     * AI聊天（响应式）
+     *
+     * @param question 问题内容
+     * @return 回复片段流
+     */
+    Flux<String> aiChatStream(String question);
+
+    /**
+     * AI解答问题（带上下文，响应式）
+     *
+     * @param questionId 错题ID（作为会话ID）
+     * @param question 问题内容
+     * @param conversationHistory 会话历史
+     * @return 回复片段流
+     */
+    Flux<String> aiSolveQuestionWithContextStream(String questionId, String question, List<ConversationMessageEntity> conversationHistory);
+
+    /**
+     * AI解答问题（带会话记忆，响应式）
+     * <p>
+     * 较早对话的摘要并入系统提示词，只原样发送预算内的最近几轮
+     *
+     * @param questionId 错题ID（作为会话ID）
+     * @param question 问题内容
+     * @param memory 会话记忆
+     * @return 回复片段流
+     */
+    Flux<String> aiSolveQuestionWithMemoryStream(String questionId, String question, ConversationMemoryVO memory);
+
 }
@@ -0,0 +1,42 @@
+package com.achobeta.domain.ai.service;
+
+import com.achobeta.domain.ai.model.valobj.ModelCallType;
+import reactor.core.publisher.Flux;
+
+import java.util.function.Supplier;
+
+/**
+ * 大模型调用准入控制
+ * <p>
+ * 所有DashScope/LangChain4j调用都应经过这里，保证整个集群同时在途的模型调用数不超过账号配额
+ */
+public interface IModelCallLimiter {
+
+    /**
+     * 获取许可后执行一次阻塞调用，调用结束即释放许可
+     *
+     * @param type 调用类型
+     * @param call 实际调用
+     * @return 调用结果
+     * @throws E 实际调用抛出的异常原样抛出
+     */
+    <T, E extends Exception> T execute(ModelCallType type, ModelCall<T, E> call) throws E;
+
+    /**
+     * 订阅时获取许可，流完成、出错或被取消时释放许可
+     *
+     * @param type 调用类型
+     * @param call 创建实际的流
+     * @return 受准入控制的流
+     */
+    <T> Flux<T> executeStream(ModelCallType type, Supplier<Flux<T>> call);
+
+    /**
+     * 可抛出受检异常的模型调用
+     */
+    @FunctionalInterface
+    interface ModelCall<T, E extends Exception> {
+        T call() throws E;
+    }
+
+}
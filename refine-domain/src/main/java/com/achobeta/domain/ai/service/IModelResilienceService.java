@@ -0,0 +1,35 @@
+package com.achobeta.domain.ai.service;
+
+import reactor.core.publisher.Flux;
+
+import java.util.function.Function;
+
+/**
+ * 模型调用容错：调用超时、按模型熔断、备用模型降级以及流式对冲请求
+ */
+public interface IModelResilienceService {
+
+    /**
+     * 带超时和熔断的阻塞调用，主模型失败或熔断时改用备用模型重试一次
+     *
+     * @param model         主模型
+     * @param fallbackModel 备用模型，为null时不降级
+     * @param call          以模型名发起的实际调用
+     * @return 调用结果
+     */
+    <T> T call(String model, String fallbackModel, Function<String, T> call);
+
+    /**
+     * 带首包超时、片段间隔超时和熔断的流式调用
+     * <p>
+     * 指定对冲模型时，主模型在p95首包延迟内还没有返回片段，就向对冲模型再发一次请求，
+     * 谁先返回片段就用谁，另一个被取消
+     *
+     * @param model      主模型
+     * @param hedgeModel 对冲模型，为null时不对冲
+     * @param call       以模型名创建实际的流
+     * @return 片段流
+     */
+    <T> Flux<T> stream(String model, String hedgeModel, Function<String, Flux<T>> call);
+
+}
@@ -0,0 +1,40 @@
+package com.achobeta.domain.ai.service;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import reactor.core.publisher.Flux;
+
+import java.util.function.Supplier;
+
+/**
+ * 相同模型请求合并（single-flight）
+ * <p>
+ * 同一时刻key相同的调用只会真正请求一次上游，其余调用方共享同一个结果或同一条片段流
+ */
+public interface ISingleFlightService {
+
+    /**
+     * 合并相同的阻塞调用，异常不会被缓存，只传给同一批等待的调用方
+     *
+     * @param key  请求指纹，见 {@link #key(String, String...)}
+     * @param call 实际调用
+     * @return 调用结果
+     */
+    <T> T execute(String key, Supplier<T> call);
+
+    /**
+     * 合并相同的流式调用，后加入的订阅者会先收到已产生的片段；所有订阅者都取消后上游随之取消
+     *
+     * @param key  请求指纹
+     * @param call 创建实际的流
+     * @return 共享的片段流
+     */
+    <T> Flux<T> executeStream(String key, Supplier<Flux<T>> call);
+
+    /**
+     * 按模型与消息内容生成请求指纹
+     */
+    static String key(String model, String... messages) {
+        return DigestUtils.sha256Hex(model + '\u0000' + String.join("\u0000", messages));
+    }
+
+}
@@ -0,0 +1,21 @@
+package com.achobeta.domain.ai.service;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * 合并模型输出的细碎片段
+ * <p>
+ * 增量输出的片段通常只有一两个字，逐个写出会让每个片段都触发一次写入和flush；
+ * 在模型流与SSE之间按片段数或时间窗口攒批，减少单条流的写次数
+ */
+public interface IStreamCoalescer {
+
+    /**
+     * 合并片段，片段顺序与内容不变，单个片段的额外延迟不超过配置的时间窗口
+     *
+     * @param fragments 原始片段流
+     * @return 合并后的片段流
+     */
+    Flux<String> coalesce(Flux<String> fragments);
+
+}
@@ -0,0 +1,167 @@
+package com.achobeta.domain.ai.service.impl;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @Desc : 单个调用类型的自适应并发上限（AIMD）
+ * <p>
+ * 每攒满一个窗口的样本评估一次：限流/ApiException比例超阈值或延迟明显劣化时按比例收缩，
+ * 窗口内并发曾打满且延迟正常时加一试探；p50与历史基线比较（类似TCP Vegas），p99与尾延迟阈值比较
+ */
+class AdaptiveConcurrencyLimit {
+
+    /**
+     * 调用结果
+     */
+    enum Outcome {
+        /** 正常返回，延迟计入窗口 */
+        SUCCESS,
+        /** 被限流或服务端异常，计入过载比例 */
+        OVERLOADED,
+        /** 与服务端负载无关的失败，只释放并发不计样本 */
+        IGNORED
+    }
+
+    /**
+     * 上限调整原因，作为指标标签
+     */
+    enum Reason {
+        THROTTLED, LATENCY, TAIL_LATENCY, PROBE
+    }
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int windowSize;
+    private final double latencyTolerance;
+    private final long tailLatencyNanos;
+    private final double overloadRateThreshold;
+    private final double backoffRatio;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    @Getter
+    private volatile double limit;
+
+    /**
+     * 窗口内并发是否打满过，只有打满过才有必要加一试探
+     */
+    private volatile boolean saturated;
+
+    private final long[] latencies;
+    private int successCount;
+    private int overloadCount;
+
+    /**
+     * 无排队时的延迟估计，取历史p50的下沿并缓慢上浮，适应模型本身变慢的情况
+     */
+    private double baselineNanos;
+
+    AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, int windowSize,
+                             double latencyTolerance, long tailLatencyMillis,
+                             double overloadRateThreshold, double backoffRatio) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.windowSize = windowSize;
+        this.latencyTolerance = latencyTolerance;
+        this.tailLatencyNanos = TimeUnit.MILLISECONDS.toNanos(tailLatencyMillis);
+        this.overloadRateThreshold = overloadRateThreshold;
+        this.backoffRatio = backoffRatio;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.latencies = new long[windowSize];
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * 尝试占用一个并发名额，已达上限时立即返回false，不排队
+     */
+    boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                saturated = true;
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                if (current + 1 >= (int) limit) {
+                    saturated = true;
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 释放名额并记录样本
+     *
+     * @return 本次触发了上限调整时返回原因，否则返回null
+     */
+    Reason release(long latencyNanos, Outcome outcome) {
+        inFlight.decrementAndGet();
+        if (outcome == Outcome.IGNORED) {
+            return null;
+        }
+        synchronized (this) {
+            if (outcome == Outcome.SUCCESS) {
+                latencies[successCount++] = latencyNanos;
+            } else {
+                overloadCount++;
+            }
+            if (successCount + overloadCount < windowSize) {
+                return null;
+            }
+            Reason reason = evaluate();
+            successCount = 0;
+            overloadCount = 0;
+            saturated = false;
+            return reason;
+        }
+    }
+
+    private Reason evaluate() {
+        double overloadRate = overloadCount / (double) (successCount + overloadCount);
+        if (overloadRate > overloadRateThreshold) {
+            return decrease(Reason.THROTTLED);
+        }
+        if (successCount == 0) {
+            return null;
+        }
+
+        long[] sorted = Arrays.copyOf(latencies, successCount);
+        Arrays.sort(sorted);
+        long p50 = sorted[(sorted.length - 1) / 2];
+        long p99 = sorted[(int) Math.ceil(sorted.length * 0.99) - 1];
+
+        baselineNanos = baselineNanos == 0 || p50 < baselineNanos
+                ? p50
+                : baselineNanos * 0.95 + p50 * 0.05;
+
+        if (p99 > tailLatencyNanos) {
+            return decrease(Reason.TAIL_LATENCY);
+        }
+        if (p50 > baselineNanos * latencyTolerance) {
+            return decrease(Reason.LATENCY);
+        }
+        if (saturated && limit < maxLimit) {
+            limit = Math.min(maxLimit, limit + 1);
+            return Reason.PROBE;
+        }
+        return null;
+    }
+
+    private Reason decrease(Reason reason) {
+        double next = Math.max(minLimit, limit * backoffRatio);
+        if (next == limit) {
+            return null;
+        }
+        limit = next;
+        return reason;
+    }
+
+}
@@ -0,0 +1,201 @@
+package com.achobeta.domain.ai.service.impl;
+
+import com.achobeta.domain.ai.model.valobj.ModelCallType;
+import com.achobeta.domain.ai.service.IModelCallLimiter;
+import com.achobeta.types.enums.GlobalServiceStatusCode;
+import com.achobeta.types.exception.AppException;
+import com.alibaba.dashscope.exception.ApiException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SignalType;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * @Desc : 自适应并发控制，位于集群级准入控制之前
+ * <p>
+ * 按观测到的延迟和限流比例动态调整本节点每类调用的在途上限，超出上限的请求立即拒绝，
+ * 不再排队拖到调用方的超时；流式调用以首包延迟作为样本，避免回答长短干扰判断
+ */
+@Slf4j
+@Primary
+@Service
+@ConfigurationProperties(prefix = "ai.dashscope.adaptive")
+public class AdaptiveModelCallLimiter implements IModelCallLimiter {
+
+    @Resource
+    private DistributedModelCallLimiter distributedModelCallLimiter;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Setter
+    private boolean enabled = true;
+
+    @Setter
+    private int initialLimit = 8;
+
+    @Setter
+    private int minLimit = 1;
+
+    @Setter
+    private int maxLimit = 32;
+
+    /**
+     * 每个评估窗口的样本数
+     */
+    @Setter
+    private int windowSize = 20;
+
+    /**
+     * p50超过基线的倍数即视为排队劣化
+     */
+    @Setter
+    private double latencyTolerance = 2.0;
+
+    /**
+     * p99尾延迟上限（毫秒），应明显小于调用方的超时时间
+     */
+    @Setter
+    private long tailLatency = 20_000;
+
+    /**
+     * 窗口内限流/ApiException比例阈值
+     */
+    @Setter
+    private double overloadRateThreshold = 0.1;
+
+    /**
+     * 乘性减小的比例
+     */
+    @Setter
+    private double backoffRatio = 0.7;
+
+    private final Map<ModelCallType, AdaptiveConcurrencyLimit> limits = new EnumMap<>(ModelCallType.class);
+
+    private final Map<ModelCallType, Counter> shedCounters = new EnumMap<>(ModelCallType.class);
+
+    @PostConstruct
+    public void init() {
+        for (ModelCallType type : ModelCallType.values()) {
+            AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(initialLimit, Math.max(1, minLimit), maxLimit,
+                    windowSize, latencyTolerance, tailLatency, overloadRateThreshold, backoffRatio);
+            limits.put(type, limit);
+
+            Gauge.builder("ai.model.concurrency.limit", limit, AdaptiveConcurrencyLimit::getLimit)
+                    .description("模型调用自适应并发上限")
+                    .tag("type", type.getCode())
+                    .register(meterRegistry);
+            Gauge.builder("ai.model.concurrency.inflight", limit, AdaptiveConcurrencyLimit::getInFlight)
+                    .description("模型调用在途数")
+                    .tag("type", type.getCode())
+                    .register(meterRegistry);
+            shedCounters.put(type, Counter.builder("ai.model.concurrency.shed")
+                    .description("超出自适应上限被直接拒绝的调用数")
+                    .tag("type", type.getCode())
+                    .register(meterRegistry));
+        }
+    }
+
+    @Override
+    public <T, E extends Exception> T execute(ModelCallType type, ModelCall<T, E> call) throws E {
+        if (!enabled) {
+            return distributedModelCallLimiter.execute(type, call);
+        }
+        AdaptiveConcurrencyLimit limit = admit(type);
+        long start = System.nanoTime();
+        AdaptiveConcurrencyLimit.Outcome outcome = AdaptiveConcurrencyLimit.Outcome.IGNORED;
+        try {
+            T result = distributedModelCallLimiter.execute(type, call);
+            outcome = AdaptiveConcurrencyLimit.Outcome.SUCCESS;
+            return result;
+        } catch (RuntimeException e) {
+            outcome = classify(e);
+            throw e;
+        } finally {
+            release(type, limit, System.nanoTime() - start, outcome);
+        }
+    }
+
+    @Override
+    public <T> Flux<T> executeStream(ModelCallType type, Supplier<Flux<T>> call) {
+        if (!enabled) {
+            return distributedModelCallLimiter.executeStream(type, call);
+        }
+        return Flux.defer(() -> {
+            AdaptiveConcurrencyLimit limit = admit(type);
+            long start = System.nanoTime();
+            AtomicLong firstElementNanos = new AtomicLong(-1);
+            AtomicReference<Throwable> error = new AtomicReference<>();
+            return distributedModelCallLimiter.executeStream(type, call)
+                    .doOnNext(item -> firstElementNanos.compareAndSet(-1, System.nanoTime() - start))
+                    .doOnError(error::set)
+                    .doFinally(signal -> {
+                        long latency = firstElementNanos.get();
+                        AdaptiveConcurrencyLimit.Outcome outcome;
+                        if (signal == SignalType.ON_ERROR) {
+                            outcome = classify(error.get());
+                        } else if (latency >= 0) {
+                            outcome = AdaptiveConcurrencyLimit.Outcome.SUCCESS;
+                        } else if (signal == SignalType.ON_COMPLETE) {
+                            // 空流，以总耗时作为样本
+                            latency = System.nanoTime() - start;
+                            outcome = AdaptiveConcurrencyLimit.Outcome.SUCCESS;
+                        } else {
+                            // 首包前就被取消，无法判断服务端状态
+                            outcome = AdaptiveConcurrencyLimit.Outcome.IGNORED;
+                        }
+                        release(type, limit, latency, outcome);
+                    });
+        });
+    }
+
+    private AdaptiveConcurrencyLimit admit(ModelCallType type) {
+        AdaptiveConcurrencyLimit limit = limits.get(type);
+        if (!limit.tryAcquire()) {
+            shedCounters.get(type).increment();
+            log.warn("模型调用超出自适应并发上限，直接拒绝 type:{} limit:{}", type.getCode(), (int) limit.getLimit());
+            throw new AppException(GlobalServiceStatusCode.AI_SERVICE_BUSY);
+        }
+        return limit;
+    }
+
+    private void release(ModelCallType type, AdaptiveConcurrencyLimit limit, long latencyNanos, AdaptiveConcurrencyLimit.Outcome outcome) {
+        AdaptiveConcurrencyLimit.Reason reason = limit.release(latencyNanos, outcome);
+        if (reason == null) {
+            return;
+        }
+        meterRegistry.counter("ai.model.concurrency.limit.change", "type", type.getCode(), "reason", reason.name()).increment();
+        log.info("模型调用并发上限调整 type:{} reason:{} limit:{}", type.getCode(), reason, String.format("%.1f", limit.getLimit()));
+    }
+
+    /**
+     * 限流(429)和DashScope的ApiException视为服务端过载，其余异常（含本地排队超时）不计入样本
+     */
+    private static AdaptiveConcurrencyLimit.Outcome classify(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof ApiException) {
+                return AdaptiveConcurrencyLimit.Outcome.OVERLOADED;
+            }
+            String message = t.getMessage();
+            if (message != null && (message.contains("429") || message.contains("Throttling"))) {
+                return AdaptiveConcurrencyLimit.Outcome.OVERLOADED;
+            }
+        }
+        return AdaptiveConcurrencyLimit.Outcome.IGNORED;
+    }
+
+}
@@ -0,0 +1,172 @@
+package com.achobeta.domain.ai.service.impl;
+
+import com.achobeta.domain.IRedisService;
+import com.achobeta.domain.ai.model.valobj.ModelCallType;
+import com.achobeta.domain.ai.service.IModelCallLimiter;
+import com.achobeta.types.enums.GlobalServiceStatusCode;
+import com.achobeta.types.exception.AppException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RPermitExpirableSemaphore;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * @Desc : 基于Redisson过期信号量的集群级大模型调用准入控制
+ * <p>
+ * 每种调用类型一个分布式信号量，许可带租期，节点宕机后许可到期自动归还；
+ * 节点内用公平锁排队，同一时刻只有队首线程去Redis争抢许可，既保证节点内先来先得，
+ * 也避免线程多的节点挤占其他节点的配额
+ */
+@Slf4j
+@Service
+@ConfigurationProperties(prefix = "ai.dashscope.limiter")
+public class DistributedModelCallLimiter implements IModelCallLimiter {
+
+    private static final String SEMAPHORE_KEY = "ai:dashscope:limiter:";
+
+    private static final int DEFAULT_PERMITS = 5;
+
+    private static final long DEFAULT_LEASE_SECONDS = 120;
+
+    @Resource
+    private IRedisService redisService;
+
+    /**
+     * 是否启用准入控制
+     */
+    @Setter
+    private boolean enabled = true;
+
+    /**
+     * 排队等待许可的最长时间（毫秒），超时后快速失败
+     */
+    @Setter
+    private long acquireTimeout = 10_000;
+
+    /**
+     * 各调用类型的集群总配额，之和不应超过账号并发上限
+     */
+    @Setter
+    private Map<ModelCallType, Integer> permits = new EnumMap<>(ModelCallType.class);
+
+    /**
+     * 各调用类型的许可租期（秒），应大于该类调用的最长耗时
+     */
+    @Setter
+    private Map<ModelCallType, Long> leaseSeconds = new EnumMap<>(ModelCallType.class);
+
+    private final Map<ModelCallType, ReentrantLock> queues = new EnumMap<>(ModelCallType.class);
+
+    @PostConstruct
+    public void init() {
+        for (ModelCallType type : ModelCallType.values()) {
+            queues.put(type, new ReentrantLock(true));
+        }
+        if (!enabled) {
+            log.info("大模型调用准入控制未启用");
+            return;
+        }
+        for (ModelCallType type : ModelCallType.values()) {
+            int quota = permits.getOrDefault(type, DEFAULT_PERMITS);
+            try {
+                // 只有信号量不存在时才会设置成功，调整配额需要先删除对应的key
+                if (!semaphore(type).trySetPermits(quota)) {
+                    log.info("模型调用信号量已存在，沿用集群现有配额 type:{} 配置配额:{}", type.getCode(), quota);
+                }
+            } catch (RuntimeException e) {
+                log.warn("初始化模型调用信号量失败 type:{}", type.getCode(), e);
+            }
+        }
+    }
+
+    @Override
+    public <T, E extends Exception> T execute(ModelCallType type, ModelCall<T, E> call) throws E {
+        Permit permit = acquire(type);
+        try {
+            return call.call();
+        } finally {
+            release(permit);
+        }
+    }
+
+    @Override
+    public <T> Flux<T> executeStream(ModelCallType type, Supplier<Flux<T>> call) {
+        // 获取许可可能阻塞，放到弹性线程上执行，不占用SDK的IO线程
+        return Flux.usingWhen(
+                Mono.fromCallable(() -> acquire(type)).subscribeOn(Schedulers.boundedElastic()),
+                permit -> call.get(),
+                permit -> Mono.fromRunnable(() -> release(permit)));
+    }
+
+    private Permit acquire(ModelCallType type) {
+        if (!enabled) {
+            return new Permit(type, null);
+        }
+        ReentrantLock queue = queues.get(type);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(acquireTimeout);
+        try {
+            if (!queue.tryLock(acquireTimeout, TimeUnit.MILLISECONDS)) {
+                throw busy(type);
+            }
+            try {
+                long remaining = Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+                String permitId = semaphore(type).tryAcquire(remaining,
+                        leaseSeconds.getOrDefault(type, DEFAULT_LEASE_SECONDS) * 1000, TimeUnit.MILLISECONDS);
+                if (permitId == null) {
+                    throw busy(type);
+                }
+                return new Permit(type, permitId);
+            } finally {
+                queue.unlock();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw busy(type);
+        } catch (AppException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            // Redis不可用时直接放行，避免限流组件本身成为AI功能的单点
+            log.warn("获取模型调用许可失败，降级为直接放行 type:{}", type.getCode(), e);
+            return new Permit(type, null);
+        }
+    }
+
+    private void release(Permit permit) {
+        if (permit.permitId() == null) {
+            return;
+        }
+        try {
+            // 许可可能已因租期到期被回收，使用tryRelease避免抛异常
+            if (!semaphore(permit.type()).tryRelease(permit.permitId())) {
+                log.warn("模型调用许可已过期，调用耗时超过租期 type:{}", permit.type().getCode());
+            }
+        } catch (RuntimeException e) {
+            log.warn("释放模型调用许可失败 type:{}", permit.type().getCode(), e);
+        }
+    }
+
+    private RPermitExpirableSemaphore semaphore(ModelCallType type) {
+        return redisService.getPermitExpirableSemaphore(SEMAPHORE_KEY + type.getCode());
+    }
+
+    private AppException busy(ModelCallType type) {
+        log.warn("模型调用排队超时 type:{} 等待上限:{}ms", type.getCode(), acquireTimeout);
+        return new AppException(GlobalServiceStatusCode.AI_SERVICE_BUSY);
+    }
+
+    private record Permit(ModelCallType type, String permitId) {
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.achobeta.domain.ai.service.impl;
+
+import java.util.Arrays;
+
+/**
+ * @Desc : 最近N个延迟样本的滑动窗口，用于估算分位数
+ */
+class LatencyWindow {
+
+    private final long[] samples;
+    private int index;
+    private int count;
+
+    LatencyWindow(int size) {
+        this.samples = new long[size];
+    }
+
+    synchronized void record(long nanos) {
+        samples[index] = nanos;
+        index = (index + 1) % samples.length;
+        if (count < samples.length) {
+            count++;
+        }
+    }
+
+    synchronized int size() {
+        return count;
+    }
+
+    /**
+     * @param percentile 0~1之间的分位
+     * @return 分位延迟（纳秒），没有样本时返回-1
+     */
+    synchronized long percentile(double percentile) {
+        if (count == 0) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        return sorted[Math.max(0, (int) Math.ceil(count * percentile) - 1)];
+    }
+
+}
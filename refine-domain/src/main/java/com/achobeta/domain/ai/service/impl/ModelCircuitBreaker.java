@@ -0,0 +1,127 @@
+package com.achobeta.domain.ai.service.impl;
+
+import lombok.Getter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Desc : 单个模型的熔断器（基于最近N次调用的失败率）
+ * <p>
+ * 失败率超过阈值后熔断，熔断期内直接拒绝；到期后进入半开状态只放行一个探测请求，
+ * 探测成功则恢复，失败则重新熔断
+ */
+class ModelCircuitBreaker {
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openNanos;
+
+    @Getter
+    private volatile State state = State.CLOSED;
+
+    private final boolean[] outcomes;
+    private int index;
+    private int count;
+    private int failures;
+    private long openedAt;
+    private boolean probing;
+
+    ModelCircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold, long openMillis) {
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+        this.outcomes = new boolean[windowSize];
+    }
+
+    /**
+     * 申请调用，拒绝时调用方应直接失败或改用备用模型；申请成功后必须以onSuccess/onFailure/onIgnored之一结束
+     */
+    synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probing = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probing) {
+                return false;
+            }
+            probing = true;
+        }
+        return true;
+    }
+
+    /**
+     * 是否处于熔断期，只查看不占用探测名额
+     */
+    synchronized boolean isOpen() {
+        return state == State.OPEN && System.nanoTime() - openedAt < openNanos;
+    }
+
+    synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            state = State.CLOSED;
+            probing = false;
+            reset();
+            return;
+        }
+        record(false);
+    }
+
+    synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        record(true);
+        if (count >= minimumCalls && failures / (double) count >= failureRateThreshold) {
+            open();
+        }
+    }
+
+    /**
+     * 调用被取消等无法判断结果的情况，只归还半开状态的探测名额
+     */
+    synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            probing = false;
+        }
+    }
+
+    private void record(boolean failure) {
+        if (count == windowSize) {
+            if (outcomes[index]) {
+                failures--;
+            }
+        } else {
+            count++;
+        }
+        outcomes[index] = failure;
+        if (failure) {
+            failures++;
+        }
+        index = (index + 1) % windowSize;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+        probing = false;
+        reset();
+    }
+
+    private void reset() {
+        index = 0;
+        count = 0;
+        failures = 0;
+    }
+
+}
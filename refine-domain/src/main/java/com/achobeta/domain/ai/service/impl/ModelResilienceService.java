@@ -0,0 +1,268 @@
+package com.achobeta.domain.ai.service.impl;
+
+import com.achobeta.domain.ai.service.IModelResilienceService;
+import com.achobeta.types.enums.GlobalServiceStatusCode;
+import com.achobeta.types.exception.AppException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * @Desc : 模型调用容错
+ * <p>
+ * 每个模型一个熔断器和一个首包延迟窗口；对冲延迟取主模型最近首包延迟的分位值（默认p95），
+ * 样本不足时使用初始值。
+ * 阻塞调用直接在调用方线程执行，期限由网关HTTP客户端的读超时（dashscope.client.call-timeout）保证，
+ * 超时后请求即结束，不会在后台继续占用线程和限流许可
+ */
+@Slf4j
+@Service
+@ConfigurationProperties(prefix = "ai.dashscope.resilience")
+public class ModelResilienceService implements IModelResilienceService {
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Setter
+    private boolean enabled = true;
+
+    /**
+     * 流式调用首个片段的超时时间（毫秒）
+     */
+    @Setter
+    private long firstTokenTimeout = 20_000;
+
+    /**
+     * 流式调用相邻片段的最大间隔（毫秒）
+     */
+    @Setter
+    private long idleTimeout = 30_000;
+
+    /**
+     * 是否启用对冲请求
+     */
+    @Setter
+    private boolean hedgeEnabled = true;
+
+    /**
+     * 对冲延迟取首包延迟的哪个分位
+     */
+    @Setter
+    private double hedgePercentile = 0.95;
+
+    /**
+     * 首包延迟样本不足时的对冲延迟（毫秒）
+     */
+    @Setter
+    private long hedgeInitialDelay = 3_000;
+
+    /**
+     * 对冲延迟下限（毫秒），避免模型很快时几乎每次都对冲
+     */
+    @Setter
+    private long hedgeMinDelay = 500;
+
+    /**
+     * 首包延迟窗口大小，同时也是开始使用分位值的最少样本数
+     */
+    @Setter
+    private int latencyWindowSize = 100;
+
+    @Setter
+    private int breakerWindowSize = 20;
+
+    @Setter
+    private int breakerMinimumCalls = 10;
+
+    @Setter
+    private double breakerFailureRateThreshold = 0.5;
+
+    /**
+     * 熔断持续时间（毫秒）
+     */
+    @Setter
+    private long breakerOpenDuration = 30_000;
+
+    private final Map<String, ModelCircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    private final Map<String, LatencyWindow> firstTokenLatencies = new ConcurrentHashMap<>();
+
+    @Override
+    public <T> T call(String model, String fallbackModel, Function<String, T> call) {
+        if (!enabled) {
+            return call.apply(model);
+        }
+        try {
+            return attemptCall(model, call);
+        } catch (RuntimeException e) {
+            if (fallbackModel == null || isBusy(e)) {
+                throw e;
+            }
+            log.warn("模型调用失败，改用备用模型 model:{} fallback:{} error:{}", model, fallbackModel, e.getMessage());
+            return attemptCall(fallbackModel, call);
+        }
+    }
+
+    @Override
+    public <T> Flux<T> stream(String model, String hedgeModel, Function<String, Flux<T>> call) {
+        if (!enabled) {
+            return call.apply(model);
+        }
+        if (hedgeModel == null) {
+            return attemptStream(model, call);
+        }
+        return Flux.defer(() -> {
+            // 主模型熔断中直接走对冲模型，不必等对冲延迟
+            if (breaker(model).isOpen()) {
+                return attemptStream(hedgeModel, call);
+            }
+            if (!hedgeEnabled) {
+                return attemptStream(model, call);
+            }
+            Duration delay = hedgeDelay(model);
+            AtomicReference<String> winner = new AtomicReference<>();
+            Flux<T> primary = attemptStream(model, call)
+                    .doOnNext(item -> winner.compareAndSet(null, model));
+            Flux<T> hedge = Mono.delay(delay)
+                    .flatMapMany(tick -> {
+                        meterRegistry.counter("ai.model.hedge", "model", model, "result", "fired").increment();
+                        log.info("主模型首包超过对冲延迟，发起对冲请求 model:{} hedge:{} delay:{}ms", model, hedgeModel, delay.toMillis());
+                        return attemptStream(hedgeModel, call);
+                    })
+                    .doOnNext(item -> {
+                        if (winner.compareAndSet(null, hedgeModel)) {
+                            meterRegistry.counter("ai.model.hedge", "model", model, "result", "won").increment();
+                        }
+                    });
+            // 先返回片段的一方胜出，另一方被取消；一方失败时继续等待另一方
+            return Flux.firstWithValue(primary, hedge);
+        });
+    }
+
+    private <T> T attemptCall(String model, Function<String, T> call) {
+        ModelCircuitBreaker breaker = breaker(model);
+        if (!breaker.tryAcquirePermission()) {
+            throw new AppException(GlobalServiceStatusCode.AI_SERVICE_UNAVAILABLE);
+        }
+        try {
+            T result = call.apply(model);
+            breaker.onSuccess();
+            return result;
+        } catch (RuntimeException e) {
+            onError(breaker, model, e);
+            if (isTimeout(e)) {
+                throw new AppException(GlobalServiceStatusCode.SYSTEM_TIME_OUT);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * HTTP客户端读超时以 InterruptedIOException（SocketTimeoutException）出现在异常链中
+     */
+    private static boolean isTimeout(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof InterruptedIOException || cause instanceof TimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private <T> Flux<T> attemptStream(String model, Function<String, Flux<T>> call) {
+        return Flux.defer(() -> {
+            ModelCircuitBreaker breaker = breaker(model);
+            if (!breaker.tryAcquirePermission()) {
+                return Flux.error(new AppException(GlobalServiceStatusCode.AI_SERVICE_UNAVAILABLE));
+            }
+            long start = System.nanoTime();
+            AtomicBoolean settled = new AtomicBoolean();
+            return call.apply(model)
+                    .timeout(Mono.delay(Duration.ofMillis(firstTokenTimeout)), item -> Mono.delay(Duration.ofMillis(idleTimeout)))
+                    .doOnNext(item -> {
+                        // 以首个片段到达作为成功，记录首包延迟
+                        if (settled.compareAndSet(false, true)) {
+                            firstTokenLatencies(model).record(System.nanoTime() - start);
+                            breaker.onSuccess();
+                        }
+                    })
+                    .doOnError(e -> {
+                        if (settled.compareAndSet(false, true)) {
+                            onError(breaker, model, e);
+                        }
+                    })
+                    .doOnComplete(() -> {
+                        if (settled.compareAndSet(false, true)) {
+                            breaker.onSuccess();
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        // 对冲落败或调用方断开，无法判断模型状态
+                        if (settled.compareAndSet(false, true)) {
+                            breaker.onIgnored();
+                        }
+                    });
+        });
+    }
+
+    private void onError(ModelCircuitBreaker breaker, String model, Throwable e) {
+        if (isBusy(e)) {
+            breaker.onIgnored();
+            return;
+        }
+        breaker.onFailure();
+        if (breaker.getState() == ModelCircuitBreaker.State.OPEN) {
+            log.warn("模型调用失败率过高，熔断 {}ms model:{}", breakerOpenDuration, model);
+        }
+    }
+
+    /**
+     * 本地准入拒绝不代表模型本身出错，既不计入熔断统计，也不值得改用备用模型
+     */
+    private static boolean isBusy(Throwable e) {
+        return e instanceof AppException appException
+                && appException.getStatusCode() == GlobalServiceStatusCode.AI_SERVICE_BUSY;
+    }
+
+    private Duration hedgeDelay(String model) {
+        LatencyWindow window = firstTokenLatencies(model);
+        if (window.size() < latencyWindowSize) {
+            return Duration.ofMillis(hedgeInitialDelay);
+        }
+        long millis = TimeUnit.NANOSECONDS.toMillis(window.percentile(hedgePercentile));
+        return Duration.ofMillis(Math.max(hedgeMinDelay, millis));
+    }
+
+    private ModelCircuitBreaker breaker(String model) {
+        return breakers.computeIfAbsent(model, key -> {
+            ModelCircuitBreaker breaker = new ModelCircuitBreaker(breakerWindowSize, breakerMinimumCalls,
+                    breakerFailureRateThreshold, breakerOpenDuration);
+            Gauge.builder("ai.model.circuit.state", breaker, b -> b.getState().ordinal())
+                    .description("模型熔断状态：0-关闭 1-熔断 2-半开")
+                    .tag("model", key)
+                    .register(meterRegistry);
+            return breaker;
+        });
+    }
+
+    private LatencyWindow firstTokenLatencies(String model) {
+        return firstTokenLatencies.computeIfAbsent(model, key -> new LatencyWindow(latencyWindowSize));
+    }
+
+}
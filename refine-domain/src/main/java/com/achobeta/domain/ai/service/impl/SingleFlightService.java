@@ -0,0 +1,222 @@
+package com.achobeta.domain.ai.service.impl;
+
+import com.achobeta.domain.IRedisService;
+import com.achobeta.domain.ai.service.ISingleFlightService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * @Desc : 模型请求合并
+ * <p>
+ * 节点内用在途表合并；开启distributed后阻塞调用再通过Redis跨节点合并：
+ * 抢到setNx的节点请求上游并把结果写入Redis，其他节点轮询结果，领头节点失败或等待超时则自己调用。
+ * 流式调用只在节点内合并
+ */
+@Slf4j
+@Service
+@ConfigurationProperties(prefix = "ai.dashscope.single-flight")
+public class SingleFlightService implements ISingleFlightService {
+
+    private static final String LEADER_KEY = "ai:singleflight:leader:";
+
+    private static final String RESULT_KEY = "ai:singleflight:result:";
+
+    @Resource
+    private IRedisService redisService;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Setter
+    private boolean enabled = true;
+
+    /**
+     * 是否通过Redis跨节点合并
+     */
+    @Setter
+    private boolean distributed = false;
+
+    /**
+     * 领头节点标记的过期时间（毫秒），应大于单次调用的最长耗时
+     */
+    @Setter
+    private long leaderTtl = 60_000;
+
+    /**
+     * 结果在Redis中保留的时间（毫秒），只需覆盖同一波请求
+     */
+    @Setter
+    private long resultTtl = 30_000;
+
+    /**
+     * 跨节点等待结果的最长时间（毫秒）
+     */
+    @Setter
+    private long waitTimeout = 30_000;
+
+    /**
+     * 轮询结果的间隔（毫秒）
+     */
+    @Setter
+    private long pollInterval = 200;
+
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> calls = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, InFlightStream> streams = new ConcurrentHashMap<>();
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> call) {
+        if (!enabled) {
+            return call.get();
+        }
+        CompletableFuture<Object> created = new CompletableFuture<>();
+        CompletableFuture<Object> existing = calls.putIfAbsent(key, created);
+        if (existing != null) {
+            meterRegistry.counter("ai.model.single-flight.coalesced", "scope", "local").increment();
+            try {
+                return (T) existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+        try {
+            T result = distributed ? executeAcrossNodes(key, call) : call.get();
+            created.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(key, created);
+        }
+    }
+
+    @Override
+    public <T> Flux<T> executeStream(String key, Supplier<Flux<T>> call) {
+        if (!enabled) {
+            return call.get();
+        }
+        return Flux.defer(() -> joinStream(key, call));
+    }
+
+    /**
+     * 加入在途的流式调用，没有或已结束时发起新的调用
+     */
+    @SuppressWarnings("unchecked")
+    private <T> Flux<T> joinStream(String key, Supplier<Flux<T>> call) {
+        InFlightStream created = new InFlightStream(key, call);
+        InFlightStream existing = streams.putIfAbsent(key, created);
+        if (existing == null) {
+            return (Flux<T>) created.shared;
+        }
+        if (existing.done.get()) {
+            // 已结束的共享流再次订阅会重新连接上游，移除后按新请求处理
+            streams.remove(key, existing);
+            return joinStream(key, call);
+        }
+        meterRegistry.counter("ai.model.single-flight.coalesced", "scope", "stream").increment();
+        return (Flux<T>) existing.shared;
+    }
+
+    private <T> T executeAcrossNodes(String key, Supplier<T> call) {
+        String resultKey = RESULT_KEY + key;
+        String leaderKey = LEADER_KEY + key;
+        try {
+            T result = redisService.getValue(resultKey);
+            if (result == null && !Boolean.TRUE.equals(redisService.setNx(leaderKey, leaderTtl, TimeUnit.MILLISECONDS))) {
+                result = awaitResult(resultKey, leaderKey);
+                if (result == null) {
+                    return call.get();
+                }
+            }
+            if (result != null) {
+                meterRegistry.counter("ai.model.single-flight.coalesced", "scope", "remote").increment();
+                return result;
+            }
+        } catch (RuntimeException e) {
+            log.warn("跨节点请求合并失败，直接调用上游 key:{}", key, e);
+            return call.get();
+        }
+
+        // 本节点是领头节点
+        try {
+            T result = call.get();
+            if (result != null) {
+                try {
+                    redisService.setValue(resultKey, result, resultTtl);
+                } catch (RuntimeException e) {
+                    log.warn("写入请求合并结果失败 key:{}", key, e);
+                }
+            }
+            return result;
+        } finally {
+            try {
+                redisService.remove(leaderKey);
+            } catch (RuntimeException e) {
+                log.warn("释放请求合并领头标记失败 key:{}", key, e);
+            }
+        }
+    }
+
+    /**
+     * 等待领头节点写入结果，领头节点失败或等待超时返回null
+     */
+    private <T> T awaitResult(String resultKey, String leaderKey) {
+        long deadline = System.currentTimeMillis() + waitTimeout;
+        try {
+            while (System.currentTimeMillis() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(pollInterval);
+                T result = redisService.getValue(resultKey);
+                if (result != null) {
+                    return result;
+                }
+                if (!redisService.isExists(leaderKey)) {
+                    return null;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    /**
+     * 在途的流式调用。上游结束或被全部订阅者取消时先标记结束并移出在途表（只移除自己），再向订阅者发出结束信号
+     */
+    private final class InFlightStream {
+
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private final Flux<?> shared;
+
+        private <T> InFlightStream(String key, Supplier<Flux<T>> call) {
+            Runnable finish = () -> {
+                done.set(true);
+                streams.remove(key, this);
+            };
+            // defer：竞争失败的实例不会真正调用上游
+            this.shared = Flux.defer(call)
+                    .doOnTerminate(finish)
+                    .doOnCancel(finish)
+                    .replay()
+                    .refCount();
+        }
+    }
+
+}
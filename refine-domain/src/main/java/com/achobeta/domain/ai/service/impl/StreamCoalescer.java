@@ -0,0 +1,45 @@
+package com.achobeta.domain.ai.service.impl;
+
+import com.achobeta.domain.ai.service.IStreamCoalescer;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+
+/**
+ * @Desc : 按片段数或时间窗口合并流式片段，先到者触发下发
+ */
+@Service
+@ConfigurationProperties(prefix = "ai.stream.coalesce")
+public class StreamCoalescer implements IStreamCoalescer {
+
+    @Setter
+    private boolean enabled = true;
+
+    /**
+     * 攒满多少个片段立即下发
+     */
+    @Setter
+    private int maxFragments = 16;
+
+    /**
+     * 片段最长等待时间（毫秒），即合并带来的延迟上限
+     */
+    @Setter
+    private long maxDelay = 30;
+
+    @Override
+    public Flux<String> coalesce(Flux<String> fragments) {
+        if (!enabled || maxFragments <= 1 || maxDelay <= 0) {
+            return fragments;
+        }
+        // 公平背压：下游（SSE写出）未请求时暂存已攒的片段，不会因定时器触发而溢出
+        return fragments
+                .bufferTimeout(maxFragments, Duration.ofMillis(maxDelay), true)
+                .filter(batch -> !batch.isEmpty())
+                .map(batch -> batch.size() == 1 ? batch.get(0) : String.join("", batch));
+    }
+
+}
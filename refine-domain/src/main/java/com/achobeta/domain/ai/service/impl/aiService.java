@@ -1,27 +1,35 @@
 package com.achobeta.domain.ai.service.impl;
 
+import com.achobeta.domain.ai.adapter.port.IDashScopeGateway;
+import com.achobeta.domain.ai.model.valobj.ModelCallType;
 import com.achobeta.domain.ai.service.IAiService;
+import com.achobeta.domain.ai.service.IModelCallLimiter;
+import com.achobeta.domain.ai.service.IModelResilienceService;
+import com.achobeta.domain.ai.service.ISingleFlightService;
 import com.achobeta.domain.conversation.model.entity.ConversationMessageEntity;
-import com.alibaba.dashscope.aigc.generation.Generation;
+import com.achobeta.domain.conversation.model.valobj.ConversationMemoryVO;
+import com.achobeta.types.conversation.AiResponseStatus;
+import com.achobeta.types.enums.GlobalServiceStatusCode;
+import com.achobeta.types.exception.AppException;
 import com.alibaba.dashscope.aigc.generation.GenerationParam;
 import com.alibaba.dashscope.aigc.generation.GenerationResult;
 import com.alibaba.dashscope.common.Message;
 import com.alibaba.dashscope.common.Role;
 import com.alibaba.dashscope.exception.ApiException;
-import com.alibaba.dashscope.exception.InputRequiredException;
-import com.alibaba.dashscope.exception.NoApiKeyException;
-import io.reactivex.Flowable;
+import jakarta.annotation.Resource;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Service;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.Consumer;
 
 /**
@@ -52,6 +60,115 @@ public class aiService implements IAiService {
     @Setter
     private String MODEL_NAME = "qwen3-max";
 
+    /**
+     * 备用模型，主模型超时、熔断时降级使用，也是流式对冲请求的目标；为空时不降级
+     */
+    @Setter
+    private String ALTERNATE_MODEL_NAME = "qwen-max";
+
+    /**
+     * 复用的DashScope客户端
+     */
+    @Resource
+    private IDashScopeGateway dashScopeGateway;
+
+    /**
+     * 集群级模型调用准入控制
+     */
+    @Resource
+    private IModelCallLimiter modelCallLimiter;
+
+    /**
+     * 相同请求合并
+     */
+    @Resource
+    private ISingleFlightService singleFlightService;
+
+    /**
+     * 超时、熔断与对冲
+     */
+    @Resource
+    private IModelResilienceService modelResilienceService;
+
+    /**
+     * 解题提示词
+     */
+    private static final String SOLVE_PROMPT = """
+            你是一位专业的解题助手，请严格按照以下格式和要求解答用户提出的题目：
+            
+            **解题格式要求：**
+            
+            【题目分析】
+            - 仔细阅读题目，理解题目的背景、条件和要求
+            - 明确已知条件和待求目标
+            - 分析题目的类型和特点
+            - 指出解题的关键点和可能的突破口
+            
+            【解题过程】
+            - 按照逻辑顺序，逐步展示完整的解题步骤
+            - 每一步都要有清晰的推理和计算过程
+            - 重要的公式、定理要明确写出
+            - 数值计算要准确，单位要规范
+            - 如果有多种解法，选择最合理的一种详细展示
+            
+            【解题方法】
+            - 明确指出本题使用的核心解题方法（如：代数法、几何法、微积分法、方程法、图像法等）
+            - 说明为什么选择这种方法
+            - 简要介绍该方法的适用条件和优势
+            - 如果涉及特殊技巧或思路，要详细说明
+            
+            【考查知识点】
+            - 列出本题涉及的所有重要知识点
+            - 说明每个知识点在本题中的具体应用
+            - 指出这些知识点之间的联系
+            - 简要说明这些知识点在学科体系中的地位
+            
+            **注意事项：**
+            - 语言要专业、准确、简洁
+            - 逻辑要严密，推理要完整
+            - 重要的结论和答案要用【最终答案】标注
+            - 遇到复杂题目时，可以适当分步骤解释
+            - 确保解题过程的可读性和教学性
+            
+            请严格遵守以上要求，开始解答下面的题目，如果题目包含公式，请以markdown格式给出。
+            """;
+
+    /**
+     * 带上下文解题的系统提示词
+     */
+    private static final String CONTEXT_SOLVE_PROMPT = """
+            你是一位专业的解题助手，能够根据之前的对话历史为用户提供连贯的解答。
+            请根据上下文理解用户的问题，并提供准确、详细的解答。
+            
+            **解题格式要求：**
+            
+            【题目分析】
+            - 仔细阅读题目，理解题目的背景、条件和要求
+            - 明确已知条件和待求目标
+            - 分析题目的类型和特点
+            - 指出解题的关键点和可能的突破口
+            
+            【解题过程】
+            - 按照逻辑顺序，逐步展示完整的解题步骤
+            - 每一步都要有清晰的推理和计算过程
+            - 重要的公式、定理要明确写出
+            - 数值计算要准确，单位要规范
+            
+            【解题方法】
+            - 明确指出本题使用的核心解题方法
+            - 说明为什么选择这种方法
+            
+            【考查知识点】
+            - 列出本题涉及的所有重要知识点
+            - 说明每个知识点在本题中的具体应用
+            
+            **注意事项：**
+            - 语言要专业、准确、简洁
+            - 逻辑要严密，推理要完整
+            - 重要的结论和答案要用【最终答案】标注
+            - 如果题目包含公式，请以markdown格式给出
+            """;
+
     /**
      * 抽取第一个问题
      *
@@ -67,7 +184,6 @@ public class aiService implements IAiService {
         }
 
         try {
-            Generation gen = new Generation();
             // 构造提示词，明确提取规则和示例
             String prompt = """
                     请从以下大段文本中准确识别并提取第一个完整且可识别的题目。提取规则如下：
@@ -117,26 +233,10 @@ public class aiService implements IAiService {
                     .content(prompt + "\n" + "请从以下文本中提取第一个问题：\n\n" + content)
                     .build();
 
-            // 设置调用参数，包括API Key、模型名及上下文消息列表
-            GenerationParam param = GenerationParam.builder()
-                    .apiKey(apiKey)
-                    .model(MODEL_NAME)
-                    .messages(Arrays.asList(systemMsg, userMsg))
-                    .resultFormat(GenerationParam.ResultFormat.MESSAGE)
-                    .build();
-
-            // 调用大模型接口获取结果
-            GenerationResult result = gen.call(param);
-
-            // 判断返回结果的有效性并提取内容
-            if (result != null && result.getOutput() != null
-                    && !result.getOutput().getChoices().isEmpty()
-                    && result.getOutput().getChoices().get(0).getMessage() != null) {
-                return result.getOutput().getChoices().get(0).getMessage().getContent().trim();
-            } else {
-                log.warn("模型返回结果为空或格式异常");
-                return "";
-            }
+            // 同一批学生上传同一页试卷时OCR文本完全相同，合并为一次模型调用
+            List<Message> messages = Arrays.asList(systemMsg, userMsg);
+            return singleFlightService.execute(_singleFlightKey(messages),
+                    () -> modelResilienceService.call(MODEL_NAME, _alternateModel(), model -> _call(model, messages)));
 
         } catch (Exception e) {
             // 记录异常日志便于排查问题
@@ -153,80 +253,12 @@ public class aiService implements IAiService {
      */
     @Override
     public void aiSolveQuestion(String question, Consumer<String> contentCallback) {
-        try {
-            String prompt = """
-                    你是一位专业的解题助手，请严格按照以下格式和要求解答用户提出的题目：
-                    
-                    **解题格式要求：**
-                    
-                    【题目分析】
-                    - 仔细阅读题目，理解题目的背景、条件和要求
-                    - 明确已知条件和待求目标
-                    - 分析题目的类型和特点
-                    - 指出解题的关键点和可能的突破口
-                    
-                    【解题过程】
-                    - 按照逻辑顺序，逐步展示完整的解题步骤
-                    - 每一步都要有清晰的推理和计算过程
-                    - 重要的公式、定理要明确写出
-                    - 数值计算要准确，单位要规范
-                    - 如果有多种解法，选择最合理的一种详细展示
-                    
-                    【解题方法】
-                    - 明确指出本题使用的核心解题方法（如：代数法、几何法、微积分法、方程法、图像法等）
-                    - 说明为什么选择这种方法
-                    - 简要介绍该方法的适用条件和优势
-                    - 如果涉及特殊技巧或思路，要详细说明
-                    
-                    【考查知识点】
-                    - 列出本题涉及的所有重要知识点
-                    - 说明每个知识点在本题中的具体应用
-                    - 指出这些知识点之间的联系
-                    - 简要说明这些知识点在学科体系中的地位
-                    
-                    **注意事项：**
-                    - 语言要专业、准确、简洁
-                    - 逻辑要严密，推理要完整
-                    - 重要的结论和答案要用【最终答案】标注
-                    - 遇到复杂题目时，可以适当分步骤解释
-                    - 确保解题过程的可读性和教学性
-                    
-                    请严格遵守以上要求，开始解答下面的题目，如果题目包含公式，请以markdown格式给出。
-                    """;
-            String combinedPrompt = prompt + "\n\n" + question;
-            // 创建大模型实例
-            Generation gen = new Generation();
-
-            // 构建用户消息，将问题传入
-            Message combineMsg = Message.builder()
-                    .role(Role.USER.getValue())
-                    .content(combinedPrompt)
-                    .build();
-
-            // 构建调用参数
-            _streamCallWithMessage(gen, combineMsg, contentCallback);
-        } catch (ApiException | NoApiKeyException | InputRequiredException e) {
-            logger.error("An exception occurred: {}", e.getMessage());
-        }
+        _blockingConsume(aiSolveQuestionStream(question), contentCallback);
     }
 
     @Override
     public void aiChat(String question, Consumer<String> contentCallback) {
-        try {
-            // 创建大模型实例
-            Generation gen = new Generation();
-
-            // 构建用户消息，将问题传入
-            Message combineMsg = Message.builder()
-                    .role(Role.USER.getValue())
-                    .content(question)
-                    .build();
-
-            // 构建调用参数
-            _streamCallWithMessage(gen, combineMsg, contentCallback);
-        } catch (ApiException | NoApiKeyException | InputRequiredException e) {
-            logger.error("An exception occurred: {}", e.getMessage());
-        }
+        _blockingConsume(aiChatStream(question), contentCallback);
     }
 
     /**
@@ -239,95 +271,57 @@ public class aiService implements IAiService {
      */
     @Override
     public void aiSolveQuestionWithContext(String questionId, String question, List<ConversationMessageEntity> conversationHistory, Consumer<String> contentCallback) {
-        try {
-            // 使用无锁的并发队列来收集响应片段
-            ConcurrentLinkedQueue<String> responseQueue = new ConcurrentLinkedQueue<>();
-
-            // 创建大模型实例
-            Generation gen = new Generation();
-
-            // 构建消息列表，包含历史对话
-            List<Message> messages = buildMessagesWithHistory(question, conversationHistory);
-
-            // 构建调用参数
-            GenerationParam param = GenerationParam.builder()
-                    .apiKey(apiKey)
-                    .model(MODEL_NAME)
-                    .messages(messages)
-                    .resultFormat(GenerationParam.ResultFormat.MESSAGE)
-                    .incrementalOutput(true)
-                    .build();
+        StringBuilder completeResponse = new StringBuilder();
+        _blockingConsume(aiSolveQuestionWithContextStream(questionId, question, conversationHistory)
+                .doOnNext(completeResponse::append), contentCallback);
 
-            // 流式调用
-            Flowable<GenerationResult> result = gen.streamCall(param);
-            result.blockingForEach(resultItem -> _handleGenerationResult(resultItem, contentCallback, responseQueue));
+        // 通知调用方AI回复已完成，使用特殊标记来区分普通流式输出和最终完成通知
+        if (contentCallback != null) {
+            contentCallback.accept(AiResponseStatus.COMPLETED.getMarker() + completeResponse);
+        }
+    }
 
-            // 流式输出结束后换行
-            System.out.println();
+    @Override
+    public Flux<String> aiSolveQuestionStream(String question) {
+        // 构建用户消息，将解题提示词与问题拼接传入
+        Message combineMsg = Message.builder()
+                .role(Role.USER.getValue())
+                .content(SOLVE_PROMPT + "\n\n" + question)
+                .build();
+        return _streamCall(Collections.singletonList(combineMsg));
+    }
 
-            // 将队列中的所有片段合并为完整响应
-            StringBuilder completeResponse = new StringBuilder();
-            String fragment;
-            while ((fragment = responseQueue.poll()) != null) {
-                completeResponse.append(fragment);
-            }
+    @Override
+    public Flux<String> aiChatStream(String question) {
+        Message combineMsg = Message.builder()
+                .role(Role.USER.getValue())
+                .content(question)
+                .build();
+        return _streamCall(Collections.singletonList(combineMsg));
+    }
 
-            // 打印完整的收集内容
-            System.out.println("\n=== 完整的AI回复内容 ===");
-            System.out.println(completeResponse.toString());
+    @Override
+    public Flux<String> aiSolveQuestionWithContextStream(String questionId, String question, List<ConversationMessageEntity> conversationHistory) {
+        return Flux.defer(() -> _streamCall(buildMessagesWithHistory(question, null, conversationHistory)));
+    }
 
-            // 通知调用方AI回复已完成，让应用服务层保存到Redis
-            if (contentCallback != null) {
-                // 通过回调通知AI回复完成，让上层服务保存到Redis
-                // 使用特殊标记来区分普通流式输出和最终完成通知
-                contentCallback.accept("###AI_RESPONSE_END###" + completeResponse.toString());
-            }
-        } catch (ApiException | NoApiKeyException | InputRequiredException e) {
-            logger.error("An exception occurred: {}", e.getMessage());
-        }
+    @Override
+    public Flux<String> aiSolveQuestionWithMemoryStream(String questionId, String question, ConversationMemoryVO memory) {
+        return Flux.defer(() -> _streamCall(buildMessagesWithHistory(question, memory.getSummary(), memory.getRecentMessages())));
     }
 
     /**
      * 构建包含历史对话的消息列表
+     *
+     * @param summary 较早对话的摘要，并入系统提示词，可为null
      */
-    private List<Message> buildMessagesWithHistory(String question, List<ConversationMessageEntity> conversationHistory) {
+    private List<Message> buildMessagesWithHistory(String question, String summary, List<ConversationMessageEntity> conversationHistory) {
         List<Message> messages = new ArrayList<>();
 
         // 添加系统消息
         Message systemMsg = Message.builder()
                 .role(Role.SYSTEM.getValue())
-                .content("""
-                        你是一位专业的解题助手，能够根据之前的对话历史为用户提供连贯的解答。
-                        请根据上下文理解用户的问题，并提供准确、详细的解答。
-                        
-                        **解题格式要求：**
-                        
-                        【题目分析】
-                        - 仔细阅读题目，理解题目的背景、条件和要求
-                        - 明确已知条件和待求目标
-                        - 分析题目的类型和特点
-                        - 指出解题的关键点和可能的突破口
-                        
-                        【解题过程】
-                        - 按照逻辑顺序，逐步展示完整的解题步骤
-                        - 每一步都要有清晰的推理和计算过程
-                        - 重要的公式、定理要明确写出
-                        - 数值计算要准确，单位要规范
-                        
-                        【解题方法】
-                        - 明确指出本题使用的核心解题方法
-                        - 说明为什么选择这种方法
-                        
-                        【考查知识点】
-                        - 列出本题涉及的所有重要知识点
-                        - 说明每个知识点在本题中的具体应用
-                        
-                        **注意事项：**
-                        - 语言要专业、准确、简洁
-                        - 逻辑要严密，推理要完整
-                        - 重要的结论和答案要用【最终答案】标注
-                        - 如果题目包含公式，请以markdown格式给出
-                        """)
+                .content(CONTEXT_SOLVE_PROMPT + (summary == null || summary.isBlank() ? "" : "\n以下是此前对话的摘要，请结合摘要理解后续问题：\n" + summary))
                 .build();
         messages.add(systemMsg);
 
@@ -354,97 +348,116 @@ public class aiService implements IAiService {
     }
 
     /**
-     * 构建调用参数
+     * 一次性调用大模型，返回完整内容
      */
-    private GenerationParam _buildGenerationParam(Message userMsg) {
-        return GenerationParam.builder()
+    private String _call(String model, List<Message> messages) {
+        // 设置调用参数，包括API Key、模型名及上下文消息列表
+        GenerationParam param = GenerationParam.builder()
                 .apiKey(apiKey)
-                .model(MODEL_NAME)
-                .messages(Arrays.asList(userMsg))
+                .model(model)
+                .messages(messages)
                 .resultFormat(GenerationParam.ResultFormat.MESSAGE)
-                .incrementalOutput(true)
                 .build();
-    }
 
-    /**
-     * 处理大模型返回的答案结果（使用无锁队列版本）
-     */
-    private static void _handleGenerationResult(GenerationResult result, Consumer<String> contentCallback, ConcurrentLinkedQueue<String> responseQueue) {
+        // 调用大模型接口获取结果
+        GenerationResult result;
         try {
-            // 检查结果是否为空
-            if (result == null || result.getOutput() == null || result.getOutput().getChoices() == null ||
-                    result.getOutput().getChoices().isEmpty()) {
-                return;
-            }
-
-            // 获取第一个choice的message内容
-            Message message = result.getOutput().getChoices().get(0).getMessage();
-
-            // 只获取content内容并添加到无锁队列
-            if (message != null && message.getContent() != null) {
-                String content = message.getContent();
-                // 使用无锁的ConcurrentLinkedQueue，性能更好
-                responseQueue.offer(content);
-
-                // 实时打印当前片段，便于观察流式输出过程
-                System.out.print(content);
-
-                // 通过回调函数将内容传递给Controller
-                if (contentCallback != null) {
-                    contentCallback.accept(content);
-                }
-            }
+            result = modelCallLimiter.execute(ModelCallType.CHAT, () -> dashScopeGateway.call(param));
+        } catch (RuntimeException e) {
+            throw e;
         } catch (Exception e) {
-            logger.error("处理GenerationResult时出错: {}", e.getMessage());
+            throw new AppException(GlobalServiceStatusCode.SYSTEM_SERVICE_ERROR.getCode(), "调用大模型失败", e);
+        }
+
+        // 判断返回结果的有效性并提取内容
+        if (result != null && result.getOutput() != null
+                && !result.getOutput().getChoices().isEmpty()
+                && result.getOutput().getChoices().get(0).getMessage() != null) {
+            return result.getOutput().getChoices().get(0).getMessage().getContent().trim();
+        } else {
+            log.warn("模型返回结果为空或格式异常");
+            return "";
         }
     }
 
     /**
-     * 处理大模型返回的答案结果（简化版本，仅用于流式输出）
-     * 用于不需要收集完整响应的场景，如 aiSolveQuestion 方法
+     * 按模型与消息生成请求合并的key
      */
-    private static void _handleGenerationResult(GenerationResult result, Consumer<String> contentCallback) {
-        try {
-            // 检查结果是否为空
-            if (result == null || result.getOutput() == null || result.getOutput().getChoices() == null ||
-                    result.getOutput().getChoices().isEmpty()) {
-                return;
-            }
-
-            // 获取第一个choice的message内容
-            Message message = result.getOutput().getChoices().get(0).getMessage();
+    private String _singleFlightKey(List<Message> messages) {
+        return ISingleFlightService.key(MODEL_NAME, messages.stream()
+                .map(message -> message.getRole() + ":" + message.getContent())
+                .toArray(String[]::new));
+    }
 
-            // 只获取content内容并直接处理
-            if (message != null && message.getContent() != null) {
-                String content = message.getContent();
+    private String _alternateModel() {
+        return ALTERNATE_MODEL_NAME == null || ALTERNATE_MODEL_NAME.isBlank() || ALTERNATE_MODEL_NAME.equals(MODEL_NAME)
+                ? null
+                : ALTERNATE_MODEL_NAME;
+    }
 
-                // 实时打印当前片段，便于观察流式输出过程
-                System.out.print(content);
+    /**
+     * 构建调用参数
+     */
+    private GenerationParam _buildGenerationParam(String model, List<Message> messages) {
+        return GenerationParam.builder()
+                .apiKey(apiKey)
+                .model(model)
+                .messages(messages)
+                .resultFormat(GenerationParam.ResultFormat.MESSAGE)
+                .incrementalOutput(true)
+                .build();
+    }
 
-                // 通过回调函数将内容传递给Controller
-                if (contentCallback != null) {
-                    contentCallback.accept(content);
-                }
-            }
-        } catch (Exception e) {
-            logger.error("处理GenerationResult时出错: {}", e.getMessage());
+    /**
+     * 从大模型返回结果中提取增量内容，结果为空时返回null
+     */
+    private static String _extractContent(GenerationResult result) {
+        // 检查结果是否为空
+        if (result == null || result.getOutput() == null || result.getOutput().getChoices() == null ||
+                result.getOutput().getChoices().isEmpty()) {
+            return null;
         }
-    }
 
-    // 流式调用大模型
-    public void _streamCallWithMessage(Generation gen, Message userMsg, Consumer<String> contentCallback)
-            throws NoApiKeyException, ApiException, InputRequiredException {
+        // 获取第一个choice的message内容
+        Message message = result.getOutput().getChoices().get(0).getMessage();
+        if (message == null || message.getContent() == null) {
+            return null;
+        }
 
-        GenerationParam param = _buildGenerationParam(userMsg);
-        Flowable<GenerationResult> result = gen.streamCall(param);
-        result.blockingForEach(resultItem -> _handleGenerationResult(resultItem, contentCallback));
+        return message.getContent();
+    }
 
-        // 流式输出结束后换行
-        System.out.println();
+    /**
+     * 流式调用大模型
+     * <p>
+     * SDK返回的Flowable本身就是Reactive Streams的Publisher，这里直接桥接为Flux，
+     * 片段在SDK的IO线程上推送，调用方无需阻塞等待；订阅时占用一个流式调用许可，流结束后归还；
+     * 相同消息的并发请求共享同一条片段流；主模型首包过慢时向备用模型发起对冲请求
+     */
+    private Flux<String> _streamCall(List<Message> messages) {
+        return singleFlightService.executeStream(_singleFlightKey(messages),
+                () -> modelResilienceService.stream(MODEL_NAME, _alternateModel(),
+                        model -> modelCallLimiter.executeStream(ModelCallType.STREAM,
+                                        () -> dashScopeGateway.streamCall(_buildGenerationParam(model, messages)))
+                                .mapNotNull(aiService::_extractContent)));
+    }
 
-        // 注意：这个方法主要用于单次问答，不带上下文的场景
-        // 对于这种场景，通常不需要保存完整响应到Redis，只需要流式输出即可
-        // 如果需要完整响应，请使用 aiSolveQuestionWithContext 方法
+    /**
+     * 阻塞消费片段流，仅供仍使用回调的旧调用方（如后台分析任务）使用
+     */
+    private void _blockingConsume(Flux<String> stream, Consumer<String> contentCallback) {
+        try {
+            stream.doOnNext(content -> {
+                        if (contentCallback != null) {
+                            contentCallback.accept(content);
+                        }
+                    })
+                    .blockLast();
+        } catch (ApiException e) {
+            logger.error("An exception occurred: {}", e.getMessage());
+        } catch (RuntimeException e) {
+            // blockLast 会把受检异常包装为 RuntimeException 抛出
+            logger.error("An exception occurred: {}", Exceptions.unwrap(e).getMessage());
+        }
     }
 }
-
@@ -1,6 +1,7 @@
 package com.achobeta.domain.conversation.adapter.port.redis;
 
 import com.achobeta.domain.conversation.model.entity.ConversationMessageEntity;
+import com.achobeta.domain.conversation.model.entity.ConversationSummaryEntity;
 
 import java.util.List;
 
@@ -44,4 +45,37 @@ public interface IConversationRedisRepository {
      * @return 是否设置成功
      */
     boolean setExpireTime(String questionId, long expireTime);
-}
\ No newline at end of file
+
+    /**
+     * 保存会话滚动摘要，过期时间与会话历史一致
+     *
+     * @param questionId 错题ID（作为会话ID）
+     * @param summary 摘要
+     * @return 是否保存成功
+     */
+    boolean saveConversationSummary(String questionId, ConversationSummaryEntity summary);
+
+    /**
+     * 获取会话滚动摘要
+     *
+     * @param questionId 错题ID（作为会话ID）
+     * @return 摘要，不存在时返回null
+     */
+    ConversationSummaryEntity getConversationSummary(String questionId);
+
+    /**
+     * 抢占会话摘要生成任务，避免同一会话并发生成摘要
+     *
+     * @param questionId 错题ID（作为会话ID）
+     * @param expireTime 锁过期时间（毫秒）
+     * @return 是否抢占成功
+     */
+    boolean tryLockSummary(String questionId, long expireTime);
+
+    /**
+     * 释放会话摘要生成任务
+     *
+     * @param questionId 错题ID（作为会话ID）
+     */
+    void unlockSummary(String questionId);
+}
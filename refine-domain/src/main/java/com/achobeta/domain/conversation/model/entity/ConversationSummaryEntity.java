@@ -0,0 +1,31 @@
+package com.achobeta.domain.conversation.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * @Desc : 会话滚动摘要，与会话历史一起缓存在Redis
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationSummaryEntity {
+
+    /** 会话ID */
+    private String conversationId;
+
+    /** 摘要内容 */
+    private String summary;
+
+    /** 摘要已覆盖的历史消息条数（从第一条开始计） */
+    private Integer summarizedCount;
+
+    /** 更新时间 */
+    private LocalDateTime updateTime;
+
+}
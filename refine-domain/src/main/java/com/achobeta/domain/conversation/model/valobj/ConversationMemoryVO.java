@@ -0,0 +1,29 @@
+package com.achobeta.domain.conversation.model.valobj;
+
+import com.achobeta.domain.conversation.model.entity.ConversationMessageEntity;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * @Desc : 本轮发给模型的会话记忆：较早对话的摘要 + 预算内原样保留的最近几轮
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationMemoryVO {
+
+    /** 较早对话的摘要，没有时为null */
+    private String summary;
+
+    /** 原样保留的最近消息，按时间顺序 */
+    private List<ConversationMessageEntity> recentMessages;
+
+    /** 估算的历史部分token数 */
+    private Integer estimatedTokens;
+
+}
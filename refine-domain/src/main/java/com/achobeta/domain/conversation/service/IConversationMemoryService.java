@@ -0,0 +1,30 @@
+package com.achobeta.domain.conversation.service;
+
+import com.achobeta.domain.conversation.model.entity.ConversationMessageEntity;
+import com.achobeta.domain.conversation.model.valobj.ConversationMemoryVO;
+
+import java.util.List;
+
+/**
+ * @Desc : 会话记忆管理，按模型的token预算裁剪历史，较早的对话压缩为滚动摘要
+ */
+public interface IConversationMemoryService {
+
+    /**
+     * 组装本轮要发给模型的记忆
+     *
+     * @param conversationId 会话ID
+     * @param history        完整会话历史
+     * @return 摘要 + 最近几轮
+     */
+    ConversationMemoryVO buildMemory(String conversationId, List<ConversationMessageEntity> history);
+
+    /**
+     * 回复保存后异步刷新摘要，只有消息滑出最近K轮窗口时才会真正调用模型
+     *
+     * @param conversationId 会话ID
+     * @param history        包含本轮问答的完整会话历史
+     */
+    void refreshSummaryAsync(String conversationId, List<ConversationMessageEntity> history);
+
+}
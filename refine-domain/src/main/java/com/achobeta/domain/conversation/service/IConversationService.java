@@ -1,6 +1,6 @@
 package com.achobeta.domain.conversation.service;
 
-import java.util.function.Consumer;
+import reactor.core.publisher.Flux;
 
 /**
  * @Auth : Malog
@@ -11,13 +11,14 @@ public interface IConversationService {
 
     /**
      * 发送消息并获取AI回复（流式）
+     * <p>
+     * 先逐个下发回复片段，回复结束后保存对话到Redis，并以完整回复作为最后一个元素下发
      *
      * @param conversationId 会话ID
      * @param userMessage 用户消息
-     * @param contentCallback 流式回调函数
-     * @return 是否发送成功
+     * @return 回复片段流
      */
-    boolean sendMessageWithStream(String conversationId, String userMessage, Consumer<String> contentCallback);
+    Flux<String> sendMessageStream(String conversationId, String userMessage);
 
     /**
      * 删除会话（清除Redis中的对话历史）
@@ -26,4 +27,4 @@ public interface IConversationService {
      * @return 是否删除成功
      */
     boolean deleteConversation(String conversationId);
-}
\ No newline at end of file
+}
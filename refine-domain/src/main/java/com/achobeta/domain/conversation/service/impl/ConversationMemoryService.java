@@ -0,0 +1,199 @@
+package com.achobeta.domain.conversation.service.impl;
+
+import com.achobeta.domain.ai.service.IAiService;
+import com.achobeta.domain.conversation.adapter.port.redis.IConversationRedisRepository;
+import com.achobeta.domain.conversation.model.entity.ConversationMessageEntity;
+import com.achobeta.domain.conversation.model.entity.ConversationSummaryEntity;
+import com.achobeta.domain.conversation.model.valobj.ConversationMemoryVO;
+import com.achobeta.domain.conversation.service.IConversationMemoryService;
+import jakarta.annotation.Resource;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Service;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * @Desc : 会话记忆管理
+ * <p>
+ * 最近K轮原样保留，滑出窗口的较早对话在每次回复后异步合并进滚动摘要；
+ * 组装记忆时从最新消息往前取，直到用完当前模型的token预算，让长会话的提示词长度保持平稳
+ */
+@Slf4j
+@Service
+@ConfigurationProperties(prefix = "conversation.memory")
+public class ConversationMemoryService implements IConversationMemoryService {
+
+    private static final String SUMMARY_PROMPT = """
+            你是一位辅导对话记录员。请把下面的历史摘要和新增对话合并成一份新的摘要，供后续继续辅导时参考。
+            要求：
+            - 保留题目内容、已经讲解过的关键步骤和结论、最终答案
+            - 保留学生提出的疑问、出错的地方和薄弱知识点
+            - 省略寒暄和重复内容，不要编造对话中没有的信息
+            - 不超过%d字，直接输出摘要正文
+            """;
+
+    /**
+     * 每条消息除内容外的固定开销（角色标记等）
+     */
+    private static final int MESSAGE_OVERHEAD_TOKENS = 4;
+
+    @Resource
+    private IAiService aiService;
+
+    @Resource
+    private IConversationRedisRepository conversationRedisRepository;
+
+    /**
+     * 当前解题使用的模型
+     */
+    @Value("${dashscope.MODEL_NAME:qwen3-max}")
+    private String modelName;
+
+    /**
+     * 原样保留的最近轮数（一问一答为一轮）
+     */
+    @Setter
+    private int recentTurns = 3;
+
+    /**
+     * 未单独配置的模型使用的历史token预算（不含系统提示词和本轮问题）
+     */
+    @Setter
+    private int defaultTokenBudget = 4000;
+
+    /**
+     * 各模型的历史token预算，key为模型名
+     */
+    @Setter
+    private Map<String, Integer> tokenBudgets = new HashMap<>();
+
+    /**
+     * 摘要最大字数
+     */
+    @Setter
+    private int summaryMaxChars = 500;
+
+    /**
+     * 摘要任务锁的过期时间（毫秒）
+     */
+    @Setter
+    private long summaryLockTime = 60_000;
+
+    @Override
+    public ConversationMemoryVO buildMemory(String conversationId, List<ConversationMessageEntity> history) {
+        if (history == null || history.isEmpty()) {
+            return ConversationMemoryVO.builder()
+                    .recentMessages(List.of())
+                    .estimatedTokens(0)
+                    .build();
+        }
+        int budget = tokenBudgets.getOrDefault(modelName, defaultTokenBudget);
+
+        // 摘要覆盖的消息不再原样发送
+        String summary = null;
+        int summarizedCount = 0;
+        ConversationSummaryEntity summaryEntity = conversationRedisRepository.getConversationSummary(conversationId);
+        if (summaryEntity != null && summaryEntity.getSummary() != null
+                && summaryEntity.getSummarizedCount() != null && summaryEntity.getSummarizedCount() <= history.size()) {
+            summary = summaryEntity.getSummary();
+            summarizedCount = summaryEntity.getSummarizedCount();
+        }
+        int used = estimateTokens(summary);
+
+        // 从最新的消息往前取，摘要尚未覆盖的较早消息在预算允许时也一并带上
+        Deque<ConversationMessageEntity> recent = new ArrayDeque<>();
+        for (int i = history.size() - 1; i >= summarizedCount; i--) {
+            int tokens = estimateTokens(history.get(i).getMessageContent()) + MESSAGE_OVERHEAD_TOKENS;
+            if (used + tokens > budget) {
+                log.debug("会话历史超出token预算，丢弃更早的消息: conversationId={}, 丢弃条数={}", conversationId, i - summarizedCount + 1);
+                break;
+            }
+            recent.addFirst(history.get(i));
+            used += tokens;
+        }
+
+        return ConversationMemoryVO.builder()
+                .summary(summary)
+                .recentMessages(new ArrayList<>(recent))
+                .estimatedTokens(used)
+                .build();
+    }
+
+    @Override
+    public void refreshSummaryAsync(String conversationId, List<ConversationMessageEntity> history) {
+        int windowStart = Math.max(0, history.size() - recentTurns * 2);
+        ConversationSummaryEntity previous = conversationRedisRepository.getConversationSummary(conversationId);
+        int summarizedCount = previous == null || previous.getSummarizedCount() == null ? 0 : previous.getSummarizedCount();
+        if (windowStart <= summarizedCount) {
+            return;
+        }
+        if (!conversationRedisRepository.tryLockSummary(conversationId, summaryLockTime)) {
+            log.debug("会话摘要正在生成，跳过本次刷新: conversationId={}", conversationId);
+            return;
+        }
+
+        String prompt = buildSummaryPrompt(previous == null ? null : previous.getSummary(),
+                new ArrayList<>(history.subList(summarizedCount, windowStart)));
+        aiService.aiChatStream(prompt)
+                .collect(Collectors.joining())
+                // 保存Redis是阻塞操作，不能占用模型SDK的IO线程
+                .publishOn(Schedulers.boundedElastic())
+                .doFinally(signal -> conversationRedisRepository.unlockSummary(conversationId))
+                .subscribe(summary -> {
+                    if (summary.isBlank()) {
+                        log.warn("模型返回的会话摘要为空: conversationId={}", conversationId);
+                        return;
+                    }
+                    conversationRedisRepository.saveConversationSummary(conversationId, ConversationSummaryEntity.builder()
+                            .conversationId(conversationId)
+                            .summary(summary.trim())
+                            .summarizedCount(windowStart)
+                            .updateTime(LocalDateTime.now())
+                            .build());
+                    log.debug("会话摘要已更新: conversationId={}, 覆盖消息数={}", conversationId, windowStart);
+                }, e -> log.warn("生成会话摘要失败: conversationId={}", conversationId, e));
+    }
+
+    private String buildSummaryPrompt(String previousSummary, List<ConversationMessageEntity> messages) {
+        StringBuilder prompt = new StringBuilder(SUMMARY_PROMPT.formatted(summaryMaxChars));
+        prompt.append("\n【历史摘要】\n").append(previousSummary == null ? "无" : previousSummary);
+        prompt.append("\n\n【新增对话】\n");
+        for (ConversationMessageEntity message : messages) {
+            prompt.append(message.isUserMessage() ? "学生：" : "老师：")
+                    .append(message.getMessageContent())
+                    .append('\n');
+        }
+        return prompt.toString();
+    }
+
+    /**
+     * 粗略估算token数：通义千问分词下一个汉字约1个token，英文、数字和符号约4个字符1个token
+     */
+    static int estimateTokens(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int han = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.UnicodeScript.of(text.charAt(i)) == Character.UnicodeScript.HAN) {
+                han++;
+            } else {
+                other++;
+            }
+        }
+        return han + (other + 3) / 4;
+    }
+
+}
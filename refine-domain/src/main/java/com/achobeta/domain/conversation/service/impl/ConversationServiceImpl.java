@@ -1,16 +1,22 @@
 package com.achobeta.domain.conversation.service.impl;
 
 import com.achobeta.domain.ai.service.IAiService;
+import com.achobeta.domain.ai.service.IStreamCoalescer;
 import com.achobeta.domain.conversation.adapter.port.redis.IConversationRedisRepository;
 import com.achobeta.domain.conversation.model.entity.ConversationMessageEntity;
+import com.achobeta.domain.conversation.model.valobj.ConversationMemoryVO;
+import com.achobeta.domain.conversation.service.IConversationMemoryService;
 import com.achobeta.domain.conversation.service.IConversationService;
+import com.achobeta.types.exception.AppException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.function.Consumer;
 
 /**
  * @Auth : Malog
@@ -24,37 +30,44 @@ public class ConversationServiceImpl implements IConversationService {
 
     private final IAiService aiService;
     private final IConversationRedisRepository conversationRedisRepository;
+    private final IConversationMemoryService conversationMemoryService;
+    private final IStreamCoalescer streamCoalescer;
 
     @Override
-    public boolean sendMessageWithStream(String conversationId, String userMessage, Consumer<String> contentCallback) {
-        try {
-            if (conversationId == null || conversationId.trim().isEmpty()) {
-                log.warn("会话ID为空，无法发送消息");
-                return false;
-            }
-            if (userMessage == null || userMessage.trim().isEmpty()) {
-                log.warn("用户消息为空，无法发送");
-                return false;
-            }
+    public Flux<String> sendMessageStream(String conversationId, String userMessage) {
+        if (conversationId == null || conversationId.trim().isEmpty()) {
+            log.warn("会话ID为空，无法发送消息");
+            return Flux.error(new AppException("会话ID为空"));
+        }
+        if (userMessage == null || userMessage.trim().isEmpty()) {
+            log.warn("用户消息为空，无法发送");
+            return Flux.error(new AppException("用户消息为空"));
+        }
 
+        return Flux.defer(() -> {
             // 从Redis获取会话历史（如果是第一次对话，历史为空）
             List<ConversationMessageEntity> conversationHistory = conversationRedisRepository.getConversationHistory(conversationId);
             if (conversationHistory == null) {
                 conversationHistory = new ArrayList<>();
                 log.info("未找到会话历史，使用空历史列表: conversationId={}", conversationId);
             }
+            List<ConversationMessageEntity> history = conversationHistory;
 
-            // 创建包装的回调，用于处理AI回复完成后的保存操作
-            Consumer<String> wrappedCallback = createWrappedCallback(conversationId, userMessage, conversationHistory, contentCallback);
+            // 按token预算裁剪历史，较早的对话以摘要形式带上
+            ConversationMemoryVO memory = conversationMemoryService.buildMemory(conversationId, history);
 
-            // 调用AI服务获取回复（带上下文）
-            aiService.aiSolveQuestionWithContext(conversationId, userMessage, conversationHistory, wrappedCallback);
-
-            return true;
-        } catch (Exception e) {
-            log.error("发送消息时发生异常: conversationId={}, userMessage={}", conversationId, userMessage, e);
-            return false;
-        }
+            // 收集片段，回复结束后保存完整对话；只合并模型片段，最后的完整回复单独下发
+            StringBuilder completeResponse = new StringBuilder();
+            return streamCoalescer.coalesce(aiService.aiSolveQuestionWithMemoryStream(conversationId, userMessage, memory)
+                            .doOnNext(completeResponse::append))
+                    .concatWith(Mono.fromCallable(() -> {
+                                String aiResponse = completeResponse.toString();
+                                saveConversationToRedis(conversationId, userMessage, aiResponse, history);
+                                return aiResponse;
+                            })
+                            // 保存Redis是阻塞操作，不能占用模型SDK的IO线程
+                            .subscribeOn(Schedulers.boundedElastic()));
+        }).doOnError(e -> log.error("发送消息时发生异常: conversationId={}, userMessage={}", conversationId, userMessage, e));
     }
 
     @Override
@@ -80,34 +93,6 @@ public class ConversationServiceImpl implements IConversationService {
         }
     }
 
-    /**
-     * 创建包装的回调函数，用于处理AI回复完成后的保存操作
-     */
-    private Consumer<String> createWrappedCallback(String conversationId, String userMessage, 
-                                                  List<ConversationMessageEntity> conversationHistory, 
-                                                  Consumer<String> originalCallback) {
-        return content -> {
-            // 检查是否是AI回复完成的特殊标记
-            if (content.startsWith("###AI_RESPONSE_END###")) {
-                // 提取完整的AI回复内容
-                String aiResponse = content.substring("###AI_RESPONSE_END###".length());
-                
-                // 保存完整的对话到Redis
-                saveConversationToRedis(conversationId, userMessage, aiResponse, conversationHistory);
-                
-                // 移除特殊标记，只发送纯内容给前端
-                if (originalCallback != null) {
-                    originalCallback.accept(aiResponse);
-                }
-            } else {
-                // 普通流式输出，直接传递给前端
-                if (originalCallback != null) {
-                    originalCallback.accept(content);
-                }
-            }
-        };
-    }
-
     /**
      * 保存完整的对话到Redis
      */
@@ -139,6 +124,8 @@ public class ConversationServiceImpl implements IConversationService {
             boolean success = conversationRedisRepository.saveConversationHistory(conversationId, updatedHistory);
             if (success) {
                 log.debug("保存对话到Redis成功: conversationId={}", conversationId);
+                // 滑出最近几轮窗口的对话异步合并进摘要
+                conversationMemoryService.refreshSummaryAsync(conversationId, updatedHistory);
             } else {
                 log.error("保存对话到Redis失败: conversationId={}", conversationId);
             }
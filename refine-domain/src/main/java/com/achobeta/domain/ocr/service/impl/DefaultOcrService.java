@@ -108,7 +108,7 @@ public class DefaultOcrService implements IOcrService {
         questionEntity.setQuestionId(uuid);
         questionEntity.setUserId(userId);
 
-        // 存储学习行为向量到向量数据库
+        // 存储学习行为向量到向量数据库（异步写入，仅入队，不阻塞上传）
         try {
             // 调用向量服务存储学习向量，行为类型为"upload"表示用户上传题目
             boolean vectorStored = vectorService.storeLearningVector(
@@ -121,7 +121,7 @@ public class DefaultOcrService implements IOcrService {
             );
 
             if (vectorStored) {
-                log.info("成功存储题目向量到向量数据库，userId:{} questionId:{}", userId, uuid);
+                log.info("已提交题目向量存储，userId:{} questionId:{}", userId, uuid);
             } else {
                 log.warn("存储题目向量到向量数据库失败，但不影响OCR主流程，userId:{} questionId:{}", userId, uuid);
             }
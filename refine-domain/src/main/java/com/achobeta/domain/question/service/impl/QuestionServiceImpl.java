@@ -1,5 +1,6 @@
 package com.achobeta.domain.question.service.impl;
 
+import com.achobeta.domain.ai.service.IStreamCoalescer;
 import com.achobeta.domain.question.adapter.port.AiGenerationService;
 import com.achobeta.domain.question.adapter.repository.IKnowledgeRepository;
 import com.achobeta.domain.question.adapter.repository.IMistakeRepository;
@@ -37,6 +38,8 @@ public class QuestionServiceImpl extends AbstractPostProcessor<QuestionResponseD
 
     private final AiGenerationService aiGenerationService;
 
+    private final IStreamCoalescer streamCoalescer;
+
     @Resource(name = "mistakeExecutor")
     private Executor mistakeExecutor;
 
@@ -146,8 +149,9 @@ public class QuestionServiceImpl extends AbstractPostProcessor<QuestionResponseD
         String chat = "请根据题目:\"" + questionContent + "\"以及正确答案:\"" + correctAnswer + "\"，判断答案:\"" + correctAnswer + "\"是否正确，并给出解析。";
 
         // 将ai流式调用提交到自定义线程池
-        return Flux.defer(() -> aiGenerationService.aiJudgeStream(chat))
-                .subscribeOn(Schedulers.fromExecutor(aiExclusiveThreadPool))
+        Flux<String> chunks = Flux.defer(() -> aiGenerationService.aiJudgeStream(chat))
+                .subscribeOn(Schedulers.fromExecutor(aiExclusiveThreadPool));
+        return streamCoalescer.coalesce(chunks)
                 .map(chunk -> ServerSentEvent.<String>builder()
                         .data(chunk)
                         .build());
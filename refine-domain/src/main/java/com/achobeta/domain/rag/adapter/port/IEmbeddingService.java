@@ -0,0 +1,37 @@
+package com.achobeta.domain.rag.adapter.port;
+
+import java.util.List;
+
+/**
+ * @Desc : 文本向量化服务，由 vector.database.embedding.provider 选择远程（dashscope）或本地（local）实现
+ */
+public interface IEmbeddingService {
+
+    /**
+     * 生成单条文本的向量
+     */
+    float[] embed(String text);
+
+    /**
+     * 批量生成向量，结果与输入一一对应
+     */
+    List<float[]> embedAll(List<String> texts);
+
+    /**
+     * 向量维度
+     */
+    int dimension();
+
+    /**
+     * 模型标识，用作向量缓存键的一部分，换模型后旧缓存自然失效
+     */
+    String modelId();
+
+    /**
+     * 是否为降级生成的向量（如远程调用失败时的备用向量），降级结果不应被缓存
+     */
+    default boolean isDegraded(float[] vector) {
+        return false;
+    }
+
+}
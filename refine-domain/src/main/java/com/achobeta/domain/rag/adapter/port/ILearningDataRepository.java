@@ -1,6 +1,7 @@
 package com.achobeta.domain.rag.adapter.port;
 
 import com.achobeta.domain.rag.model.entity.LearningVectorEntity;
+import com.achobeta.domain.rag.model.valobj.LearningDynamicsCacheVO;
 import com.achobeta.domain.rag.model.valobj.LearningStatisticsVO;
 
 import java.util.List;
@@ -32,4 +33,28 @@ public interface ILearningDataRepository {
      * 获取用户最近N天按行为类型分组的学习数据
      */
     List<Map<String, Object>> getUserLearningDataByActionType(String userId, int days);
+
+    /**
+     * 获取缓存的学习动态，不存在时返回null
+     */
+    LearningDynamicsCacheVO getLearningDynamicsCache(String userId);
+
+    /**
+     * 缓存学习动态
+     *
+     * @param expireTime 过期时间（毫秒），即允许读到的最旧数据
+     */
+    void saveLearningDynamicsCache(String userId, LearningDynamicsCacheVO cache, long expireTime);
+
+    /**
+     * 获取用户学习数据的版本号，写入学习向量时递增
+     */
+    long getLearningDataVersion(String userId);
+
+    /**
+     * 抢占学习动态刷新任务，同一用户同时只有一个刷新任务
+     */
+    boolean tryLockDynamicsRefresh(String userId, long expireTime);
+
+    void unlockDynamicsRefresh(String userId);
 }
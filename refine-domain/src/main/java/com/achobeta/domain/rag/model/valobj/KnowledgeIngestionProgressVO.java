@@ -0,0 +1,71 @@
+package com.achobeta.domain.rag.model.valobj;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * @Desc : 知识库入库任务进度（最近一次任务）
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class KnowledgeIngestionProgressVO {
+
+    /**
+     * 任务是否在执行
+     */
+    private boolean running;
+
+    /**
+     * 任务类型：sync（目录增量同步）或 upload（上传文档）
+     */
+    private String job;
+
+    private LocalDateTime startedAt;
+
+    private LocalDateTime finishedAt;
+
+    /**
+     * 需要入库的文档数（内容未变化的不计）
+     */
+    private int documentsTotal;
+
+    private int documentsDone;
+
+    private int documentsFailed;
+
+    /**
+     * 已生成向量的片段数
+     */
+    private long segmentsEmbedded;
+
+    /**
+     * 已写入数据库的片段数
+     */
+    private long segmentsWritten;
+
+    /**
+     * 已入库文档的字节数
+     */
+    private long bytesProcessed;
+
+    /**
+     * 写入吞吐（片段/秒）
+     */
+    private double segmentsPerSecond;
+
+    /**
+     * 处理吞吐（MB/秒）
+     */
+    private double megabytesPerSecond;
+
+    /**
+     * 最近一次失败原因
+     */
+    private String lastError;
+}
@@ -0,0 +1,28 @@
+package com.achobeta.domain.rag.model.valobj;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * @Desc : 缓存的学习动态及其新鲜度信息
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LearningDynamicsCacheVO {
+
+    /** 学习动态 */
+    private List<LearningDynamicVO> dynamics;
+
+    /** 计算时用户学习数据的版本号，每写入一条学习向量版本号加一 */
+    private Long dataVersion;
+
+    /** 计算完成时间（毫秒时间戳） */
+    private Long computedAt;
+
+}
@@ -0,0 +1,24 @@
+package com.achobeta.domain.rag.service;
+
+import com.achobeta.domain.rag.model.valobj.KnowledgeIngestionProgressVO;
+
+/**
+ * @Desc : 知识库文档入库服务
+ */
+public interface IKnowledgeIngestionService {
+
+    /**
+     * 后台执行文档目录的增量同步，已有任务在执行时返回false
+     */
+    boolean sync();
+
+    /**
+     * 后台入库一篇上传的文本文档（UTF-8），同名文档视为新版本；已有任务在执行时返回false
+     */
+    boolean addDocument(String fileName, byte[] content);
+
+    /**
+     * 最近一次入库任务的进度与吞吐
+     */
+    KnowledgeIngestionProgressVO progress();
+}
@@ -18,6 +18,24 @@ public interface ILearningDynamicsService {
      * @return 学习动态列表（最多3条）
      */
     List<LearningDynamicVO> analyzeUserLearningDynamics(String userId);
+
+    /**
+     * 获取用户学习动态（优先读缓存）
+     * <p>
+     * 缓存未过期直接返回；已过期或学习数据有更新时仍返回旧值，同时异步刷新；
+     * 只有缓存不存在时才同步分析
+     *
+     * @param userId 用户ID
+     * @return 学习动态列表（最多3条）
+     */
+    List<LearningDynamicVO> getUserLearningDynamics(String userId);
+
+    /**
+     * 异步重新分析并刷新缓存，同一用户同时只有一个刷新任务
+     *
+     * @param userId 用户ID
+     */
+    void refreshUserLearningDynamicsAsync(String userId);
     
     /**
      * 获取用户最近N天的学习数据
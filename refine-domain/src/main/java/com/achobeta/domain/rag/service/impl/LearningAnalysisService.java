@@ -36,8 +36,8 @@ public class LearningAnalysisService {
         try {
             log.info("用户登录触发学习动态分析，userId:{}", userId);
 
-            // 分析用户最近7天的学习动态
-            List<LearningDynamicVO> dynamics = learningDynamicsService.analyzeUserLearningDynamics(userId);
+            // 预热学习动态缓存：缓存新鲜时不重复分析，过期时异步刷新
+            List<LearningDynamicVO> dynamics = learningDynamicsService.getUserLearningDynamics(userId);
 
             log.info("用户登录学习动态分析完成，userId:{} 动态数量:{}", userId, dynamics.size());
             return dynamics;
@@ -84,7 +84,7 @@ public class LearningAnalysisService {
     public List<LearningDynamicVO> getUserLearningDynamics(String userId) {
         try {
             log.info("获取用户学习动态，userId:{}", userId);
-            return learningDynamicsService.analyzeUserLearningDynamics(userId);
+            return learningDynamicsService.getUserLearningDynamics(userId);
         } catch (Exception e) {
             log.error("获取用户学习动态失败，userId:{}", userId, e);
             return Collections.emptyList();
@@ -2,23 +2,32 @@ package com.achobeta.domain.rag.service.impl;
 
 import com.achobeta.domain.rag.service.ILearningDynamicsService;
 import com.achobeta.domain.rag.model.valobj.LearningDynamicVO;
+import com.achobeta.domain.rag.model.valobj.LearningDynamicsCacheVO;
 import com.achobeta.domain.rag.model.valobj.LearningStatisticsVO;
 import com.achobeta.domain.rag.model.entity.LearningVectorEntity;
 import com.achobeta.domain.rag.adapter.port.ILearningDataRepository;
 import com.achobeta.domain.ai.service.IAiService;
+import com.achobeta.domain.ai.service.ISingleFlightService;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.Resource;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
+import static com.achobeta.types.common.Constants.LEARNING_DYNAMICS_CACHE_KEY;
+
 @Slf4j
 @Service
+@ConfigurationProperties(prefix = "learning.dynamics.cache")
 public class LearningDynamicsServiceImpl implements ILearningDynamicsService {
 
     @Autowired
@@ -27,10 +36,115 @@ public class LearningDynamicsServiceImpl implements ILearningDynamicsService {
     @Autowired
     private IAiService aiService;
 
+    @Autowired
+    private ISingleFlightService singleFlightService;
+
+    @Resource(name = "aiExclusiveThreadPool")
+    private Executor aiExclusiveThreadPool;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    @Setter
+    private boolean enabled = true;
+
+    /**
+     * 缓存保持新鲜的时间（毫秒），超过后读取仍返回旧值并触发异步刷新
+     */
+    @Setter
+    private long freshTime = 10 * 60 * 1000L;
+
+    /**
+     * 允许返回的最旧数据（毫秒），即缓存在Redis中的过期时间，超过后同步重新分析
+     */
+    @Setter
+    private long maxStaleTime = 24 * 60 * 60 * 1000L;
+
+    /**
+     * 刷新任务锁的过期时间（毫秒），应大于一次分析的最长耗时
+     */
+    @Setter
+    private long refreshLockTime = 60 * 1000L;
+
+    /**
+     * 降级结果（AI失败、被限流时的规则结果或空结果）的缓存时间（毫秒），只用于冷启动时挡住重复分析，
+     * 已有缓存时不会被降级结果覆盖
+     */
+    @Setter
+    private long degradedTtl = 60 * 1000L;
+
+    @Override
+    public List<LearningDynamicVO> getUserLearningDynamics(String userId) {
+        if (!enabled) {
+            return analyzeUserLearningDynamics(userId);
+        }
+
+        LearningDynamicsCacheVO cache = learningDataRepository.getLearningDynamicsCache(userId);
+        if (cache == null) {
+            // 冷启动：同一用户的并发请求只分析一次
+            return singleFlightService.execute(LEARNING_DYNAMICS_CACHE_KEY + userId, () -> analyzeAndCache(userId));
+        }
+
+        long version = learningDataRepository.getLearningDataVersion(userId);
+        boolean expired = System.currentTimeMillis() - cache.getComputedAt() >= freshTime;
+        if (expired || cache.getDataVersion() != version) {
+            log.debug("学习动态缓存已过期，返回旧值并异步刷新，userId:{}", userId);
+            refreshUserLearningDynamicsAsync(userId);
+        }
+        return cache.getDynamics();
+    }
+
+    @Override
+    public void refreshUserLearningDynamicsAsync(String userId) {
+        if (!learningDataRepository.tryLockDynamicsRefresh(userId, refreshLockTime)) {
+            log.debug("学习动态正在刷新，跳过本次刷新，userId:{}", userId);
+            return;
+        }
+        try {
+            aiExclusiveThreadPool.execute(() -> {
+                try {
+                    analyzeAndCache(userId);
+                } finally {
+                    learningDataRepository.unlockDynamicsRefresh(userId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            learningDataRepository.unlockDynamicsRefresh(userId);
+            log.warn("学习动态刷新任务被拒绝，userId:{}", userId);
+        }
+    }
+
+    /**
+     * 分析学习动态并写入缓存；版本号在分析前读取，分析期间的新写入会让下次读取再次刷新。
+     * 降级结果不覆盖已有缓存，没有缓存时只短时间缓存且不允许过期后继续返回
+     */
+    private List<LearningDynamicVO> analyzeAndCache(String userId) {
+        long version = learningDataRepository.getLearningDataVersion(userId);
+        Analysis analysis = analyze(userId);
+        long ttl = maxStaleTime;
+        if (analysis.degraded()) {
+            if (learningDataRepository.getLearningDynamicsCache(userId) != null) {
+                log.info("学习动态分析降级，保留已有缓存，userId:{}", userId);
+                return analysis.dynamics();
+            }
+            ttl = degradedTtl;
+        }
+        learningDataRepository.saveLearningDynamicsCache(userId, LearningDynamicsCacheVO.builder()
+                .dynamics(new ArrayList<>(analysis.dynamics()))
+                .dataVersion(version)
+                .computedAt(System.currentTimeMillis())
+                .build(), ttl);
+        return analysis.dynamics();
+    }
+
     @Override
     public List<LearningDynamicVO> analyzeUserLearningDynamics(String userId) {
+        return analyze(userId).dynamics();
+    }
+
+    /**
+     * 分析学习动态，AI调用失败、超时、被限流或结果无法解析时标记为降级
+     */
+    private Analysis analyze(String userId) {
         try {
             log.info("开始分析用户学习动态，userId:{}", userId);
 
@@ -39,35 +153,30 @@ public class LearningDynamicsServiceImpl implements ILearningDynamicsService {
 
             if (learningDataSummary.isEmpty()) {
                 log.info("用户最近7天无学习数据，userId:{}", userId);
-                return Collections.emptyList();
+                return new Analysis(Collections.emptyList(), false);
             }
 
             // 2. 构建AI分析提示词
             String analysisPrompt = buildAnalysisPrompt(learningDataSummary);
 
-            // 3. 使用AI分析学习动态
-            List<LearningDynamicVO> dynamics = new ArrayList<>();
-            // 异步执行AI分析任务，解析题目并生成学习动态
-            CompletableFuture<Void> aiAnalysis = CompletableFuture.runAsync(() -> {
-                aiService.aiChat(analysisPrompt, response -> {
-                    try {
-                        // 解析AI返回的JSON格式学习动态
-                        List<LearningDynamicVO> parsedDynamics = parseAIResponse(response);
-                        dynamics.addAll(parsedDynamics);
-                    } catch (Exception e) {
-                        log.error("解析AI分析结果失败", e);
-                    }
-                });
-            });
-
-
-            // 等待AI分析完成，最多等待30秒
+            // 3. 使用AI分析学习动态：流式输出为增量片段，拼接完整回复后再解析，最多等待30秒
+            String response;
             try {
-                aiAnalysis.get(30, TimeUnit.SECONDS);
+                response = aiService.aiChatStream(analysisPrompt)
+                        .collect(Collectors.joining())
+                        .block(Duration.ofSeconds(30));
             } catch (Exception e) {
                 log.error("AI分析超时或失败", e);
                 // 如果AI分析失败，返回基于规则的分析结果
-                return generateRuleBasedDynamics(userId);
+                return new Analysis(generateRuleBasedDynamics(userId), true);
+            }
+            List<LearningDynamicVO> dynamics;
+            try {
+                // 解析AI返回的JSON格式学习动态
+                dynamics = response == null ? Collections.emptyList() : parseAIResponse(response);
+            } catch (Exception e) {
+                log.error("解析AI分析结果失败", e);
+                dynamics = Collections.emptyList();
             }
             // 4. 限制返回最多3条动态
             List<LearningDynamicVO> result = dynamics.stream()
@@ -76,11 +185,12 @@ public class LearningDynamicsServiceImpl implements ILearningDynamicsService {
                     .collect(Collectors.toList());
 
             log.info("用户学习动态分析完成，userId:{} 动态数量:{}", userId, result.size());
-            return result;
+            // 有学习数据却没有解析出任何动态，视为AI结果不可用
+            return new Analysis(result, result.isEmpty());
 
         } catch (Exception e) {
             log.error("分析用户学习动态失败，userId:{}", userId, e);
-            return Collections.emptyList();
+            return new Analysis(Collections.emptyList(), true);
         }
     }
 
@@ -338,4 +448,10 @@ public class LearningDynamicsServiceImpl implements ILearningDynamicsService {
                 return "学习";
         }
     }
+
+    /**
+     * 一次分析的结果，degraded 为 true 时不是AI的正常分析结果
+     */
+    private record Analysis(List<LearningDynamicVO> dynamics, boolean degraded) {
+    }
 }
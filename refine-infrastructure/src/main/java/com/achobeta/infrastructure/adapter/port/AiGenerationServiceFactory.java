@@ -1,11 +1,15 @@
 package com.achobeta.infrastructure.adapter.port;
 
+import com.achobeta.domain.ai.service.IModelCallLimiter;
+import com.achobeta.domain.ai.service.IModelResilienceService;
+import com.achobeta.domain.ai.service.ISingleFlightService;
 import com.achobeta.domain.question.adapter.port.AiGenerationService;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.rag.content.retriever.ContentRetriever;
 import dev.langchain4j.service.AiServices;
 import jakarta.annotation.Resource;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -24,6 +28,21 @@ public class AiGenerationServiceFactory {
     @Resource
     private ContentRetriever contentRetriever;
 
+    @Resource
+    private IModelCallLimiter modelCallLimiter;
+
+    @Resource
+    private ISingleFlightService singleFlightService;
+
+    @Resource
+    private IModelResilienceService modelResilienceService;
+
+    @Value("${langchain4j.community.dashscope.chat-model.model-name}")
+    private String chatModelName;
+
+    @Value("${langchain4j.community.dashscope.streaming-chat-model.model-name}")
+    private String streamingModelName;
+
     @Bean
     public AiGenerationService aiGenerationService() {
         AiGenerationService build = AiServices.builder(AiGenerationService.class)
@@ -31,7 +50,9 @@ public class AiGenerationServiceFactory {
                 .streamingChatModel(qwenStreamingChatModel) //流式输出
                 .contentRetriever(contentRetriever) // RAG检索增强
                 .build();
-        return build;
+        // 相同请求合并、超时熔断，所有模型调用都要经过集群级准入控制
+        return new GuardedAiGenerationService(build, modelCallLimiter, singleFlightService,
+                modelResilienceService, chatModelName, streamingModelName);
     }
 
 }
@@ -0,0 +1,52 @@
+package com.achobeta.infrastructure.adapter.port;
+
+import com.achobeta.api.dto.QuestionResponseDTO;
+import com.achobeta.domain.ai.model.valobj.ModelCallType;
+import com.achobeta.domain.ai.service.IModelCallLimiter;
+import com.achobeta.domain.ai.service.IModelResilienceService;
+import com.achobeta.domain.ai.service.ISingleFlightService;
+import com.achobeta.domain.question.adapter.port.AiGenerationService;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
+
+/**
+ * 为LangChain4j生成的AiGenerationService代理加上相同请求合并、超时熔断与集群级准入控制，
+ * 合并在外层，被合并的调用方不占用许可；代理绑定了单个模型，只做超时和熔断，不降级
+ */
+@RequiredArgsConstructor
+public class GuardedAiGenerationService implements AiGenerationService {
+
+    private final AiGenerationService delegate;
+
+    private final IModelCallLimiter modelCallLimiter;
+
+    private final ISingleFlightService singleFlightService;
+
+    private final IModelResilienceService modelResilienceService;
+
+    private final String chatModelName;
+
+    private final String streamingModelName;
+
+    @Override
+    public QuestionResponseDTO Generation(String message) {
+        return singleFlightService.execute(ISingleFlightService.key("aiGeneration.Generation", message),
+                () -> modelResilienceService.call(chatModelName, null,
+                        model -> modelCallLimiter.execute(ModelCallType.CHAT, () -> delegate.Generation(message))));
+    }
+
+    @Override
+    public Flux<String> aiJudgeStream(String message) {
+        return singleFlightService.executeStream(ISingleFlightService.key("aiGeneration.aiJudgeStream", message),
+                () -> modelResilienceService.stream(streamingModelName, null,
+                        model -> modelCallLimiter.executeStream(ModelCallType.STREAM, () -> delegate.aiJudgeStream(message))));
+    }
+
+    @Override
+    public String chat(String message) {
+        return singleFlightService.execute(ISingleFlightService.key("aiGeneration.chat", message),
+                () -> modelResilienceService.call(chatModelName, null,
+                        model -> modelCallLimiter.execute(ModelCallType.CHAT, () -> delegate.chat(message))));
+    }
+
+}
@@ -0,0 +1,194 @@
+package com.achobeta.infrastructure.adapter.repository;
+
+import com.achobeta.infrastructure.dao.IVectorDao;
+import com.achobeta.infrastructure.dao.po.LearningVector;
+import com.achobeta.infrastructure.vector.ReciprocalRankFusion;
+import com.achobeta.infrastructure.vector.UserVectorIndexCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * @Desc : 相似题目的词法 + 向量混合检索
+ * <p>
+ * 词法侧按题目内容的 n-gram 词元匹配（索引见 {@link VectorIndexManager}），能区分只有数字不同的题目，
+ * 向量检索对这类差异不敏感。两路并行，结果按倒数排名融合（RRF）合并。
+ * 词法检索先行一小段时间，已有足够多高分命中时直接返回，不再调用向量化接口。
+ * 词法检索线程池使用有界队列，排队已满时本次不做词法检索，只用向量结果
+ */
+@Slf4j
+@Component
+@ConfigurationProperties(prefix = "vector.database.search.hybrid")
+public class HybridQuestionSearcher {
+
+    @Resource
+    private IVectorDao vectorDao;
+
+    @Resource
+    private VectorIndexManager indexManager;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Setter
+    private boolean enabled = true;
+
+    /**
+     * 每路取 limit × candidateFactor 条参与融合
+     */
+    @Setter
+    private int candidateFactor = 2;
+
+    /**
+     * RRF 平滑常数
+     */
+    @Setter
+    private int rrfK = 60;
+
+    /**
+     * 词法得分（查询与题目 n-gram 集合的 Dice 系数）不低于该值视为可信命中
+     */
+    @Setter
+    private double confidentScore = 0.85;
+
+    /**
+     * 可信命中达到 min(limit, confidentHits) 条时只返回词法结果
+     */
+    @Setter
+    private int confidentHits = 3;
+
+    /**
+     * 向量化前等待词法结果的最长时间（毫秒），超过后两路并行
+     */
+    @Setter
+    private long lexicalWait = 50;
+
+    /**
+     * 融合时等待词法结果的最长时间（毫秒），超时只返回向量结果
+     */
+    @Setter
+    private long lexicalTimeout = 1000;
+
+    /**
+     * 词法检索线程数
+     */
+    @Setter
+    private int workers = 4;
+
+    /**
+     * 等待执行的词法检索上限，超过后拒绝，避免数据库变慢时任务无限堆积
+     */
+    @Setter
+    private int queueCapacity = 100;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        int threads = Math.max(1, workers);
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), runnable -> {
+            Thread thread = new Thread(runnable, "hybrid-lexical-search");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 词法分词函数由索引管理创建，未就绪时只做向量检索
+     */
+    public boolean isEnabled() {
+        return enabled && indexManager.lexicalReady();
+    }
+
+    /**
+     * 每路检索的候选数
+     */
+    public int candidatesFor(int limit) {
+        return Math.max(limit, limit * candidateFactor);
+    }
+
+    /**
+     * 异步执行词法检索，失败或线程池排队已满时得到空列表
+     */
+    public CompletableFuture<List<LearningVector>> searchLexical(String userId, String queryText, int limit) {
+        if (queryText == null || queryText.isBlank()) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        try {
+            return CompletableFuture.supplyAsync(() -> vectorDao.searchLexicalVectors(userId, queryText, limit), executor)
+                    .exceptionally(e -> {
+                        log.warn("词法检索失败，仅使用向量检索结果，userId:{}", userId, e);
+                        return List.of();
+                    });
+        } catch (RejectedExecutionException e) {
+            meterRegistry.counter("vector.search.hybrid", "path", "rejected").increment();
+            log.warn("词法检索排队已满，仅使用向量检索结果，userId:{}", userId);
+            return CompletableFuture.completedFuture(List.of());
+        }
+    }
+
+    /**
+     * 在 lexicalWait 内拿到词法结果且可信命中足够时返回词法结果，否则返回null
+     */
+    public List<LearningVector> confidentLexical(CompletableFuture<List<LearningVector>> lexical, int limit) {
+        List<LearningVector> hits = await(lexical, lexicalWait);
+        if (hits == null) {
+            return null;
+        }
+        long confident = hits.stream()
+                .filter(hit -> hit.getSimilarity() != null && hit.getSimilarity() >= confidentScore)
+                .count();
+        if (confident == 0 || confident < Math.min(limit, confidentHits)) {
+            return null;
+        }
+        meterRegistry.counter("vector.search.hybrid", "path", "lexical").increment();
+        return hits.size() > limit ? hits.subList(0, limit) : hits;
+    }
+
+    /**
+     * 按 RRF 合并向量与词法结果；同一题目保留向量侧的余弦相似度，只在词法侧出现的保留词法得分
+     */
+    public List<LearningVector> fuse(List<LearningVector> vectors, CompletableFuture<List<LearningVector>> lexical, int limit) {
+        List<LearningVector> lexicalHits = await(lexical, lexicalTimeout);
+        if (lexicalHits == null) {
+            log.warn("等待词法检索超时，仅返回向量检索结果");
+            lexicalHits = List.of();
+        }
+        meterRegistry.counter("vector.search.hybrid", "path", "fused").increment();
+        return ReciprocalRankFusion.fuse(rrfK, limit, UserVectorIndexCache::key, List.of(vectors, lexicalHits))
+                .stream()
+                .map(ReciprocalRankFusion.Fused::item)
+                .toList();
+    }
+
+    private List<LearningVector> await(CompletableFuture<List<LearningVector>> future, long timeout) {
+        try {
+            return future.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+}
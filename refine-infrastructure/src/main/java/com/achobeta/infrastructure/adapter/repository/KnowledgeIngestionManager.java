@@ -0,0 +1,892 @@
+package com.achobeta.infrastructure.adapter.repository;
+
+import com.achobeta.domain.rag.model.valobj.KnowledgeIngestionProgressVO;
+import com.achobeta.domain.keypoints_explanation.adapter.repository.SubjectTransportMappeer;
+import com.achobeta.domain.rag.service.IKnowledgeIngestionService;
+import com.achobeta.infrastructure.gateway.RetrievalCache;
+import com.achobeta.infrastructure.vector.VectorDataSource;
+import com.achobeta.types.enums.GlobalServiceStatusCode;
+import com.achobeta.types.exception.AppException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.DocumentSplitter;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.document.loader.FileSystemDocumentLoader;
+import dev.langchain4j.data.document.splitter.DocumentByParagraphSplitter;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.rag.query.Query;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.MetadataFilterBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * @Desc : 知识库文档增量入库
+ * <p>
+ * knowledge_document_manifest 记录每个文档已提交版本的内容哈希，启动完成后在后台比对文档目录，
+ * 只对新增或内容变化的文档重新分段、生成向量；已删除的文档连同其片段一起删除。
+ * 每个片段的 metadata 带 content_hash，检索只放行清单中已提交的哈希：新版本片段写完并提交清单前不可见。
+ * 多实例部署时通过 advisory lock 保证只有一个实例执行入库，其他实例每隔 manifestRefreshInterval 刷新已提交的哈希；
+ * 旧版本片段在提交后保留至少一个刷新间隔（按清单的 ingested_at 判断），其他实例切换到新哈希之前仍能检索到旧版本，
+ * 之后由提交时安排的延迟清理或下次同步开始时的清理删除
+ * <p>
+ * 入库流水线：多个文档并行解析、分段；片段按批提交到有界的向量化线程池（队列满时由提交线程自己执行，形成背压），
+ * 各批向量按顺序多行 INSERT 写入，写入与后续批次的向量化重叠进行
+ * <p>
+ * 片段按文件名打上学科标签（学科列表见 subjects），每个学科一个部分 HNSW 索引，按学科检索的代价只与该学科的片段数有关；
+ * 部分索引交给 {@link VectorIndexManager} 在后台以 CONCURRENTLY 方式构建，不阻塞入库
+ */
+@Slf4j
+@Component
+@ConfigurationProperties(prefix = "rag.ingestion")
+public class KnowledgeIngestionManager implements IKnowledgeIngestionService {
+
+    private static final String EMBEDDING_TABLE = "knowledge_embeddings";
+
+    private static final String MANIFEST_TABLE = "knowledge_document_manifest";
+
+    private static final String CONTENT_HASH_KEY = "content_hash";
+
+    private static final String SUBJECT_KEY = "subject";
+
+    private static final String SUBJECT_ID_KEY = "subject_id";
+
+    /**
+     * 文件名中识别不出学科的文档，不单独建分区索引，归入每个学科的检索及未识别出学科的检索
+     */
+    private static final String GENERAL_SUBJECT = "通用";
+
+    /**
+     * 旧版全量入库留下的片段没有哈希，首次启动时统一标记为该值，随后按文档逐个替换
+     */
+    private static final String LEGACY_HASH = "legacy";
+
+    /**
+     * 文档来源：目录中的文档随目录同步增删，上传的文档只存在于数据库，不因目录中没有而删除
+     */
+    private static final String SOURCE_DIRECTORY = "directory";
+
+    private static final String SOURCE_UPLOAD = "upload";
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    @Resource
+    private EmbeddingModel qwenEmbeddingModel;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    private RetrievalCache retrievalCache;
+
+    @Resource
+    private VectorDataSource vectorDataSource;
+
+    @Resource
+    private VectorIndexManager vectorIndexManager;
+
+    @Setter
+    private boolean enabled = true;
+
+    /**
+     * 文档目录，只读取目录下的文件，不递归
+     */
+    @Setter
+    private String docPath = "refine-app/src/main/resources/docs";
+
+    /**
+     * 分段最大字符数
+     */
+    @Setter
+    private int maxSegmentSize = 800;
+
+    /**
+     * 相邻分段重叠字符数
+     */
+    @Setter
+    private int maxOverlapSize = 350;
+
+    /**
+     * 入库流程版本，修改分段规则或更换向量模型时调整，使所有文档重新入库
+     */
+    @Setter
+    private String pipelineVersion = "v2";
+
+    /**
+     * 其他实例刷新已提交哈希的间隔（毫秒）
+     */
+    @Setter
+    private long manifestRefreshInterval = 30_000;
+
+    /**
+     * 并行处理的文档数
+     */
+    @Setter
+    private int documentWorkers = 2;
+
+    /**
+     * 每次向量化请求的片段数（DashScope text-embedding-v1/v2 单次最多25条）
+     */
+    @Setter
+    private int embedBatchSize = 25;
+
+    /**
+     * 并发的向量化请求数
+     */
+    @Setter
+    private int embedConcurrency = 4;
+
+    /**
+     * 等待向量化的批次上限，超过后由提交线程自己执行
+     */
+    @Setter
+    private int embedQueueCapacity = 8;
+
+    /**
+     * 每条 INSERT 写入的片段数
+     */
+    @Setter
+    private int writeBatchSize = 200;
+
+    /**
+     * 是否为每个学科建立部分 HNSW 索引，按学科检索时只搜索该学科的片段
+     */
+    @Setter
+    private boolean subjectIndex = true;
+
+    /**
+     * 打标签和建部分索引的学科，可包含没有知识点根节点的学科（如生物），这类学科的片段不带 subject_id
+     */
+    @Setter
+    private List<String> subjects = List.of("数学", "物理", "化学", "英语", "政治", "历史", "语文", "生物");
+
+    /**
+     * 上传文档的大小上限（字节），同时受 spring.servlet.multipart.max-file-size 限制
+     */
+    @Setter
+    private long maxUploadSize = 5L * 1024 * 1024;
+
+    private volatile Set<String> committedHashes = Set.of();
+
+    /**
+     * 知识库版本号，由已提交的哈希集合决定，各实例刷新到相同清单后版本号一致
+     */
+    private volatile String generation = "";
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final AtomicBoolean purgeScheduled = new AtomicBoolean();
+
+    private volatile Progress progress;
+
+    private Counter embeddedCounter;
+
+    private Counter writtenCounter;
+
+    private Counter bytesCounter;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(daemon("knowledge-ingestion"));
+
+    private ExecutorService documentPool;
+
+    private ExecutorService embedPool;
+
+    /**
+     * 检索开始服务前准备好清单并加载已提交的哈希
+     */
+    @PostConstruct
+    public void init() {
+        documentPool = Executors.newFixedThreadPool(Math.max(1, documentWorkers), daemon("knowledge-ingestion-document"));
+        int concurrency = Math.max(1, embedConcurrency);
+        embedPool = new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, embedQueueCapacity)), daemon("knowledge-ingestion-embed"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        embeddedCounter = meterRegistry.counter("knowledge.ingestion.segments", "stage", "embedded");
+        writtenCounter = meterRegistry.counter("knowledge.ingestion.segments", "stage", "written");
+        bytesCounter = meterRegistry.counter("knowledge.ingestion.bytes");
+
+        try (Connection conn = vectorDataSource.getConnection()) {
+            execute(conn, "CREATE TABLE IF NOT EXISTS " + MANIFEST_TABLE + " ("
+                    + "file_name TEXT PRIMARY KEY, "
+                    + "content_hash TEXT NOT NULL, "
+                    + "segment_count INT NOT NULL DEFAULT 0, "
+                    + "ingested_at TIMESTAMPTZ NOT NULL DEFAULT now())");
+            execute(conn, "ALTER TABLE " + MANIFEST_TABLE
+                    + " ADD COLUMN IF NOT EXISTS source TEXT NOT NULL DEFAULT '" + SOURCE_DIRECTORY + "'");
+            adoptLegacySegments(conn);
+            updateCommittedHashes(loadCommittedHashes(conn));
+            log.info("知识库清单加载完成，已提交文档版本数:{}", committedHashes.size());
+        } catch (SQLException e) {
+            log.error("知识库清单初始化失败，检索将不做版本过滤", e);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (enabled) {
+            sync();
+        }
+        executor.scheduleWithFixedDelay(this::refreshCommittedHashes,
+                manifestRefreshInterval, manifestRefreshInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        documentPool.shutdownNow();
+        embedPool.shutdownNow();
+    }
+
+    /**
+     * 检索过滤条件：只返回已提交版本的片段；清单为空（未初始化）时不过滤
+     */
+    public Filter committedFilter() {
+        Set<String> hashes = committedHashes;
+        return hashes.isEmpty() ? null : MetadataFilterBuilder.metadataKey(CONTENT_HASH_KEY).isIn(hashes);
+    }
+
+    /**
+     * 检索过滤条件：查询中能识别出学科时只检索该学科及通用文档的片段（命中该学科的部分索引），否则检索全部已提交片段
+     */
+    public Filter retrievalFilter(Query query) {
+        Filter committed = committedFilter();
+        String subject = detectSubject(query.text());
+        if (subject == null) {
+            return committed;
+        }
+        Filter bySubject = MetadataFilterBuilder.metadataKey(SUBJECT_KEY).isIn(subject, GENERAL_SUBJECT);
+        return committed == null ? bySubject : bySubject.and(committed);
+    }
+
+    /**
+     * 当前知识库版本号，检索结果缓存以此区分版本
+     */
+    public String generation() {
+        return generation;
+    }
+
+    @Override
+    public boolean sync() {
+        return submit("sync", this::syncDirectory);
+    }
+
+    @Override
+    public boolean addDocument(String fileName, byte[] content) {
+        if (fileName == null || fileName.isBlank() || content == null || content.length == 0) {
+            throw new AppException(GlobalServiceStatusCode.PARAM_IS_BLANK);
+        }
+        // 只接受文件名，防止路径穿越；清单以文件名为键，与目录文档同名即视为同一文档的新版本
+        String name = Paths.get(fileName).getFileName().toString();
+        if (!name.equals(fileName) || content.length > maxUploadSize) {
+            throw new AppException(GlobalServiceStatusCode.PARAM_NOT_VALID);
+        }
+        return submit("upload", (conn, job) -> ingestUpload(conn, job, name, content));
+    }
+
+    @Override
+    public KnowledgeIngestionProgressVO progress() {
+        Progress current = progress;
+        return current == null ? KnowledgeIngestionProgressVO.builder().build() : current.snapshot();
+    }
+
+    /**
+     * 同一时刻只执行一个入库任务
+     */
+    private boolean submit(String name, Job body) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        Progress job = new Progress(name);
+        progress = job;
+        executor.execute(() -> {
+            // 会话级锁在连接断开时自动释放，使用专用连接，避免锁随池内连接残留
+            try (Connection conn = vectorDataSource.openDedicatedConnection()) {
+                if (!tryLock(conn)) {
+                    job.lastError = "其他实例正在执行知识库入库";
+                    log.info("其他实例正在执行知识库入库，本实例跳过");
+                    return;
+                }
+                body.run(conn, job);
+                updateCommittedHashes(loadCommittedHashes(conn));
+            } catch (Exception e) {
+                job.lastError = e.getMessage();
+                log.error("知识库入库任务失败，job:{}", name, e);
+            } finally {
+                job.finish();
+                running.set(false);
+                KnowledgeIngestionProgressVO summary = job.snapshot();
+                log.info("知识库入库任务结束，job:{} 文档:{}/{} 失败:{} 片段:{} 吞吐:{} 片段/秒 {} MB/秒",
+                        name, summary.getDocumentsDone(), summary.getDocumentsTotal(), summary.getDocumentsFailed(),
+                        summary.getSegmentsWritten(), String.format("%.1f", summary.getSegmentsPerSecond()),
+                        String.format("%.3f", summary.getMegabytesPerSecond()));
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 比对文档目录与清单，并行入库新增或变化的文档，删除目录中已不存在的文档
+     */
+    private void syncDirectory(Connection conn, Progress job) throws Exception {
+        if (subjectIndex) {
+            ensureSubjectIndexes();
+        }
+        Path dir = Paths.get(docPath);
+        if (!Files.isDirectory(dir)) {
+            log.warn("文档目录 {} 不存在或不是目录，跳过文档入库", docPath);
+            return;
+        }
+        Map<String, Path> files = listFiles(dir);
+        if (files.isEmpty()) {
+            log.info("文档目录 {} 下无可用文件，跳过文档入库（表中数据保持不变）", docPath);
+            return;
+        }
+
+        // 上次中断时写入但未提交的片段，以及已过刷新间隔的旧版本片段
+        int orphans = deleteStaleSegments(conn);
+        if (orphans > 0) {
+            log.info("清理未提交及已被替换的知识片段 {} 条", orphans);
+        }
+
+        Map<String, ManifestEntry> manifest = loadManifest(conn);
+        Map<String, String> changed = new HashMap<>();
+        for (Map.Entry<String, Path> file : files.entrySet()) {
+            String hash = contentHash(Files.readAllBytes(file.getValue()));
+            ManifestEntry entry = manifest.get(file.getKey());
+            if (entry == null || !hash.equals(entry.hash())) {
+                changed.put(file.getKey(), hash);
+            }
+        }
+        job.documentsTotal.set(changed.size());
+
+        List<Future<?>> documents = new ArrayList<>();
+        for (Map.Entry<String, String> file : changed.entrySet()) {
+            Path path = files.get(file.getKey());
+            documents.add(documentPool.submit(() -> ingestDocument(job, file.getKey(), file.getValue(),
+                    () -> FileSystemDocumentLoader.loadDocument(path), sizeOf(path), SOURCE_DIRECTORY)));
+        }
+        for (Future<?> document : documents) {
+            document.get();
+        }
+
+        int removed = 0;
+        for (Map.Entry<String, ManifestEntry> entry : manifest.entrySet()) {
+            if (SOURCE_DIRECTORY.equals(entry.getValue().source()) && !files.containsKey(entry.getKey())) {
+                remove(conn, entry.getKey());
+                removed++;
+            }
+        }
+        log.info("知识库目录同步完成，文档总数:{} 重新入库:{} 删除:{}", files.size(), changed.size(), removed);
+    }
+
+    private void ingestUpload(Connection conn, Progress job, String fileName, byte[] content) throws SQLException {
+        String hash = contentHash(content);
+        ManifestEntry entry = loadManifest(conn).get(fileName);
+        if (entry != null && hash.equals(entry.hash())) {
+            log.info("上传文档与已入库版本相同，跳过：{}", fileName);
+            return;
+        }
+        job.documentsTotal.set(1);
+        Document document = Document.from(new String(content, StandardCharsets.UTF_8), Metadata.from("file_name", fileName));
+        ingestDocument(job, fileName, hash, () -> document, content.length, SOURCE_UPLOAD);
+    }
+
+    /**
+     * 单个文档：分段、分批并行向量化、按顺序批量写入，全部写完后提交清单。
+     * 失败时删除本次已写入的片段，旧版本继续提供检索。
+     * 只在写入和提交时借用池内连接，等待向量化期间不占用连接
+     */
+    private void ingestDocument(Progress job, String fileName, String hash, Supplier<Document> loader, long bytes, String source) {
+        long start = System.currentTimeMillis();
+        try {
+            Document document = loader.get();
+            document.metadata().put(CONTENT_HASH_KEY, hash);
+            tagSubject(document.metadata(), fileName);
+            List<TextSegment> segments = split(document);
+
+            List<CompletableFuture<List<Embedding>>> batches = new ArrayList<>();
+            for (int from = 0; from < segments.size(); from += embedBatchSize) {
+                List<TextSegment> batch = segments.subList(from, Math.min(segments.size(), from + embedBatchSize));
+                batches.add(CompletableFuture.supplyAsync(() -> embed(job, batch), embedPool));
+            }
+
+            try {
+                List<TextSegment> pendingSegments = new ArrayList<>(writeBatchSize);
+                List<Embedding> pendingEmbeddings = new ArrayList<>(writeBatchSize);
+                for (int i = 0; i < batches.size(); i++) {
+                    int from = i * embedBatchSize;
+                    List<Embedding> embeddings = batches.get(i).join();
+                    pendingSegments.addAll(segments.subList(from, from + embeddings.size()));
+                    pendingEmbeddings.addAll(embeddings);
+                    if (pendingSegments.size() >= writeBatchSize) {
+                        write(job, pendingSegments, pendingEmbeddings);
+                    }
+                }
+                write(job, pendingSegments, pendingEmbeddings);
+                commit(fileName, hash, segments.size(), source);
+            } catch (Exception e) {
+                batches.forEach(batch -> batch.cancel(false));
+                discard(fileName, hash);
+                throw e;
+            }
+
+            job.documentsDone.incrementAndGet();
+            job.bytes.addAndGet(bytes);
+            bytesCounter.increment(bytes);
+            log.info("文档入库完成：{} 片段数:{} 耗时:{}ms", fileName, segments.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            // 单个文档失败不影响其他文档，旧版本继续提供检索，下次同步重试
+            job.documentsFailed.incrementAndGet();
+            job.lastError = fileName + ": " + e.getMessage();
+            log.error("文档入库失败：{}", fileName, e);
+        }
+    }
+
+    private List<TextSegment> split(Document document) {
+        DocumentSplitter splitter = new DocumentByParagraphSplitter(maxSegmentSize, maxOverlapSize);
+        return splitter.split(document).stream()
+                .map(segment -> TextSegment.from(
+                        segment.metadata().getString("file_name") + "\n" + segment.text(),
+                        segment.metadata()))
+                .toList();
+    }
+
+    private List<Embedding> embed(Progress job, List<TextSegment> batch) {
+        List<Embedding> embeddings = qwenEmbeddingModel.embedAll(batch).content();
+        if (embeddings.size() != batch.size()) {
+            throw new IllegalStateException("向量数量与片段数量不一致：" + embeddings.size() + "/" + batch.size());
+        }
+        job.embedded.addAndGet(batch.size());
+        embeddedCounter.increment(batch.size());
+        return embeddings;
+    }
+
+    /**
+     * 多行 INSERT 写入并清空缓冲，列与 PgVectorEmbeddingStore 的表结构一致
+     */
+    private void write(Progress job, List<TextSegment> segments, List<Embedding> embeddings)
+            throws SQLException, JsonProcessingException {
+        if (segments.isEmpty()) {
+            return;
+        }
+        StringBuilder sql = new StringBuilder("INSERT INTO " + EMBEDDING_TABLE + " (embedding_id, embedding, text, metadata) VALUES ");
+        for (int i = 0; i < segments.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append("(?::uuid, ?::vector, ?, ?::json)");
+        }
+        try (Connection conn = vectorDataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+            int index = 1;
+            for (int i = 0; i < segments.size(); i++) {
+                ps.setString(index++, UUID.randomUUID().toString());
+                ps.setString(index++, Arrays.toString(embeddings.get(i).vector()));
+                ps.setString(index++, segments.get(i).text());
+                ps.setString(index++, JSON.writeValueAsString(segments.get(i).metadata().toMap()));
+            }
+            ps.executeUpdate();
+        }
+        job.written.addAndGet(segments.size());
+        writtenCounter.increment(segments.size());
+        segments.clear();
+        embeddings.clear();
+    }
+
+    /**
+     * 提交新版本：只更新清单，旧版本片段留给其他实例刷新清单后再删除
+     */
+    private void commit(String fileName, String hash, int segments, String source) throws SQLException {
+        try (Connection conn = vectorDataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement("INSERT INTO " + MANIFEST_TABLE
+                     + " (file_name, content_hash, segment_count, source, ingested_at) VALUES (?, ?, ?, ?, now()) "
+                     + "ON CONFLICT (file_name) DO UPDATE SET content_hash = EXCLUDED.content_hash, "
+                     + "segment_count = EXCLUDED.segment_count, source = EXCLUDED.source, ingested_at = EXCLUDED.ingested_at")) {
+            ps.setString(1, fileName);
+            ps.setString(2, hash);
+            ps.setInt(3, segments);
+            ps.setString(4, source);
+            ps.executeUpdate();
+            // 本实例立即切换，其他实例在下次刷新时切换
+            updateCommittedHashes(loadCommittedHashes(conn));
+        }
+        schedulePurge();
+    }
+
+    /**
+     * 两个刷新间隔后清理被替换的旧版本片段，多次提交只安排一次
+     */
+    private void schedulePurge() {
+        if (purgeScheduled.compareAndSet(false, true)) {
+            executor.schedule(this::purgeSupersededSegments, manifestRefreshInterval * 2, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 持有入库锁时才清理，避免删除其他实例正在写入、尚未提交的片段；锁被占用时稍后重试
+     */
+    private void purgeSupersededSegments() {
+        purgeScheduled.set(false);
+        try (Connection conn = vectorDataSource.openDedicatedConnection()) {
+            if (!tryLock(conn)) {
+                schedulePurge();
+                return;
+            }
+            int purged = deleteStaleSegments(conn);
+            if (purged > 0) {
+                log.info("清理已被替换的旧版本知识片段 {} 条", purged);
+            }
+        } catch (Exception e) {
+            log.warn("清理旧版本知识片段失败，下次同步时清理", e);
+        }
+    }
+
+    /**
+     * 删除入库失败时已写入的未提交片段
+     */
+    private void discard(String fileName, String hash) {
+        try (Connection conn = vectorDataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement("DELETE FROM " + EMBEDDING_TABLE
+                + " WHERE metadata ->> 'file_name' = ? AND metadata ->> '" + CONTENT_HASH_KEY + "' = ?"
+                + " AND NOT EXISTS (SELECT 1 FROM " + MANIFEST_TABLE + " WHERE file_name = ? AND content_hash = ?)")) {
+            ps.setString(1, fileName);
+            ps.setString(2, hash);
+            ps.setString(3, fileName);
+            ps.setString(4, hash);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            log.warn("清理未提交的知识片段失败，下次同步时清理：{}", fileName, e);
+        }
+    }
+
+    private void remove(Connection conn, String fileName) throws SQLException {
+        conn.setAutoCommit(false);
+        try {
+            try (PreparedStatement ps = conn.prepareStatement("DELETE FROM " + MANIFEST_TABLE + " WHERE file_name = ?")) {
+                ps.setString(1, fileName);
+                ps.executeUpdate();
+            }
+            try (PreparedStatement ps = conn.prepareStatement("DELETE FROM " + EMBEDDING_TABLE + " WHERE metadata ->> 'file_name' = ?")) {
+                ps.setString(1, fileName);
+                ps.executeUpdate();
+            }
+            conn.commit();
+            log.info("文档已从目录删除，移除其知识片段：{}", fileName);
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * 文件名中恰好出现一个学科名时打上该学科，知识点根节点取自 {@link SubjectTransportMappeer}
+     */
+    private void tagSubject(Metadata metadata, String fileName) {
+        String subject = detectSubject(fileName);
+        if (subject == null) {
+            metadata.put(SUBJECT_KEY, GENERAL_SUBJECT);
+            return;
+        }
+        metadata.put(SUBJECT_KEY, subject);
+        Integer subjectId = SubjectTransportMappeer.FIELD_MAP.get(subject);
+        if (subjectId != null) {
+            metadata.put(SUBJECT_ID_KEY, subjectId);
+        }
+    }
+
+    /**
+     * 文本中恰好出现一个学科名时返回该学科，没有或出现多个时返回null
+     */
+    private String detectSubject(String text) {
+        if (text == null) {
+            return null;
+        }
+        String found = null;
+        for (String subject : subjects) {
+            if (text.contains(subject)) {
+                if (found != null) {
+                    return null;
+                }
+                found = subject;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * 每个学科一个部分 HNSW 索引，覆盖该学科与通用文档的片段，谓词与检索过滤条件生成的 SQL 一致（IN 列表顺序不影响匹配），
+     * 规划器据此只扫描这部分片段。索引名按学科名的哈希生成，学科列表增减或调整顺序不影响已有索引；
+     * 构建在后台进行，完成前该学科检索走顺序扫描。旧版只含该学科片段的同名前缀索引谓词不再匹配，一并删除
+     */
+    private void ensureSubjectIndexes() {
+        for (String subject : subjects) {
+            String hash = Integer.toHexString(subject.hashCode());
+            String index = "idx_" + EMBEDDING_TABLE + "_subject_general_" + hash;
+            vectorIndexManager.submitIndex(EMBEDDING_TABLE, index, "CREATE INDEX CONCURRENTLY IF NOT EXISTS " + index
+                    + " ON " + EMBEDDING_TABLE + " USING hnsw (embedding vector_cosine_ops)"
+                    + " WHERE (metadata ->> '" + SUBJECT_KEY + "')::text IN ('" + subject.replace("'", "''") + "', '" + GENERAL_SUBJECT + "')");
+            vectorIndexManager.dropIndex("idx_" + EMBEDDING_TABLE + "_subject_" + hash);
+        }
+    }
+
+    /**
+     * 旧版入库的片段标记为 legacy 并登记到清单，新版本提交前继续提供检索
+     */
+    private void adoptLegacySegments(Connection conn) throws SQLException {
+        if (!tableExists(conn, EMBEDDING_TABLE)) {
+            return;
+        }
+        conn.setAutoCommit(false);
+        try {
+            int adopted;
+            try (Statement statement = conn.createStatement()) {
+                adopted = statement.executeUpdate("UPDATE " + EMBEDDING_TABLE
+                        + " SET metadata = (coalesce(metadata::jsonb, '{}'::jsonb) || jsonb_build_object('" + CONTENT_HASH_KEY + "', '" + LEGACY_HASH + "'))::json"
+                        + " WHERE metadata ->> '" + CONTENT_HASH_KEY + "' IS NULL");
+                if (adopted > 0) {
+                    statement.executeUpdate("INSERT INTO " + MANIFEST_TABLE + " (file_name, content_hash, segment_count) "
+                            + "SELECT metadata ->> 'file_name', '" + LEGACY_HASH + "', count(*) FROM " + EMBEDDING_TABLE
+                            + " WHERE metadata ->> '" + CONTENT_HASH_KEY + "' = '" + LEGACY_HASH + "' AND metadata ->> 'file_name' IS NOT NULL"
+                            + " GROUP BY metadata ->> 'file_name' ON CONFLICT (file_name) DO NOTHING");
+                }
+            }
+            conn.commit();
+            if (adopted > 0) {
+                log.info("已登记旧版全量入库的知识片段 {} 条，将按文档逐个替换", adopted);
+            }
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * 删除不属于已提交版本的片段：文档不在清单中（未提交即中断），或清单已换成其他哈希且提交已超过一个刷新间隔。
+     * 刚提交不久的文档保留其旧版本片段，其他实例刷新清单前仍按旧哈希检索。须在持有入库锁时调用
+     */
+    private int deleteStaleSegments(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("DELETE FROM " + EMBEDDING_TABLE + " e WHERE NOT EXISTS ("
+                + "SELECT 1 FROM " + MANIFEST_TABLE + " m WHERE m.file_name = e.metadata ->> 'file_name' "
+                + "AND (m.content_hash = e.metadata ->> '" + CONTENT_HASH_KEY + "' "
+                + "OR m.ingested_at > now() - ? * interval '1 millisecond'))")) {
+            ps.setLong(1, manifestRefreshInterval);
+            return ps.executeUpdate();
+        }
+    }
+
+    private void refreshCommittedHashes() {
+        try (Connection conn = vectorDataSource.getConnection()) {
+            updateCommittedHashes(loadCommittedHashes(conn));
+        } catch (Exception e) {
+            log.warn("刷新知识库清单失败", e);
+        }
+    }
+
+    /**
+     * 已提交的哈希变化时更新版本号并清空检索结果缓存
+     */
+    private synchronized void updateCommittedHashes(Set<String> hashes) {
+        String next = generationOf(hashes);
+        committedHashes = hashes;
+        if (!next.equals(generation)) {
+            generation = next;
+            retrievalCache.invalidate();
+        }
+    }
+
+    private String generationOf(Set<String> hashes) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            hashes.stream().sorted().forEach(hash -> digest.update(hash.getBytes(StandardCharsets.UTF_8)));
+            return HexFormat.of().formatHex(digest.digest(), 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Set<String> loadCommittedHashes(Connection conn) throws SQLException {
+        Set<String> hashes = new HashSet<>();
+        loadManifest(conn).values().forEach(entry -> hashes.add(entry.hash()));
+        return hashes;
+    }
+
+    private Map<String, ManifestEntry> loadManifest(Connection conn) throws SQLException {
+        Map<String, ManifestEntry> manifest = new HashMap<>();
+        try (Statement statement = conn.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT file_name, content_hash, source FROM " + MANIFEST_TABLE)) {
+            while (rs.next()) {
+                manifest.put(rs.getString(1), new ManifestEntry(rs.getString(2), rs.getString(3)));
+            }
+        }
+        return manifest;
+    }
+
+    private Map<String, Path> listFiles(Path dir) throws IOException {
+        Map<String, Path> files = new HashMap<>();
+        try (Stream<Path> stream = Files.list(dir)) {
+            stream.filter(Files::isRegularFile)
+                    .forEach(path -> files.put(path.getFileName().toString(), path));
+        }
+        return files;
+    }
+
+    private long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 文件内容与入库流程参数共同决定哈希，任一变化都会重新入库
+     */
+    private String contentHash(byte[] content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.format("%s:%d:%d|", pipelineVersion, maxSegmentSize, maxOverlapSize)
+                    .getBytes(StandardCharsets.UTF_8));
+            digest.update(content);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private boolean tryLock(Connection conn) throws SQLException {
+        try (Statement statement = conn.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT pg_try_advisory_lock(hashtext('" + MANIFEST_TABLE + "'))")) {
+            return rs.next() && rs.getBoolean(1);
+        }
+    }
+
+    private boolean tableExists(Connection conn, String tableName) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT to_regclass(?) IS NOT NULL")) {
+            ps.setString(1, tableName);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    private void execute(Connection conn, String sql) throws SQLException {
+        try (Statement statement = conn.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger sequence = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + sequence.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @FunctionalInterface
+    private interface Job {
+        void run(Connection conn, Progress job) throws Exception;
+    }
+
+    private record ManifestEntry(String hash, String source) {
+    }
+
+    /**
+     * 单个入库任务的计数，多个文档线程并发更新
+     */
+    private static final class Progress {
+        private final String name;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final long startNanos = System.nanoTime();
+        private final AtomicInteger documentsTotal = new AtomicInteger();
+        private final AtomicInteger documentsDone = new AtomicInteger();
+        private final AtomicInteger documentsFailed = new AtomicInteger();
+        private final AtomicLong embedded = new AtomicLong();
+        private final AtomicLong written = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private volatile LocalDateTime finishedAt;
+        private volatile long finishNanos;
+        private volatile String lastError;
+
+        private Progress(String name) {
+            this.name = name;
+        }
+
+        private void finish() {
+            finishNanos = System.nanoTime();
+            finishedAt = LocalDateTime.now();
+        }
+
+        private KnowledgeIngestionProgressVO snapshot() {
+            // 任务结束后按结束时刻计算吞吐，不随查询时间衰减
+            long end = finishedAt == null ? System.nanoTime() : finishNanos;
+            double seconds = Math.max(1e-3, (end - startNanos) / 1e9);
+            return KnowledgeIngestionProgressVO.builder()
+                    .running(finishedAt == null)
+                    .job(name)
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .documentsTotal(documentsTotal.get())
+                    .documentsDone(documentsDone.get())
+                    .documentsFailed(documentsFailed.get())
+                    .segmentsEmbedded(embedded.get())
+                    .segmentsWritten(written.get())
+                    .bytesProcessed(bytes.get())
+                    .segmentsPerSecond(written.get() / seconds)
+                    .megabytesPerSecond(bytes.get() / 1024.0 / 1024.0 / seconds)
+                    .lastError(lastError)
+                    .build();
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package com.achobeta.infrastructure.adapter.repository;
 
+import com.achobeta.domain.IRedisService;
 import com.achobeta.domain.rag.adapter.port.ILearningDataRepository;
 import com.achobeta.domain.rag.model.entity.LearningVectorEntity;
+import com.achobeta.domain.rag.model.valobj.LearningDynamicsCacheVO;
 import com.achobeta.domain.rag.model.valobj.LearningStatisticsVO;
 import com.achobeta.infrastructure.dao.IVectorDao;
 import com.achobeta.infrastructure.dao.po.LearningVector;
@@ -12,8 +14,13 @@ import org.springframework.stereotype.Repository;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import static com.achobeta.types.common.Constants.LEARNING_DATA_VERSION_KEY;
+import static com.achobeta.types.common.Constants.LEARNING_DYNAMICS_CACHE_KEY;
+import static com.achobeta.types.common.Constants.LEARNING_DYNAMICS_REFRESH_LOCK_KEY;
+
 /**
  * @Auth : Malog
  * @Desc : 学习数据仓储实现
@@ -26,6 +33,9 @@ public class LearningDataRepository implements ILearningDataRepository {
     @Autowired
     private IVectorDao vectorDao;
 
+    @Autowired
+    private IRedisService redisService;
+
     @Override
     public List<LearningVectorEntity> getUserRecentLearningData(String userId, int days) {
         try {
@@ -82,6 +92,55 @@ public class LearningDataRepository implements ILearningDataRepository {
         }
     }
 
+    @Override
+    public LearningDynamicsCacheVO getLearningDynamicsCache(String userId) {
+        try {
+            return redisService.getValue(LEARNING_DYNAMICS_CACHE_KEY + userId);
+        } catch (Exception e) {
+            log.error("获取学习动态缓存失败，userId:{}", userId, e);
+            return null;
+        }
+    }
+
+    @Override
+    public void saveLearningDynamicsCache(String userId, LearningDynamicsCacheVO cache, long expireTime) {
+        try {
+            redisService.setValue(LEARNING_DYNAMICS_CACHE_KEY + userId, cache, expireTime);
+        } catch (Exception e) {
+            log.error("保存学习动态缓存失败，userId:{}", userId, e);
+        }
+    }
+
+    @Override
+    public long getLearningDataVersion(String userId) {
+        try {
+            Long version = redisService.getAtomicLong(LEARNING_DATA_VERSION_KEY + userId);
+            return version == null ? 0L : version;
+        } catch (Exception e) {
+            log.error("获取学习数据版本号失败，userId:{}", userId, e);
+            return 0L;
+        }
+    }
+
+    @Override
+    public boolean tryLockDynamicsRefresh(String userId, long expireTime) {
+        try {
+            return Boolean.TRUE.equals(redisService.setNx(LEARNING_DYNAMICS_REFRESH_LOCK_KEY + userId, expireTime, TimeUnit.MILLISECONDS));
+        } catch (Exception e) {
+            log.error("抢占学习动态刷新任务失败，userId:{}", userId, e);
+            return false;
+        }
+    }
+
+    @Override
+    public void unlockDynamicsRefresh(String userId) {
+        try {
+            redisService.remove(LEARNING_DYNAMICS_REFRESH_LOCK_KEY + userId);
+        } catch (Exception e) {
+            log.error("释放学习动态刷新任务失败，userId:{}", userId, e);
+        }
+    }
+
     /**
      * 转换为领域实体
      */
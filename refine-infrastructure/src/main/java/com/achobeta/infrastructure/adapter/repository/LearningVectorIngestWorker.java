@@ -0,0 +1,404 @@
+package com.achobeta.infrastructure.adapter.repository;
+
+import com.achobeta.domain.IRedisService;
+import com.achobeta.domain.rag.adapter.port.IEmbeddingService;
+import com.achobeta.infrastructure.dao.IVectorDao;
+import com.achobeta.infrastructure.dao.po.LearningVector;
+import com.achobeta.infrastructure.vector.UserVectorIndexCache;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBlockingDeque;
+import org.redisson.api.RMap;
+import org.redisson.api.RQueue;
+import org.redisson.api.queue.DequeMoveArgs;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.achobeta.types.common.Constants.LEARNING_DATA_VERSION_KEY;
+import static com.achobeta.types.common.Constants.LEARNING_VECTOR_INGEST_DLQ_KEY;
+import static com.achobeta.types.common.Constants.LEARNING_VECTOR_INGEST_INSTANCES_KEY;
+import static com.achobeta.types.common.Constants.LEARNING_VECTOR_INGEST_PROCESSING_KEY;
+import static com.achobeta.types.common.Constants.LEARNING_VECTOR_INGEST_QUEUE_KEY;
+
+/**
+ * @Desc : 学习向量异步写入（write-behind）
+ * <p>
+ * 业务线程只把任务放入Redis队列队尾，后台线程从队首按入队顺序攒批生成向量并批量写入 user_learning_vectors，
+ * 重试和归还的任务同样回到队尾。
+ * 取出的任务先移入本实例的处理中队列，写入完成后再删除；各实例定期在Redis登记心跳，
+ * 心跳超过 leaseTimeout 未更新的实例视为已退出，由存活实例把它处理中的任务放回主队列重新处理，
+ * 不会搬走仍在运行的实例手上的任务。写入按 ingestId 幂等（唯一索引兜底），重复处理不会产生重复数据。
+ * 失败按指数退避重试，超过次数进入死信队列
+ */
+@Slf4j
+@Component
+@ConfigurationProperties(prefix = "vector.database.ingest")
+public class LearningVectorIngestWorker {
+
+    @Resource
+    private IRedisService redisService;
+
+    @Resource
+    private IEmbeddingService embeddingService;
+
+    @Resource
+    private IVectorDao vectorDao;
+
+    @Resource
+    private UserVectorIndexCache userVectorIndexCache;
+
+    @Getter
+    @Setter
+    private boolean enabled = true;
+
+    /**
+     * 后台写入线程数
+     */
+    @Setter
+    private int workers = 2;
+
+    /**
+     * 每批最多处理的任务数
+     */
+    @Setter
+    private int batchSize = 25;
+
+    /**
+     * 队列为空时单次阻塞等待时间（毫秒）
+     */
+    @Setter
+    private long pollTimeout = 2000;
+
+    /**
+     * 最大尝试次数，超过后进入死信队列
+     */
+    @Setter
+    private int maxAttempts = 5;
+
+    /**
+     * 首次重试的退避时间（毫秒），之后每次翻倍
+     */
+    @Setter
+    private long retryBackoff = 1000;
+
+    /**
+     * 实例心跳间隔（毫秒）
+     */
+    @Setter
+    private long heartbeatInterval = 10_000;
+
+    /**
+     * 心跳超过该时间（毫秒）未更新视为实例已退出，其处理中的任务由其他实例接管
+     */
+    @Setter
+    private long leaseTimeout = 60_000;
+
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final List<Thread> threads = new ArrayList<>();
+
+    private volatile boolean running;
+
+    private RBlockingDeque<IngestTask> queue;
+
+    private String processingKey;
+
+    private RQueue<IngestTask> processing;
+
+    /**
+     * 实例ID -> 最近一次心跳时间
+     */
+    private RMap<String, Long> instances;
+
+    private ScheduledExecutorService heartbeat;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        queue = redisService.getBlockingDeque(LEARNING_VECTOR_INGEST_QUEUE_KEY);
+        processingKey = LEARNING_VECTOR_INGEST_PROCESSING_KEY + instanceId;
+        processing = redisService.getQueue(processingKey);
+        instances = redisService.getMap(LEARNING_VECTOR_INGEST_INSTANCES_KEY);
+        beat();
+
+        heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "learning-vector-ingest-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeat.scheduleWithFixedDelay(this::beat, heartbeatInterval, heartbeatInterval, TimeUnit.MILLISECONDS);
+
+        running = true;
+        for (int i = 0; i < Math.max(1, workers); i++) {
+            Thread thread = new Thread(this::workLoop, "learning-vector-ingest-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        log.info("学习向量异步写入已启动，instance:{} workers:{} batchSize:{}", instanceId, threads.size(), batchSize);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        heartbeat.shutdownNow();
+        threads.forEach(Thread::interrupt);
+        for (Thread thread : threads) {
+            try {
+                thread.join(pollTimeout);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        // 正常退出时自己归还处理中的任务并注销，不必等其他实例的租约超时
+        int returned = drain(processing);
+        try {
+            instances.fastRemove(instanceId);
+        } catch (Exception e) {
+            log.warn("注销学习向量写入实例失败，instance:{}", instanceId, e);
+        }
+        if (returned > 0) {
+            log.info("退出前归还处理中的学习向量写入任务 {} 条", returned);
+        }
+    }
+
+    /**
+     * 提交写入任务，入队失败时返回false，由调用方决定是否同步写入
+     */
+    public boolean enqueue(IngestTask task) {
+        if (!enabled || queue == null) {
+            return false;
+        }
+        try {
+            return queue.offer(task);
+        } catch (Exception e) {
+            log.warn("学习向量写入任务入队失败，userId:{} questionId:{}", task.getUserId(), task.getQuestionId(), e);
+            return false;
+        }
+    }
+
+    /**
+     * 更新本实例心跳，并接管租约已过期实例的处理中任务
+     */
+    private void beat() {
+        try {
+            instances.fastPut(instanceId, System.currentTimeMillis());
+            recoverExpired();
+        } catch (Exception e) {
+            log.warn("学习向量写入实例心跳失败，instance:{}", instanceId, e);
+        }
+    }
+
+    /**
+     * 心跳过期的实例先按原心跳值条件删除登记，删除成功的实例才负责搬回它的任务，多个存活实例不会重复接管；
+     * 过期实例若只是短暂失联，其正在写入的任务可能被重复处理，由写入幂等兜底
+     */
+    private void recoverExpired() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Long> entry : instances.readAllMap().entrySet()) {
+            String id = entry.getKey();
+            Long lastBeat = entry.getValue();
+            if (id.equals(instanceId) || lastBeat == null || now - lastBeat < leaseTimeout) {
+                continue;
+            }
+            if (!instances.remove(id, lastBeat)) {
+                continue;
+            }
+            int recovered = drain(redisService.getQueue(LEARNING_VECTOR_INGEST_PROCESSING_KEY + id));
+            log.info("学习向量写入实例 {} 心跳已过期，接管其处理中的任务 {} 条", id, recovered);
+        }
+    }
+
+    /**
+     * 把处理中队列里的任务放回主队列
+     */
+    private int drain(RQueue<IngestTask> source) {
+        int drained = 0;
+        try {
+            IngestTask task;
+            while ((task = source.poll()) != null) {
+                queue.offer(task);
+                drained++;
+            }
+        } catch (Exception e) {
+            log.warn("归还处理中的学习向量写入任务失败，已归还 {} 条", drained, e);
+        }
+        return drained;
+    }
+
+    private void workLoop() {
+        while (running) {
+            List<IngestTask> batch = new ArrayList<>(batchSize);
+            try {
+                // 从队首取出最早入队的任务并原子地移入处理中队列（BLMOVE/LMOVE，需Redis 6.2+）
+                IngestTask first = queue.move(Duration.ofMillis(pollTimeout), takeOldest());
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                IngestTask next;
+                while (batch.size() < batchSize
+                        && (next = queue.move(takeOldest())) != null) {
+                    batch.add(next);
+                }
+                process(batch);
+            } catch (Exception e) {
+                // 退出时中断阻塞中的取任务，Redisson以运行时异常抛出
+                if (!running) {
+                    return;
+                }
+                log.error("学习向量写入线程异常，batchSize:{}", batch.size(), e);
+                batch.forEach(this::retryOrDeadLetter);
+                sleepQuietly(retryBackoff);
+            }
+        }
+    }
+
+    private DequeMoveArgs takeOldest() {
+        return DequeMoveArgs.pollFirst().addFirstTo(processingKey);
+    }
+
+    private void process(List<IngestTask> batch) {
+        List<float[]> embeddings = embeddingService.embedAll(
+                batch.stream().map(IngestTask::getVectorText).toList());
+
+        List<IngestTask> accepted = new ArrayList<>(batch.size());
+        List<LearningVector> vectors = new ArrayList<>(batch.size());
+        List<IngestTask> retries = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            IngestTask task = batch.get(i);
+            float[] embedding = embeddings.get(i);
+            // 降级向量先重试，最后一次仍降级则照常写入，与同步写入的行为一致
+            if (embeddingService.isDegraded(embedding) && task.getAttempts() + 1 < maxAttempts) {
+                retries.add(task);
+                continue;
+            }
+            accepted.add(task);
+            vectors.add(LearningVector.builder()
+                    .userId(task.getUserId())
+                    .questionId(task.getQuestionId())
+                    .actionType(task.getActionType())
+                    .questionContent(task.getQuestionContent())
+                    .subject(task.getSubject())
+                    .knowledgePointId(task.getKnowledgePointId())
+                    .embedding(embedding)
+                    .metadata(task.getMetadata())
+                    .ingestId(task.getIngestId())
+                    .build());
+        }
+
+        if (!vectors.isEmpty()) {
+            int inserted = vectorDao.insertLearningVectors(vectors);
+            accepted.forEach(this::acknowledge);
+            Set<String> userIds = new LinkedHashSet<>();
+            vectors.forEach(vector -> userIds.add(vector.getUserId()));
+            Map<String, Long> versions = new HashMap<>();
+            for (String userId : userIds) {
+                Long version = bumpLearningDataVersion(userId);
+                if (version != null) {
+                    versions.put(userId, version);
+                }
+            }
+            userVectorIndexCache.onInserted(vectors, versions);
+            log.info("批量写入学习向量完成，提交:{} 插入:{} 用户数:{}", vectors.size(), inserted, userIds.size());
+        }
+        retries.forEach(this::retryOrDeadLetter);
+    }
+
+    /**
+     * 按指数退避重新投递，超过最大尝试次数放入死信队列；投递成功后才从处理中队列移除
+     */
+    private void retryOrDeadLetter(IngestTask task) {
+        try {
+            IngestTask retry = task.toBuilder().attempts(task.getAttempts() + 1).build();
+            if (retry.getAttempts() >= maxAttempts) {
+                redisService.getQueue(LEARNING_VECTOR_INGEST_DLQ_KEY).offer(retry);
+                log.error("学习向量写入多次失败，进入死信队列，userId:{} questionId:{} ingestId:{}",
+                        retry.getUserId(), retry.getQuestionId(), retry.getIngestId());
+            } else {
+                long delay = retryBackoff << Math.min(retry.getAttempts() - 1, 16);
+                redisService.getDelayedQueue(queue).offer(retry, delay, TimeUnit.MILLISECONDS);
+            }
+            acknowledge(task);
+        } catch (Exception e) {
+            // 任务仍留在处理中队列，本实例退出时归还或由其他实例接管
+            log.error("学习向量写入任务重新投递失败，ingestId:{}", task.getIngestId(), e);
+        }
+    }
+
+    private void acknowledge(IngestTask task) {
+        try {
+            processing.remove(task);
+        } catch (Exception e) {
+            log.warn("移除处理中的学习向量写入任务失败，ingestId:{}", task.getIngestId(), e);
+        }
+    }
+
+    /**
+     * 学习数据版本号加一，使已缓存的学习动态及其他实例的进程内向量索引失效，返回新版本号，失败返回null
+     */
+    private Long bumpLearningDataVersion(String userId) {
+        try {
+            return redisService.incr(LEARNING_DATA_VERSION_KEY + userId);
+        } catch (Exception e) {
+            log.warn("更新学习数据版本号失败，userId:{}", userId, e);
+            return null;
+        }
+    }
+
+    private void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 学习向量写入任务，ingestId 在入队时生成，作为写入幂等键
+     */
+    @Data
+    @Builder(toBuilder = true)
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class IngestTask implements Serializable {
+        private String ingestId;
+        private String userId;
+        private String questionId;
+        private String actionType;
+        private String questionContent;
+        private String subject;
+        private Integer knowledgePointId;
+        private String vectorText;
+        private Map<String, Object> metadata;
+        private int attempts;
+        private long enqueuedAt;
+    }
+}
@@ -0,0 +1,831 @@
+package com.achobeta.infrastructure.adapter.repository;
+
+import com.achobeta.infrastructure.vector.VectorDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @Desc : 向量表近似最近邻（ANN）索引的生命周期管理
+ * <p>
+ * 启动后在后台检查 user_learning_vectors、knowledge_embeddings 的 embedding 列索引：
+ * 缺失时 CREATE INDEX CONCURRENTLY（不锁写），构建失败残留的无效索引先删除再重建，删除与构建前按索引名加 advisory lock，
+ * 多实例同时启动时只有一个实例维护同一索引；
+ * 构建期间轮询 pg_stat_progress_create_index 输出进度；构建完成后抽样对比精确检索，校验召回率与延迟
+ * （带 user_id 的表按线上方式抽样单个用户的过滤查询）。
+ * 查询侧按 limit 计算 hnsw.ef_search / ivfflat.probes，由 {@link VectorRepository} 在事务内设置；
+ * hnsw.iterative_scan 只在检测到 pgvector 0.8 及以上版本时设置。
+ * <p>
+ * 开启二值量化时为 user_learning_vectors 建 binary_quantize(embedding) 的表达式索引（每维1bit），
+ * 检索先按汉明距离取 limit × rerankFactor 个候选，再用原始向量的余弦距离精确重排；
+ * 表达式索引直接基于已有数据构建，存量数据无需回填。二值索引可用后可删除全精度索引，索引体积约为原来的1/32
+ * <p>
+ * 开启词法索引时创建 n-gram 分词函数，并为 user_learning_vectors.question_content 建 GIN 表达式索引，
+ * 供 {@link HybridQuestionSearcher} 的词法检索使用
+ * <p>
+ * user_learning_vectors 另建 metadata.ingestId 的唯一表达式索引，异步写入并发处理同一任务时由 ON CONFLICT 跳过
+ */
+@Slf4j
+@Component
+@ConfigurationProperties(prefix = "vector.database.index")
+public class VectorIndexManager {
+
+    private static final VectorTable LEARNING_VECTORS = new VectorTable("user_learning_vectors", "id", true, "question_content", "user_id");
+
+    /**
+     * knowledge_embeddings 由 langchain4j 的 PgVectorEmbeddingStore 直接查询全精度向量，不做量化
+     */
+    private static final List<VectorTable> TABLES = List.of(
+            LEARNING_VECTORS,
+            new VectorTable("knowledge_embeddings", "embedding_id", false, null, null));
+
+    /**
+     * 学习向量写入幂等键的唯一索引
+     */
+    private static final String INGEST_ID_INDEX = "uk_user_learning_vectors_ingest_id";
+
+    /**
+     * pgvector 对 hnsw.ef_search 的上限
+     */
+    private static final int MAX_EF_SEARCH = 1000;
+
+    /**
+     * 中文 n-gram 分词：去掉空白和标点后按相邻两字切分，另保留完整的数字和英文单词，
+     * 使只有数字不同的题目在词法上可区分。已有索引依赖函数结果，修改分词规则时须使用新的函数名
+     */
+    private static final String NGRAM_TSVECTOR_FUNCTION = """
+            CREATE FUNCTION refine_ngram_tsvector(content text) RETURNS tsvector
+            LANGUAGE sql IMMUTABLE PARALLEL SAFE AS $$
+                SELECT array_to_tsvector(ARRAY(
+                    SELECT DISTINCT gram FROM (
+                        SELECT substr(t.s, i, 2) AS gram
+                        FROM (SELECT regexp_replace(lower(coalesce(content, '')),
+                                     '[[:space:][:punct:]，。、；：？！“”‘’（）《》【】…—]+', '', 'g') AS s) t,
+                             generate_series(1, length(t.s) - 1) AS i
+                        UNION ALL
+                        SELECT m[1]
+                        FROM regexp_matches(lower(coalesce(content, '')), '([0-9]+(\\.[0-9]+)?|[a-z]+)', 'g') AS m
+                    ) grams
+                    WHERE gram <> ''))
+            $$""";
+
+    /**
+     * 查询文本按同样规则分词，词元之间取 OR
+     */
+    private static final String NGRAM_TSQUERY_FUNCTION = """
+            CREATE FUNCTION refine_ngram_tsquery(content text) RETURNS tsquery
+            LANGUAGE sql IMMUTABLE PARALLEL SAFE AS $$
+                SELECT coalesce(string_agg(quote_literal(lexeme), ' | '), '')::tsquery
+                FROM unnest(tsvector_to_array(refine_ngram_tsvector(content))) AS lexeme
+            $$""";
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    private VectorDataSource vectorDataSource;
+
+    @Value("${vector.database.search.default-limit:10}")
+    private int defaultLimit;
+
+    @Setter
+    private boolean enabled = true;
+
+    /**
+     * 索引类型：hnsw 或 ivfflat
+     */
+    @Setter
+    private String type = "hnsw";
+
+    /**
+     * HNSW 每层最大连接数
+     */
+    @Setter
+    private int m = 16;
+
+    /**
+     * HNSW 构建时的候选列表大小
+     */
+    @Setter
+    private int efConstruction = 64;
+
+    /**
+     * HNSW 查询候选列表下限，实际取 max(下限, limit × searchFactor)
+     */
+    @Setter
+    private int efSearch = 40;
+
+    /**
+     * IVFFlat 聚类数，0 表示按行数自动计算（百万行以内 行数/1000，以上 √行数）
+     */
+    @Setter
+    private int lists = 0;
+
+    /**
+     * IVFFlat 行数少于该值时暂不建索引，聚类中心在空表上没有意义
+     */
+    @Setter
+    private long ivfflatMinRows = 10_000;
+
+    /**
+     * IVFFlat 默认 limit 下的探测聚类数，limit 更大时按比例增加
+     */
+    @Setter
+    private int probes = 10;
+
+    /**
+     * ef_search 相对 limit 的倍数
+     */
+    @Setter
+    private int searchFactor = 4;
+
+    /**
+     * 带过滤条件（如 user_id）时的迭代扫描模式（pgvector 0.8+），off 关闭
+     */
+    @Setter
+    private String iterativeScan = "relaxed_order";
+
+    /**
+     * 向量量化：binary 为二值量化候选 + 全精度重排，none 只用全精度索引
+     */
+    @Setter
+    private String quantization = "binary";
+
+    /**
+     * 二值量化候选数相对 limit 的倍数
+     */
+    @Setter
+    private int rerankFactor = 4;
+
+    /**
+     * 二值索引可用后是否保留全精度索引
+     */
+    @Setter
+    private boolean keepFullPrecisionIndex = false;
+
+    /**
+     * 是否为题目内容创建 n-gram 词法索引（混合检索的词法侧）
+     */
+    @Setter
+    private boolean lexical = true;
+
+    /**
+     * 建索引会话的 maintenance_work_mem，HNSW 图能放进内存时构建快得多
+     */
+    @Setter
+    private String maintenanceWorkMem = "512MB";
+
+    /**
+     * 建索引的并行 worker 数
+     */
+    @Setter
+    private int parallelWorkers = 2;
+
+    /**
+     * 构建进度轮询间隔（毫秒）
+     */
+    @Setter
+    private long progressInterval = 10_000;
+
+    /**
+     * 召回率校验的抽样查询数，0 关闭校验
+     */
+    @Setter
+    private int verifySampleSize = 10;
+
+    /**
+     * 召回率低于该值时告警
+     */
+    @Setter
+    private double verifyMinRecall = 0.9;
+
+    /**
+     * 已就绪的二值量化索引位数，按表名
+     */
+    private final Map<String, Integer> binaryBits = new ConcurrentHashMap<>();
+
+    private volatile boolean lexicalReady;
+
+    /**
+     * 已安装的 pgvector 是否支持迭代扫描（0.8+），启动后检测，检测前视为不支持
+     */
+    private volatile boolean iterativeScanSupported;
+
+    private final Map<String, AtomicReference<Double>> buildProgress = new ConcurrentHashMap<>();
+
+    private final Map<String, AtomicReference<Double>> recalls = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "vector-index-manager");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) {
+            return;
+        }
+        executor.execute(this::ensureIndexes);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 检查并补建所有向量表的 ANN 索引
+     */
+    public void ensureIndexes() {
+        detectExtensionVersion();
+        for (VectorTable table : TABLES) {
+            try {
+                ensureIndex(table);
+            } catch (Exception e) {
+                log.error("向量索引维护失败，table:{}", table.name(), e);
+            }
+        }
+    }
+
+    /**
+     * 后台确保其他组件需要的附加索引（如知识库按学科的部分索引），与向量索引相同的方式维护：
+     * ddl 须为 CREATE INDEX CONCURRENTLY，构建失败残留的无效索引先删除再重建，构建期间输出进度
+     */
+    public void submitIndex(String tableName, String indexName, String ddl) {
+        executor.execute(() -> {
+            try (Connection conn = vectorDataSource.openDedicatedConnection()) {
+                if (!tableExists(conn, tableName)) {
+                    return;
+                }
+                if (!ensure(conn, tableName, indexName, ddl)) {
+                    log.warn("索引 {} 构建后仍不可用，table:{}", indexName, tableName);
+                }
+            } catch (Exception e) {
+                log.error("索引维护失败，table:{} index:{}", tableName, indexName, e);
+            }
+        });
+    }
+
+    /**
+     * 后台删除不再使用的附加索引（如谓词已变更的旧版部分索引），与维护时使用同一把索引锁
+     */
+    public void dropIndex(String indexName) {
+        executor.execute(() -> {
+            try (Connection conn = vectorDataSource.openDedicatedConnection()) {
+                if (indexValidity(conn, indexName) == null || !tryLock(conn, indexName)) {
+                    return;
+                }
+                try {
+                    execute(conn, "DROP INDEX CONCURRENTLY IF EXISTS " + indexName);
+                    log.info("已删除不再使用的索引 {}", indexName);
+                } finally {
+                    unlock(conn, indexName);
+                }
+            } catch (Exception e) {
+                log.error("删除索引失败，index:{}", indexName, e);
+            }
+        });
+    }
+
+    /**
+     * 按本次查询的 limit 计算 hnsw.ef_search：候选列表不小于返回条数的若干倍
+     */
+    public int efSearchFor(int limit) {
+        int effective = Math.max(limit, defaultLimit);
+        return Math.min(MAX_EF_SEARCH, Math.max(efSearch, effective * searchFactor));
+    }
+
+    /**
+     * 按本次查询的 limit 计算 ivfflat.probes：以默认 limit 为基准按比例放大
+     */
+    public int probesFor(int limit) {
+        int base = Math.max(1, defaultLimit);
+        int scaled = (int) Math.ceil((double) probes * Math.max(limit, base) / base);
+        return Math.max(1, scaled);
+    }
+
+    /**
+     * 本次查询要设置的 hnsw.iterative_scan，关闭或 pgvector 版本不支持时返回null，不设置该参数
+     */
+    public String iterativeScan() {
+        if (!iterativeScanSupported || iterativeScan == null || "off".equalsIgnoreCase(iterativeScan)) {
+            return null;
+        }
+        return iterativeScan;
+    }
+
+    /**
+     * user_learning_vectors 二值量化索引的位数，未开启或索引未就绪时返回null
+     */
+    public Integer learningVectorBits() {
+        return binaryBits.get(LEARNING_VECTORS.name());
+    }
+
+    /**
+     * 词法分词函数是否已就绪（索引仍在构建时也可查询，只是走顺序扫描）
+     */
+    public boolean lexicalReady() {
+        return lexicalReady;
+    }
+
+    /**
+     * 二值量化检索的候选数
+     */
+    public int candidatesFor(int limit) {
+        return Math.max(limit, limit * rerankFactor);
+    }
+
+    /**
+     * 读取 pgvector 扩展版本，0.8 之前没有 hnsw.iterative_scan 参数，设置会报错
+     */
+    private void detectExtensionVersion() {
+        try (Connection conn = vectorDataSource.getConnection();
+             Statement statement = conn.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT extversion FROM pg_extension WHERE extname = 'vector'")) {
+            String version = rs.next() ? rs.getString(1) : null;
+            iterativeScanSupported = atLeast(version, 0, 8);
+            log.info("pgvector 版本:{} 迭代扫描:{}", version, iterativeScanSupported ? iterativeScan : "不支持");
+        } catch (Exception e) {
+            log.warn("读取 pgvector 版本失败，不设置迭代扫描参数", e);
+        }
+    }
+
+    private boolean atLeast(String version, int major, int minor) {
+        if (version == null) {
+            return false;
+        }
+        String[] parts = version.split("\\.");
+        try {
+            int actualMajor = Integer.parseInt(parts[0]);
+            int actualMinor = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+            return actualMajor > major || (actualMajor == major && actualMinor >= minor);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private void ensureIndex(VectorTable table) throws SQLException {
+        // 建索引耗时长且修改会话参数，使用专用连接，不占用连接池
+        try (Connection conn = vectorDataSource.openDedicatedConnection()) {
+            if (!tableExists(conn, table.name())) {
+                log.info("向量表 {} 不存在，跳过索引维护", table.name());
+                return;
+            }
+
+            if (table == LEARNING_VECTORS) {
+                try {
+                    ensure(conn, table.name(), INGEST_ID_INDEX, String.format(
+                            "CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS %s ON %s ((metadata ->> 'ingestId'))",
+                            INGEST_ID_INDEX, table.name()));
+                } catch (SQLException e) {
+                    // 已有重复 ingestId 时唯一索引无法建成，写入仍由 NOT EXISTS 去重，只是并发时可能重复
+                    log.error("ingestId 唯一索引创建失败，请清理重复数据后重启，table:{}", table.name(), e);
+                }
+            }
+
+            if (table.lexicalColumn() != null && lexical) {
+                try {
+                    ensureLexicalIndex(conn, table);
+                } catch (SQLException e) {
+                    // 词法索引失败不影响向量索引维护，混合检索退化为纯向量检索
+                    log.error("词法索引维护失败，table:{}", table.name(), e);
+                }
+            }
+
+            boolean binaryReady = false;
+            if (table.quantizable() && "binary".equalsIgnoreCase(quantization)) {
+                int bits = vectorDimension(conn, table.name());
+                if (bits > 0) {
+                    String binaryIndex = binaryIndexName(table);
+                    binaryReady = ensure(conn, table.name(), binaryIndex, binaryIndexSql(table, binaryIndex, bits));
+                    if (binaryReady) {
+                        binaryBits.put(table.name(), bits);
+                    }
+                } else {
+                    log.info("向量表 {} 暂无数据，无法确定维度，跳过二值量化索引", table.name());
+                }
+            }
+
+            String indexName = indexName(table);
+            if (binaryReady && !keepFullPrecisionIndex) {
+                // 重排只读取候选行的原始向量，不需要全精度索引
+                if (indexValidity(conn, indexName) != null && tryLock(conn, indexName)) {
+                    try {
+                        log.info("二值量化索引已就绪，删除全精度向量索引 {}", indexName);
+                        execute(conn, "DROP INDEX CONCURRENTLY IF EXISTS " + indexName);
+                    } finally {
+                        unlock(conn, indexName);
+                    }
+                }
+            } else {
+                long rows = estimateRows(conn, table.name());
+                String ddl = createIndexSql(table, indexName, rows);
+                if (ddl == null) {
+                    log.info("向量表 {} 仅约 {} 行，暂不创建 IVFFlat 索引", table.name(), rows);
+                } else {
+                    ensure(conn, table.name(), indexName, ddl);
+                }
+            }
+        }
+
+        if (verifySampleSize > 0) {
+            verify(table);
+        }
+    }
+
+    /**
+     * 确保索引存在且有效，返回索引最终是否可用。
+     * 以索引名加 advisory lock：其他实例构建中的索引同样是 indisvalid = false，不加锁会被当作残留的无效索引删除；
+     * 拿不到锁说明其他实例正在维护该索引，本实例跳过
+     */
+    private boolean ensure(Connection conn, String tableName, String indexName, String ddl) throws SQLException {
+        if (!tryLock(conn, indexName)) {
+            log.info("其他实例正在维护向量索引 {}，跳过", indexName);
+            return Boolean.TRUE.equals(indexValidity(conn, indexName));
+        }
+        try {
+            Boolean valid = indexValidity(conn, indexName);
+            if (Boolean.FALSE.equals(valid)) {
+                // CONCURRENTLY 构建中断会留下 INVALID 索引，查询不会用它但写入仍要维护它
+                log.warn("发现无效向量索引 {}，删除后重建", indexName);
+                execute(conn, "DROP INDEX CONCURRENTLY IF EXISTS " + indexName);
+                valid = null;
+            }
+            if (valid == null) {
+                build(conn, tableName, indexName, ddl);
+            } else {
+                log.info("向量索引 {} 已存在", indexName);
+            }
+            return Boolean.TRUE.equals(indexValidity(conn, indexName));
+        } finally {
+            unlock(conn, indexName);
+        }
+    }
+
+    /**
+     * 创建分词函数（已存在则跳过）及题目内容的 GIN 表达式索引
+     */
+    private void ensureLexicalIndex(Connection conn, VectorTable table) throws SQLException {
+        if (!functionExists(conn, "refine_ngram_tsvector(text)")) {
+            execute(conn, NGRAM_TSVECTOR_FUNCTION);
+        }
+        if (!functionExists(conn, "refine_ngram_tsquery(text)")) {
+            execute(conn, NGRAM_TSQUERY_FUNCTION);
+        }
+        lexicalReady = true;
+
+        String indexName = lexicalIndexName(table);
+        ensure(conn, table.name(), indexName, String.format("CREATE INDEX CONCURRENTLY IF NOT EXISTS %s ON %s USING gin (refine_ngram_tsvector(%s))",
+                indexName, table.name(), table.lexicalColumn()));
+    }
+
+    private String binaryIndexSql(VectorTable table, String indexName, int bits) {
+        return String.format("CREATE INDEX CONCURRENTLY IF NOT EXISTS %s ON %s USING hnsw ((binary_quantize(embedding)::bit(%d)) bit_hamming_ops) WITH (m = %d, ef_construction = %d)",
+                indexName, table.name(), bits, m, efConstruction);
+    }
+
+    private String createIndexSql(VectorTable table, String indexName, long rows) {
+        if ("ivfflat".equalsIgnoreCase(type)) {
+            if (rows < ivfflatMinRows) {
+                return null;
+            }
+            int listCount = lists > 0 ? lists
+                    : (int) (rows <= 1_000_000 ? Math.max(10, rows / 1000) : Math.sqrt(rows));
+            return String.format("CREATE INDEX CONCURRENTLY IF NOT EXISTS %s ON %s USING ivfflat (embedding vector_cosine_ops) WITH (lists = %d)",
+                    indexName, table.name(), listCount);
+        }
+        return String.format("CREATE INDEX CONCURRENTLY IF NOT EXISTS %s ON %s USING hnsw (embedding vector_cosine_ops) WITH (m = %d, ef_construction = %d)",
+                indexName, table.name(), m, efConstruction);
+    }
+
+    private void build(Connection conn, String tableName, String indexName, String ddl) throws SQLException {
+        AtomicReference<Double> progress = progressGauge(tableName);
+        progress.set(0.0);
+        ScheduledFuture<?> poller = executor.scheduleWithFixedDelay(
+                () -> pollProgress(tableName, progress), progressInterval, progressInterval, TimeUnit.MILLISECONDS);
+
+        long start = System.currentTimeMillis();
+        try {
+            log.info("开始创建向量索引 {}：{}", indexName, ddl);
+            execute(conn, "SET maintenance_work_mem = '" + maintenanceWorkMem + "'");
+            execute(conn, "SET max_parallel_maintenance_workers = " + parallelWorkers);
+            execute(conn, ddl);
+            progress.set(1.0);
+            log.info("向量索引 {} 创建完成，耗时 {} ms", indexName, System.currentTimeMillis() - start);
+        } finally {
+            poller.cancel(false);
+        }
+    }
+
+    private void pollProgress(String tableName, AtomicReference<Double> progress) {
+        String sql = "SELECT phase, blocks_done, blocks_total, tuples_done, tuples_total "
+                + "FROM pg_stat_progress_create_index WHERE relid = to_regclass(?)";
+        try (Connection conn = vectorDataSource.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, tableName);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    return;
+                }
+                long blocksDone = rs.getLong("blocks_done");
+                long blocksTotal = rs.getLong("blocks_total");
+                long tuplesDone = rs.getLong("tuples_done");
+                long tuplesTotal = rs.getLong("tuples_total");
+                double ratio = tuplesTotal > 0 ? (double) tuplesDone / tuplesTotal
+                        : blocksTotal > 0 ? (double) blocksDone / blocksTotal : 0;
+                progress.set(ratio);
+                log.info("向量索引构建中，table:{} phase:{} blocks:{}/{} tuples:{}/{}",
+                        tableName, rs.getString("phase"), blocksDone, blocksTotal, tuplesDone, tuplesTotal);
+            }
+        } catch (Exception e) {
+            log.warn("查询向量索引构建进度失败，table:{}", tableName, e);
+        }
+    }
+
+    /**
+     * 抽样若干已有向量作为查询，对比索引检索与精确检索（关闭索引扫描）的 top-k 结果，计算召回率与延迟。
+     * 有过滤列的表以样本所属的过滤值（如 user_id）限定查询，与线上按用户检索一致
+     */
+    private void verify(VectorTable table) {
+        int k = Math.max(1, defaultLimit);
+        List<Sample> samples;
+        try (Connection conn = vectorDataSource.getConnection()) {
+            samples = sampleVectors(conn, table);
+        } catch (Exception e) {
+            log.warn("抽样向量失败，跳过召回率校验，table:{}", table.name(), e);
+            return;
+        }
+        if (samples.isEmpty()) {
+            return;
+        }
+
+        Timer timer = Timer.builder("vector.index.query")
+                .tag("table", table.name())
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        boolean filtered = table.filterColumn() != null;
+        String where = filtered ? " WHERE " + table.filterColumn() + " = ?" : "";
+        String exactSql = String.format("SELECT %s FROM %s%s ORDER BY embedding <=> ?::vector LIMIT ?", table.idColumn(), table.name(), where);
+        // 与线上检索一致：开启二值量化时先按汉明距离取候选，再按原始向量重排
+        Integer bits = binaryBits.get(table.name());
+        int candidates = bits != null ? candidatesFor(k) : k;
+        String approxSql = bits == null ? exactSql : String.format(
+                "SELECT %1$s FROM (SELECT %1$s, embedding FROM %2$s%5$s ORDER BY binary_quantize(embedding)::bit(%3$d) <~> binary_quantize(?::vector) LIMIT %4$d) c "
+                        + "ORDER BY embedding <=> ?::vector LIMIT ?",
+                table.idColumn(), table.name(), bits, candidates, where);
+
+        double recallSum = 0;
+        long approxNanos = 0;
+        long exactNanos = 0;
+        try (Connection conn = vectorDataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            for (Sample sample : samples) {
+                List<Object> exactParams = new ArrayList<>();
+                if (filtered) {
+                    exactParams.add(sample.filter());
+                }
+                exactParams.add(sample.vector());
+                exactParams.add(k);
+                List<Object> approxParams = exactParams;
+                if (bits != null) {
+                    approxParams = new ArrayList<>(exactParams);
+                    approxParams.add(approxParams.size() - 1, sample.vector());
+                }
+
+                long t0 = System.nanoTime();
+                Set<String> approx = topK(conn, approxSql, candidates, false, approxParams.toArray());
+                long t1 = System.nanoTime();
+                Set<String> exact = topK(conn, exactSql, k, true, exactParams.toArray());
+                long t2 = System.nanoTime();
+
+                timer.record(t1 - t0, TimeUnit.NANOSECONDS);
+                approxNanos += t1 - t0;
+                exactNanos += t2 - t1;
+                if (!exact.isEmpty()) {
+                    approx.retainAll(exact);
+                    recallSum += (double) approx.size() / exact.size();
+                }
+            }
+        } catch (Exception e) {
+            log.warn("向量索引召回率校验失败，table:{}", table.name(), e);
+            return;
+        }
+
+        double recall = recallSum / samples.size();
+        recallGauge(table.name()).set(recall);
+        log.info("向量索引校验，table:{} 量化:{} 过滤:{} recall@{}:{} 平均耗时 索引:{}ms 精确:{}ms 样本数:{}",
+                table.name(), bits != null ? "binary" : "none", filtered ? table.filterColumn() : "无", k, String.format("%.3f", recall),
+                approxNanos / samples.size() / 1_000_000.0, exactNanos / samples.size() / 1_000_000.0, samples.size());
+        if (recall < verifyMinRecall) {
+            log.warn("向量索引召回率 {} 低于阈值 {}，table:{}，考虑调大 ef-search / probes 或重建索引",
+                    String.format("%.3f", recall), verifyMinRecall, table.name());
+        }
+    }
+
+    private Set<String> topK(Connection conn, String sql, int candidates, boolean exact, Object... params) throws SQLException {
+        try (Statement statement = conn.createStatement()) {
+            if (exact) {
+                statement.execute("SET LOCAL enable_indexscan = off");
+            } else {
+                statement.execute("SET LOCAL hnsw.ef_search = " + efSearchFor(candidates));
+                statement.execute("SET LOCAL ivfflat.probes = " + probesFor(candidates));
+                String scan = iterativeScan();
+                if (scan != null) {
+                    statement.execute("SET LOCAL hnsw.iterative_scan = " + scan);
+                }
+            }
+        }
+        Set<String> ids = new HashSet<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                ps.setObject(i + 1, params[i]);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getString(1));
+                }
+            }
+        } finally {
+            conn.commit();
+        }
+        return ids;
+    }
+
+    private List<Sample> sampleVectors(Connection conn, VectorTable table) throws SQLException {
+        long rows = estimateRows(conn, table.name());
+        if (rows <= 0) {
+            return List.of();
+        }
+        // 按估算行数取抽样比例，避免大表上 ORDER BY random() 全表扫描
+        double percent = Math.min(100.0, verifySampleSize * 10 * 100.0 / rows);
+        String filter = table.filterColumn() != null ? table.filterColumn() : "NULL";
+        String sql = String.format(Locale.ROOT, "SELECT embedding::text, %s FROM %s TABLESAMPLE SYSTEM (%.6f) LIMIT %d",
+                filter, table.name(), percent, verifySampleSize);
+        List<Sample> samples = new ArrayList<>();
+        try (Statement statement = conn.createStatement(); ResultSet rs = statement.executeQuery(sql)) {
+            while (rs.next()) {
+                samples.add(new Sample(rs.getString(1), rs.getString(2)));
+            }
+        }
+        return samples;
+    }
+
+    private boolean tableExists(Connection conn, String tableName) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT to_regclass(?) IS NOT NULL")) {
+            ps.setString(1, tableName);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    /**
+     * 会话级锁，专用连接关闭时也会释放
+     */
+    private boolean tryLock(Connection conn, String name) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT pg_try_advisory_lock(hashtext(?))")) {
+            ps.setString(1, name);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    private void unlock(Connection conn, String name) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT pg_advisory_unlock(hashtext(?))")) {
+            ps.setString(1, name);
+            ps.execute();
+        }
+    }
+
+    private boolean functionExists(Connection conn, String signature) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT to_regprocedure(?) IS NOT NULL")) {
+            ps.setString(1, signature);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    /**
+     * 索引有效性：不存在返回null
+     */
+    private Boolean indexValidity(Connection conn, String indexName) throws SQLException {
+        String sql = "SELECT i.indisvalid FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid WHERE c.relname = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, indexName);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getBoolean(1) : null;
+            }
+        }
+    }
+
+    /**
+     * 向量列维度：声明为 vector(n) 时取类型修饰符，否则取任意一行的实际维度，无数据时返回0
+     */
+    private int vectorDimension(Connection conn, String tableName) throws SQLException {
+        String sql = "SELECT atttypmod FROM pg_attribute WHERE attrelid = to_regclass(?) AND attname = 'embedding'";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, tableName);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next() && rs.getInt(1) > 0) {
+                    return rs.getInt(1);
+                }
+            }
+        }
+        try (Statement statement = conn.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT vector_dims(embedding) FROM " + tableName + " LIMIT 1")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * 用统计信息估算行数，避免大表 count(*)
+     */
+    private long estimateRows(Connection conn, String tableName) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT reltuples::bigint FROM pg_class WHERE oid = to_regclass(?)")) {
+            ps.setString(1, tableName);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? Math.max(0, rs.getLong(1)) : 0;
+            }
+        }
+    }
+
+    private void execute(Connection conn, String sql) throws SQLException {
+        try (Statement statement = conn.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private String indexName(VectorTable table) {
+        return "idx_" + table.name() + "_embedding_" + type.toLowerCase();
+    }
+
+    private String binaryIndexName(VectorTable table) {
+        return "idx_" + table.name() + "_embedding_bq";
+    }
+
+    private String lexicalIndexName(VectorTable table) {
+        return "idx_" + table.name() + "_" + table.lexicalColumn() + "_ngram";
+    }
+
+    private AtomicReference<Double> progressGauge(String tableName) {
+        return buildProgress.computeIfAbsent(tableName, name -> {
+            AtomicReference<Double> value = new AtomicReference<>(0.0);
+            Gauge.builder("vector.index.build.progress", value, AtomicReference::get)
+                    .tag("table", name)
+                    .register(meterRegistry);
+            return value;
+        });
+    }
+
+    private AtomicReference<Double> recallGauge(String tableName) {
+        return recalls.computeIfAbsent(tableName, name -> {
+            AtomicReference<Double> value = new AtomicReference<>(Double.NaN);
+            Gauge.builder("vector.index.recall", value, AtomicReference::get)
+                    .tag("table", name)
+                    .register(meterRegistry);
+            return value;
+        });
+    }
+
+    /**
+     * @param lexicalColumn 建 n-gram 词法索引的文本列，null 表示不建
+     * @param filterColumn  线上检索的过滤列（召回率校验按它限定查询），null 表示不过滤
+     */
+    private record VectorTable(String name, String idColumn, boolean quantizable, String lexicalColumn, String filterColumn) {
+    }
+
+    /**
+     * 召回率校验样本：查询向量及其所属的过滤值
+     */
+    private record Sample(String vector, String filter) {
+    }
+}
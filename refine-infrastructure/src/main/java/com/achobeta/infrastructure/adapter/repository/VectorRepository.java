@@ -1,18 +1,25 @@
 package com.achobeta.infrastructure.adapter.repository;
 
+import com.achobeta.domain.IRedisService;
+import com.achobeta.domain.rag.adapter.port.IEmbeddingService;
 import com.achobeta.domain.rag.model.valobj.LearningInsightVO;
 import com.achobeta.domain.rag.model.valobj.SimilarQuestionVO;
 import com.achobeta.domain.rag.service.IVectorService;
 import com.achobeta.infrastructure.dao.IVectorDao;
 import com.achobeta.infrastructure.dao.po.LearningVector;
-import com.achobeta.infrastructure.gateway.DashScopeEmbeddingService;
+import com.achobeta.infrastructure.vector.UserVectorIndexCache;
+import com.achobeta.infrastructure.vector.VectorDataSource;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
+import static com.achobeta.types.common.Constants.LEARNING_DATA_VERSION_KEY;
 import static com.achobeta.types.enums.ActionType.MISTAKE;
 
 /**
@@ -26,14 +33,38 @@ public class VectorRepository implements IVectorService {
     private IVectorDao vectorDao;
 
     @Autowired
-    private DashScopeEmbeddingService embeddingService; // 使用DashScope嵌入服务
+    private IEmbeddingService embeddingService; // 由 vector.database.embedding.provider 选择远程或本地实现
 
-    public VectorRepository(DashScopeEmbeddingService embeddingService) {
-        this.embeddingService = embeddingService;
+    @Autowired
+    private IRedisService redisService;
+
+    @Autowired
+    private LearningVectorIngestWorker ingestWorker;
+
+    @Autowired
+    private VectorIndexManager indexManager;
+
+    @Autowired
+    private UserVectorIndexCache userVectorIndexCache;
+
+    @Autowired
+    private HybridQuestionSearcher hybridSearcher;
+
+    @Autowired
+    private VectorDataSource vectorDataSource;
+
+    private TransactionTemplate readOnlyTransaction;
+
+    @PostConstruct
+    public void init() {
+        // 检索参数与查询需在 pgvector 的同一事务内，不能使用 MySQL 的事务管理器
+        readOnlyTransaction = new TransactionTemplate(vectorDataSource.transactionManager());
+        readOnlyTransaction.setReadOnly(true);
     }
 
     /**
-     * 存储学习向量信息
+     * 存储学习向量信息。启用异步写入时只入队即返回，由后台线程批量生成向量并写入；
+     * 入队失败时退回同步写入
      *
      * @param userId           用户ID
      * @param questionId       题目ID
@@ -41,35 +72,32 @@ public class VectorRepository implements IVectorService {
      * @param actionType       操作类型
      * @param subject          科目
      * @param knowledgePointId 知识点ID
-     * @return 存储成功返回true，失败返回false
+     * @return 已受理（入队或写入成功）返回true，失败返回false
      */
     @Override
     public boolean storeLearningVector(String userId, String questionId, String questionContent,
                                        String actionType, String subject, Integer knowledgePointId) {
         try {
-            // 构建向量化文本
-            String vectorText = buildVectorText(actionType, questionContent, subject);
-
-            // 生成向量
-            float[] embedding = embeddingService.generateEmbedding(vectorText);
-
-            // 构建数据库实体
-            LearningVector vector = LearningVector.builder()
+            String ingestId = UUID.randomUUID().toString();
+            LearningVectorIngestWorker.IngestTask task = LearningVectorIngestWorker.IngestTask.builder()
+                    .ingestId(ingestId)
                     .userId(userId)
                     .questionId(questionId)
                     .actionType(actionType)
                     .questionContent(questionContent)
                     .subject(subject)
                     .knowledgePointId(knowledgePointId)
-                    .embedding(embedding)
-                    .metadata(buildMetadata(actionType, subject, knowledgePointId))
+                    .vectorText(buildVectorText(actionType, questionContent, subject))
+                    .metadata(buildMetadata(ingestId, actionType, subject, knowledgePointId))
+                    .enqueuedAt(System.currentTimeMillis())
                     .build();
 
-            int result = vectorDao.insertLearningVector(vector);
-
-            log.info("成功存储学习向量，userId:{} questionId:{} actionType:{}",
-                    userId, questionId, actionType);
-            return result > 0;
+            if (ingestWorker.enqueue(task)) {
+                log.info("学习向量写入任务已入队，userId:{} questionId:{} actionType:{}",
+                        userId, questionId, actionType);
+                return true;
+            }
+            return storeLearningVectorNow(task);
 
         } catch (Exception e) {
             log.error("存储学习向量失败，userId:{} questionId:{}", userId, questionId, e);
@@ -77,9 +105,42 @@ public class VectorRepository implements IVectorService {
         }
     }
 
+    /**
+     * 同步生成向量并写入
+     */
+    private boolean storeLearningVectorNow(LearningVectorIngestWorker.IngestTask task) {
+        // 生成向量
+        float[] embedding = embeddingService.embed(task.getVectorText());
+
+        // 构建数据库实体
+        LearningVector vector = LearningVector.builder()
+                .userId(task.getUserId())
+                .questionId(task.getQuestionId())
+                .actionType(task.getActionType())
+                .questionContent(task.getQuestionContent())
+                .subject(task.getSubject())
+                .knowledgePointId(task.getKnowledgePointId())
+                .embedding(embedding)
+                .metadata(task.getMetadata())
+                .ingestId(task.getIngestId())
+                .build();
+
+        int result = vectorDao.insertLearningVector(vector);
+        if (result > 0) {
+            Long version = bumpLearningDataVersion(task.getUserId());
+            userVectorIndexCache.onInserted(List.of(vector),
+                    version != null ? Map.of(task.getUserId(), version) : Map.of());
+        }
+
+        log.info("成功存储学习向量，userId:{} questionId:{} actionType:{}",
+                task.getUserId(), task.getQuestionId(), task.getActionType());
+        return result > 0;
+    }
+
 
     /**
-     * 搜索与给定文本相似的题目。
+     * 搜索与给定文本相似的题目。开启混合检索时词法与向量两路并行，按倒数排名融合；
+     * 词法侧已有足够多高分命中时直接返回，不再生成查询向量
      *
      * @param userId    用户ID，用于限定搜索范围
      * @param queryText 查询文本，将被转换为向量进行相似度匹配
@@ -89,17 +150,31 @@ public class VectorRepository implements IVectorService {
     @Override
     public List<SimilarQuestionVO> searchSimilarQuestions(String userId, String queryText, int limit) {
         try {
-            // 生成查询向量
-            float[] queryEmbedding = embeddingService.generateEmbedding(queryText);
-
-            // 执行向量相似度搜索
-            List<LearningVector> similarVectors = vectorDao.searchSimilarVectors(
-                    userId, queryEmbedding, limit);
+            CompletableFuture<List<LearningVector>> lexical = null;
+            int candidates = limit;
+            if (hybridSearcher.isEnabled()) {
+                candidates = hybridSearcher.candidatesFor(limit);
+                lexical = hybridSearcher.searchLexical(userId, queryText, candidates);
+                List<LearningVector> confident = hybridSearcher.confidentLexical(lexical, limit);
+                if (confident != null) {
+                    return convertToSimilarQuestionVOs(confident);
+                }
+            }
 
-            // 转换为值对象
-            return similarVectors.stream()
-                    .map(this::convertToSimilarQuestionVO)
-                    .collect(Collectors.toList());
+            List<LearningVector> similarVectors;
+            try {
+                similarVectors = searchSimilarVectors(userId, queryText, candidates);
+            } catch (Exception e) {
+                if (lexical == null) {
+                    throw e;
+                }
+                log.warn("向量检索失败，仅返回词法检索结果，userId:{}", userId, e);
+                similarVectors = List.of();
+            }
+            if (lexical != null) {
+                similarVectors = hybridSearcher.fuse(similarVectors, lexical, limit);
+            }
+            return convertToSimilarQuestionVOs(similarVectors);
 
         } catch (Exception e) {
             log.error("搜索相似题目失败，userId:{} queryText:{}", userId, queryText, e);
@@ -107,6 +182,39 @@ public class VectorRepository implements IVectorService {
         }
     }
 
+    /**
+     * 向量检索：优先在进程内索引中检索，无法回答时回退到 pgvector；
+     * 查询向量是降级生成的（向量化接口不可用）时返回空列表，开启混合检索时只剩词法结果
+     */
+    private List<LearningVector> searchSimilarVectors(String userId, String queryText, int limit) {
+        // 生成查询向量
+        float[] queryEmbedding = embeddingService.embed(queryText);
+        if (embeddingService.isDegraded(queryEmbedding)) {
+            log.warn("查询向量为降级结果，跳过向量检索，userId:{}", userId);
+            return List.of();
+        }
+
+        List<LearningVector> similarVectors = userVectorIndexCache.isEnabled()
+                ? userVectorIndexCache.search(userId, queryEmbedding, limit)
+                : null;
+        if (similarVectors != null) {
+            return similarVectors;
+        }
+        // 二值量化索引就绪时按候选数检索，再由原始向量重排
+        Integer bits = indexManager.learningVectorBits();
+        int candidates = bits != null ? indexManager.candidatesFor(limit) : limit;
+        return readOnlyTransaction.execute(status -> {
+            // 按候选数设置索引检索参数，与下面的查询处于同一事务
+            vectorDao.applySearchParams(
+                    String.valueOf(indexManager.efSearchFor(candidates)),
+                    String.valueOf(indexManager.probesFor(candidates)),
+                    indexManager.iterativeScan());
+
+            // 执行向量相似度搜索
+            return vectorDao.searchSimilarVectors(userId, queryEmbedding, limit, bits, candidates);
+        });
+    }
+
     /**
      * 获取用户的薄弱知识点分析结果。
      *
@@ -182,6 +290,18 @@ public class VectorRepository implements IVectorService {
     }
 
 
+    /**
+     * 学习数据版本号加一，使已缓存的学习动态及其他实例的进程内向量索引失效，返回新版本号，失败返回null
+     */
+    private Long bumpLearningDataVersion(String userId) {
+        try {
+            return redisService.incr(LEARNING_DATA_VERSION_KEY + userId);
+        } catch (Exception e) {
+            log.warn("更新学习数据版本号失败，userId:{}", userId, e);
+            return null;
+        }
+    }
+
     /**
      * 构建向量化文本
      */
@@ -232,16 +352,23 @@ public class VectorRepository implements IVectorService {
     /**
      * 构建元数据
      */
-    private Map<String, Object> buildMetadata(String actionType, String subject, Integer knowledgePointId) {
+    private Map<String, Object> buildMetadata(String ingestId, String actionType, String subject, Integer knowledgePointId) {
         Map<String, Object> metadata = new HashMap<>();
+        metadata.put("ingestId", ingestId);
         metadata.put("actionType", actionType);
         if (subject != null) metadata.put("subject", subject);
         if (knowledgePointId != null) metadata.put("knowledgePointId", knowledgePointId);
         metadata.put("timestamp", System.currentTimeMillis());
-        metadata.put("embeddingModel", "dashscope-text-embedding-v1");
+        metadata.put("embeddingModel", embeddingService.modelId());
         return metadata;
     }
 
+    private List<SimilarQuestionVO> convertToSimilarQuestionVOs(List<LearningVector> vectors) {
+        return vectors.stream()
+                .map(this::convertToSimilarQuestionVO)
+                .collect(Collectors.toList());
+    }
+
     /**
      * 转换为相似题目值对象
      */
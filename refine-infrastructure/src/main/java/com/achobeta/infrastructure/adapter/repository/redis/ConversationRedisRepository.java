@@ -2,12 +2,14 @@ package com.achobeta.infrastructure.adapter.repository.redis;
 
 import com.achobeta.domain.conversation.adapter.port.redis.IConversationRedisRepository;
 import com.achobeta.domain.conversation.model.entity.ConversationMessageEntity;
+import com.achobeta.domain.conversation.model.entity.ConversationSummaryEntity;
 import com.achobeta.domain.IRedisService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @Auth : Malog
@@ -20,6 +22,8 @@ import java.util.List;
 public class ConversationRedisRepository implements IConversationRedisRepository {
 
     private static final String REDIS_CONVERSATION_PREFIX = "conversation:";
+    private static final String REDIS_CONVERSATION_SUMMARY_PREFIX = "conversation:summary:";
+    private static final String REDIS_CONVERSATION_SUMMARY_LOCK_PREFIX = "conversation:summary:lock:";
     private static final long CONVERSATION_EXPIRE_TIME = 60 * 60 * 1000; // 60分钟过期时间（毫秒）
 
     private final IRedisService redisService;
@@ -56,6 +60,7 @@ public class ConversationRedisRepository implements IConversationRedisRepository
         try {
             String redisKey = REDIS_CONVERSATION_PREFIX + questionId;
             redisService.remove(redisKey);
+            redisService.remove(REDIS_CONVERSATION_SUMMARY_PREFIX + questionId);
         } catch (Exception e) {
             log.error("删除Redis会话时发生异常: questionId={}", questionId, e);
             return false;
@@ -83,4 +88,44 @@ public class ConversationRedisRepository implements IConversationRedisRepository
         // TODO 设置过期时间
         return true;
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean saveConversationSummary(String questionId, ConversationSummaryEntity summary) {
+        try {
+            redisService.setValue(REDIS_CONVERSATION_SUMMARY_PREFIX + questionId, summary, CONVERSATION_EXPIRE_TIME);
+        } catch (Exception e) {
+            log.error("保存会话摘要到Redis时发生异常: questionId={}", questionId, e);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public ConversationSummaryEntity getConversationSummary(String questionId) {
+        try {
+            return redisService.getValue(REDIS_CONVERSATION_SUMMARY_PREFIX + questionId);
+        } catch (Exception e) {
+            log.error("从Redis获取会话摘要失败: questionId={}", questionId, e);
+            return null;
+        }
+    }
+
+    @Override
+    public boolean tryLockSummary(String questionId, long expireTime) {
+        try {
+            return Boolean.TRUE.equals(redisService.setNx(REDIS_CONVERSATION_SUMMARY_LOCK_PREFIX + questionId, expireTime, TimeUnit.MILLISECONDS));
+        } catch (Exception e) {
+            log.error("抢占会话摘要任务失败: questionId={}", questionId, e);
+            return false;
+        }
+    }
+
+    @Override
+    public void unlockSummary(String questionId) {
+        try {
+            redisService.remove(REDIS_CONVERSATION_SUMMARY_LOCK_PREFIX + questionId);
+        } catch (Exception e) {
+            log.error("释放会话摘要任务失败: questionId={}", questionId, e);
+        }
+    }
+}
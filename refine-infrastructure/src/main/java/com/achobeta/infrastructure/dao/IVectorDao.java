@@ -2,7 +2,6 @@ package com.achobeta.infrastructure.dao;
 
 import com.achobeta.infrastructure.dao.po.LearningVector;
 import com.achobeta.domain.rag.model.valobj.LearningInsightVO;
-import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
 import java.util.List;
@@ -12,8 +11,9 @@ import java.util.Map;
  * @Auth : Malog
  * @Desc : 向量数据访问接口
  * @Time : 2025/11/10
+ * <p>
+ * 访问 pgvector，不加 @Mapper，由 {@link VectorDaoFactory} 绑定到向量库连接池，映射文件在 mybatis/vector 下
  */
-@Mapper
 public interface IVectorDao {
 
     /**
@@ -22,23 +22,49 @@ public interface IVectorDao {
     int insertLearningVector(LearningVector vector);
 
     /**
-     * 向量相似度搜索
+     * 批量插入学习向量（按 metadata.ingestId 幂等），返回实际插入条数
+     */
+    int insertLearningVectors(@Param("vectors") List<LearningVector> vectors);
+
+    /**
+     * 设置当前事务内的ANN检索参数（hnsw.ef_search、ivfflat.probes，iterativeScan 不为null时设置 hnsw.iterative_scan）
+     */
+    String applySearchParams(@Param("efSearch") String efSearch,
+                             @Param("probes") String probes,
+                             @Param("iterativeScan") String iterativeScan);
+
+    /**
+     * 向量相似度搜索，bits 不为空时先按二值量化取 candidates 个候选再精确重排
      */
     List<LearningVector> searchSimilarVectors(@Param("userId") String userId,
                                               @Param("queryVector") float[] queryVector,
+                                              @Param("limit") int limit,
+                                              @Param("bits") Integer bits,
+                                              @Param("candidates") int candidates);
+
+    /**
+     * 词法检索：按题目内容的 n-gram 词元匹配，similarity 为词元集合的 Dice 系数
+     */
+    List<LearningVector> searchLexicalVectors(@Param("userId") String userId,
+                                              @Param("queryText") String queryText,
                                               @Param("limit") int limit);
 
     /**
-     * 根据行为类型获取用户向量
+     * 根据行为类型获取用户学习记录（不含向量）
      */
     List<LearningVector> getUserVectorsByActionType(@Param("userId") String userId,
                                                     @Param("actionType") String actionType);
 
     /**
-     * 获取用户所有向量
+     * 获取用户所有学习记录（不含向量）
      */
     List<LearningVector> getUserAllVectors(@Param("userId") String userId);
 
+    /**
+     * 获取用户向量（进程内索引加载用），最多 limit 条
+     */
+    List<LearningVector> getUserIndexVectors(@Param("userId") String userId, @Param("limit") int limit);
+
     /**
      * 保存学习洞察
      */
@@ -0,0 +1,18 @@
+package com.achobeta.infrastructure.dao;
+
+import com.achobeta.infrastructure.vector.VectorDataSource;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 创建向量 DAO 的工厂类，DAO 绑定 pgvector 连接池，不经过 MySQL 的 SqlSessionFactory
+ */
+@Configuration
+public class VectorDaoFactory {
+
+    @Bean
+    public IVectorDao vectorDao(VectorDataSource vectorDataSource) {
+        return vectorDataSource.getMapper(IVectorDao.class);
+    }
+
+}
@@ -31,6 +31,11 @@ public class LearningVector {
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     
+    /**
+     * 写入幂等键，取自 metadata.ingestId（查询时使用）
+     */
+    private String ingestId;
+
     /**
      * 相似度分数（查询时使用）
      */
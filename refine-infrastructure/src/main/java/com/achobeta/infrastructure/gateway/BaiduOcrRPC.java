@@ -2,19 +2,21 @@ package com.achobeta.infrastructure.gateway;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.codec.binary.Base64;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.IOException;
+import java.net.URI;
 import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -58,6 +60,29 @@ public class BaiduOcrRPC {
     @Setter
     private String ocrUrl = "https://aip.baidubce.com/rest/2.0/ocr/v1/general_basic";
 
+    /**
+     * 建连超时（毫秒）
+     */
+    @Setter
+    private long connectTimeout = 5_000;
+
+    /**
+     * 单次请求超时（毫秒）
+     */
+    @Setter
+    private long readTimeout = 30_000;
+
+    /**
+     * 是否优先使用HTTP/2，服务端不支持时自动回退HTTP/1.1
+     */
+    @Setter
+    private boolean http2Enabled = true;
+
+    /**
+     * 共享的HTTP客户端，连接在多次调用间保活复用
+     */
+    private HttpClient httpClient;
+
     /**
      * JSON对象映射器，用于序列化和反序列化JSON数据
      */
@@ -74,6 +99,14 @@ public class BaiduOcrRPC {
     private volatile long tokenExpireTime = 0;
 
 
+    @PostConstruct
+    public void init() {
+        httpClient = HttpClient.newBuilder()
+                .version(http2Enabled ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeout))
+                .build();
+    }
+
     /**
      * 识别图片并返回 JSON 字符串
      * 字段约定：
@@ -100,28 +133,8 @@ public class BaiduOcrRPC {
             String imageBase64 = Base64.encodeBase64String(imageBytes);
             String params = "image=" + URLEncoder.encode(imageBase64, StandardCharsets.UTF_8);
 
-            // 构造OCR请求URL并打开HTTP连接，设置请求方法和内容类型
-            URL url = new URL(ocrUrl + "?access_token=" + token);
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("POST");
-            connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
-            connection.setDoOutput(true);
-
-            // 向服务器发送图像数据
-            try (OutputStream os = connection.getOutputStream()) {
-                os.write(params.getBytes(StandardCharsets.UTF_8));
-            }
-
-            // 读取服务器返回的响应数据
-            StringBuilder response = new StringBuilder();
-            try (BufferedReader br = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    response.append(line);
-                }
-            }
-
-            String raw = response.toString();
+            // 通过共享客户端发送图像数据并读取响应
+            String raw = postForm(ocrUrl + "?access_token=" + token, params);
 
             // 解析百度OCR响应，提取识别出的文本内容
             String extractedText = extractTextFromBaiduResponse(raw);
@@ -134,6 +147,22 @@ public class BaiduOcrRPC {
 
     }
 
+    /**
+     * 以表单方式POST请求，返回响应体
+     */
+    private String postForm(String url, String form) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMillis(readTimeout))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form, StandardCharsets.UTF_8))
+                .build();
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("HTTP " + response.statusCode() + ": " + response.body());
+        }
+        return response.body();
+    }
+
     /**
      * 从百度OCR响应中提取文本
      */
@@ -178,27 +207,10 @@ public class BaiduOcrRPC {
                     "&client_secret=" + secretKey;
 
             // 发送请求获取令牌
-            URL url = new URL(accessTokenUrl);
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("POST");
-            connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
-            connection.setDoOutput(true);
-
-            try (OutputStream os = connection.getOutputStream()) {
-                os.write(params.getBytes(StandardCharsets.UTF_8));
-            }
-
-            // 读取响应
-            StringBuilder response = new StringBuilder();
-            try (BufferedReader br = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    response.append(line);
-                }
-            }
+            String response = postForm(accessTokenUrl, params);
 
             // 解析响应获取令牌
-            Map<String, Object> tokenResponse = objectMapper.readValue(response.toString(), Map.class);
+            Map<String, Object> tokenResponse = objectMapper.readValue(response, Map.class);
             if (tokenResponse.containsKey("access_token")) {
                 accessToken = (String) tokenResponse.get("access_token");
                 // 设置令牌过期时间（百度令牌通常有效期为30天，这里设置为29天以确保安全）
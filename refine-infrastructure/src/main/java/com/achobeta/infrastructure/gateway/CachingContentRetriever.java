@@ -0,0 +1,45 @@
+package com.achobeta.infrastructure.gateway;
+
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.query.Query;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * @Desc : 为 ContentRetriever 加上检索结果缓存，相同知识点的出题请求不再重复向量检索
+ * <p>
+ * 只适用于结果只取决于查询文本和知识库版本的检索器（不按用户、会话过滤）
+ */
+public class CachingContentRetriever implements ContentRetriever {
+
+    private final ContentRetriever delegate;
+
+    private final RetrievalCache retrievalCache;
+
+    private final Supplier<String> generation;
+
+    public CachingContentRetriever(ContentRetriever delegate, RetrievalCache retrievalCache, Supplier<String> generation) {
+        this.delegate = delegate;
+        this.retrievalCache = retrievalCache;
+        this.generation = generation;
+    }
+
+    @Override
+    public List<Content> retrieve(Query query) {
+        if (!retrievalCache.isEnabled()) {
+            return delegate.retrieve(query);
+        }
+        // 先取版本号，检索期间知识库提交新版本时结果记在旧版本下，不会被新版本命中
+        String current = generation.get();
+        List<Content> cached = retrievalCache.get(current, query.text());
+        if (cached != null) {
+            return cached;
+        }
+        List<Content> contents = delegate.retrieve(query);
+        retrievalCache.put(current, query.text(), contents);
+        return contents;
+    }
+
+}
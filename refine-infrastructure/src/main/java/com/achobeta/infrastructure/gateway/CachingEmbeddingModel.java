@@ -0,0 +1,65 @@
+package com.achobeta.infrastructure.gateway;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @Desc : 为LangChain4j嵌入模型加上向量缓存，RAG检索与文档入库共用，只有未命中的片段才调用模型
+ */
+public class CachingEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+
+    private final EmbeddingCache embeddingCache;
+
+    private final String modelId;
+
+    public CachingEmbeddingModel(EmbeddingModel delegate, EmbeddingCache embeddingCache, String modelId) {
+        this.delegate = delegate;
+        this.embeddingCache = embeddingCache;
+        this.modelId = modelId;
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+        if (!embeddingCache.isEnabled()) {
+            return delegate.embedAll(textSegments);
+        }
+
+        Embedding[] embeddings = new Embedding[textSegments.size()];
+        List<Integer> missIndexes = new ArrayList<>();
+        List<TextSegment> missSegments = new ArrayList<>();
+        for (int i = 0; i < textSegments.size(); i++) {
+            float[] cached = embeddingCache.get(modelId, textSegments.get(i).text());
+            if (cached != null) {
+                embeddings[i] = Embedding.from(cached);
+            } else {
+                missIndexes.add(i);
+                missSegments.add(textSegments.get(i));
+            }
+        }
+
+        if (missSegments.isEmpty()) {
+            return Response.from(List.of(embeddings));
+        }
+        Response<List<Embedding>> response = delegate.embedAll(missSegments);
+        List<Embedding> embedded = response.content();
+        for (int i = 0; i < missIndexes.size(); i++) {
+            embeddings[missIndexes.get(i)] = embedded.get(i);
+            embeddingCache.put(modelId, missSegments.get(i).text(), embedded.get(i).vector());
+        }
+        // 用量只统计实际调用模型的部分
+        return Response.from(List.of(embeddings), response.tokenUsage(), response.finishReason());
+    }
+
+    @Override
+    public int dimension() {
+        return delegate.dimension();
+    }
+
+}
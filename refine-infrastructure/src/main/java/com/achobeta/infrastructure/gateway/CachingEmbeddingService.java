@@ -0,0 +1,91 @@
+package com.achobeta.infrastructure.gateway;
+
+import com.achobeta.domain.rag.adapter.port.IEmbeddingService;
+import jakarta.annotation.Resource;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @Desc : 带缓存的向量化服务，未命中的文本才交给实际的嵌入实现，批量调用只提交未命中部分
+ */
+@Primary
+@Service
+public class CachingEmbeddingService implements IEmbeddingService {
+
+    @Resource(name = "rawEmbeddingService")
+    private IEmbeddingService delegate;
+
+    @Resource
+    private EmbeddingCache embeddingCache;
+
+    @Override
+    public float[] embed(String text) {
+        if (!cacheable(text)) {
+            return delegate.embed(text);
+        }
+        float[] cached = embeddingCache.get(delegate.modelId(), text);
+        if (cached != null) {
+            return cached;
+        }
+        float[] vector = delegate.embed(text);
+        store(text, vector);
+        return vector;
+    }
+
+    @Override
+    public List<float[]> embedAll(List<String> texts) {
+        if (!embeddingCache.isEnabled()) {
+            return delegate.embedAll(texts);
+        }
+
+        float[][] vectors = new float[texts.size()][];
+        List<Integer> missIndexes = new ArrayList<>();
+        List<String> missTexts = new ArrayList<>();
+        for (int i = 0; i < texts.size(); i++) {
+            String text = texts.get(i);
+            vectors[i] = cacheable(text) ? embeddingCache.get(delegate.modelId(), text) : null;
+            if (vectors[i] == null) {
+                missIndexes.add(i);
+                missTexts.add(text);
+            }
+        }
+
+        if (!missTexts.isEmpty()) {
+            List<float[]> embedded = delegate.embedAll(missTexts);
+            for (int i = 0; i < missIndexes.size(); i++) {
+                vectors[missIndexes.get(i)] = embedded.get(i);
+                store(missTexts.get(i), embedded.get(i));
+            }
+        }
+        return List.of(vectors);
+    }
+
+    @Override
+    public int dimension() {
+        return delegate.dimension();
+    }
+
+    @Override
+    public String modelId() {
+        return delegate.modelId();
+    }
+
+    @Override
+    public boolean isDegraded(float[] vector) {
+        return delegate.isDegraded(vector);
+    }
+
+    private boolean cacheable(String text) {
+        return embeddingCache.isEnabled() && text != null && !text.isBlank();
+    }
+
+    private void store(String text, float[] vector) {
+        if (cacheable(text) && !delegate.isDegraded(vector)) {
+            embeddingCache.put(delegate.modelId(), text, vector);
+        }
+    }
+
+}
@@ -1,18 +1,35 @@
 package com.achobeta.infrastructure.gateway;
 
-import com.alibaba.dashscope.embeddings.TextEmbedding;
+import com.achobeta.domain.ai.adapter.port.IDashScopeGateway;
+import com.achobeta.domain.ai.model.valobj.ModelCallType;
+import com.achobeta.domain.rag.adapter.port.IEmbeddingService;
+import com.achobeta.domain.ai.service.IModelCallLimiter;
+import com.achobeta.types.support.util.VectorMath;
 import com.alibaba.dashscope.embeddings.TextEmbeddingParam;
 import com.alibaba.dashscope.embeddings.TextEmbeddingResult;
+import com.alibaba.dashscope.embeddings.TextEmbeddingResultItem;
 import com.alibaba.dashscope.exception.ApiException;
 import com.alibaba.dashscope.exception.InputRequiredException;
 import com.alibaba.dashscope.exception.NoApiKeyException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
 
 /**
  * @Auth : Malog
@@ -20,34 +37,103 @@ import java.util.Random;
  * @Time : 2025/11/25
  */
 @Slf4j
-@Service
-public class DashScopeEmbeddingService {
+@Service("rawEmbeddingService")
+@ConditionalOnProperty(prefix = "vector.database.embedding", name = "provider", havingValue = "dashscope", matchIfMissing = true)
+public class DashScopeEmbeddingService implements IEmbeddingService {
 
     @Value("${dashscope.apiKey}")
     private String apiKey;
 
+    @Resource
+    private IModelCallLimiter modelCallLimiter;
+
+    @Resource
+    private IDashScopeGateway dashScopeGateway;
+
     private static final String EMBEDDING_MODEL = "text-embedding-v1";
     private static final int VECTOR_DIMENSION = 384;
 
     /**
-     * 生成文本嵌入向量
+     * 单次请求最多携带的文本条数
+     */
+    private static final int MAX_BATCH_SIZE = 25;
+
+    /**
+     * 是否合并并发的单条请求
+     */
+    @Value("${vector.database.embedding.batch.enabled:true}")
+    private boolean batchEnabled;
+
+    /**
+     * 合并后单批最多条数，不超过单次请求上限
+     */
+    @Value("${vector.database.embedding.batch.max-size:25}")
+    private int batchMaxSize;
+
+    /**
+     * 第一条请求到达后最多等待多久（毫秒）
+     */
+    @Value("${vector.database.embedding.batch.max-wait:5}")
+    private long batchMaxWait;
+
+    /**
+     * 同时在途的批量调用数
+     */
+    @Value("${vector.database.embedding.batch.concurrency:4}")
+    private int batchConcurrency;
+
+    private EmbeddingMicroBatcher batcher;
+
+    /**
+     * 最近生成的备用向量（按实例识别，弱引用），供缓存层判断不缓存
      */
-    public float[] generateEmbedding(String text) {
+    private final Set<float[]> degradedVectors = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    @PostConstruct
+    public void init() {
+        if (batchEnabled) {
+            batcher = new EmbeddingMicroBatcher("dashscope-embedding", this::embedAll,
+                    Math.min(batchMaxSize, MAX_BATCH_SIZE), Duration.ofMillis(batchMaxWait), batchConcurrency);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (batcher != null) {
+            batcher.shutdown();
+        }
+    }
+
+    /**
+     * 生成文本嵌入向量，开启批处理时与其他并发请求合并成一次调用
+     */
+    @Override
+    public float[] embed(String text) {
+        if (batcher == null || text == null || text.trim().isEmpty()) {
+            return embedSingle(text);
+        }
+        try {
+            return batcher.submit(text).join();
+        } catch (CompletionException e) {
+            log.error("批量生成嵌入向量失败", e.getCause());
+            return generateFallbackEmbedding(text);
+        }
+    }
+
+    private float[] embedSingle(String text) {
         try {
             if (text == null || text.trim().isEmpty()) {
                 log.warn("输入文本为空，返回零向量");
                 return new float[VECTOR_DIMENSION];
             }
 
-            TextEmbedding textEmbedding = new TextEmbedding();
-
             TextEmbeddingParam param = TextEmbeddingParam.builder()
                     .apiKey(apiKey)
                     .model(EMBEDDING_MODEL)
                     .texts(List.of(text.trim()))
                     .build();
 
-            TextEmbeddingResult result = textEmbedding.call(param);
+            TextEmbeddingResult result = modelCallLimiter.execute(ModelCallType.EMBEDDING, () -> dashScopeGateway.embed(param));
 
             if (result != null && result.getOutput() != null && !result.getOutput().getEmbeddings().isEmpty()) {
                 List<Double> embedding = result.getOutput().getEmbeddings().get(0).getEmbedding();
@@ -77,6 +163,78 @@ public class DashScopeEmbeddingService {
         }
     }
 
+    /**
+     * 批量生成嵌入向量，按单次请求上限分批调用，某一批失败时该批使用备用向量
+     */
+    @Override
+    public List<float[]> embedAll(List<String> texts) {
+        List<float[]> vectors = new ArrayList<>(texts.size());
+        for (int from = 0; from < texts.size(); from += MAX_BATCH_SIZE) {
+            vectors.addAll(embedBatch(texts.subList(from, Math.min(from + MAX_BATCH_SIZE, texts.size()))));
+        }
+        return vectors;
+    }
+
+    @Override
+    public int dimension() {
+        return VECTOR_DIMENSION;
+    }
+
+    @Override
+    public String modelId() {
+        return "dashscope:" + EMBEDDING_MODEL;
+    }
+
+    @Override
+    public boolean isDegraded(float[] vector) {
+        return degradedVectors.contains(vector);
+    }
+
+    private List<float[]> embedBatch(List<String> texts) {
+        // 空文本不能提交给接口，单独补零向量
+        List<String> nonBlank = texts.stream()
+                .filter(text -> text != null && !text.trim().isEmpty())
+                .map(String::trim)
+                .toList();
+        List<float[]> embedded = nonBlank.isEmpty() ? List.of() : embedNonBlank(nonBlank);
+
+        List<float[]> vectors = new ArrayList<>(texts.size());
+        int next = 0;
+        for (String text : texts) {
+            vectors.add(text == null || text.trim().isEmpty() ? new float[VECTOR_DIMENSION] : embedded.get(next++));
+        }
+        return vectors;
+    }
+
+    private List<float[]> embedNonBlank(List<String> texts) {
+        try {
+            TextEmbeddingParam param = TextEmbeddingParam.builder()
+                    .apiKey(apiKey)
+                    .model(EMBEDDING_MODEL)
+                    .texts(texts)
+                    .build();
+            TextEmbeddingResult result = modelCallLimiter.execute(ModelCallType.EMBEDDING, () -> dashScopeGateway.embed(param));
+            if (result != null && result.getOutput() != null && result.getOutput().getEmbeddings().size() == texts.size()) {
+                return result.getOutput().getEmbeddings().stream()
+                        .sorted(Comparator.comparingInt(TextEmbeddingResultItem::getTextIndex))
+                        .map(item -> toFloatArray(item.getEmbedding()))
+                        .collect(Collectors.toList());
+            }
+            log.error("批量嵌入向量生成失败，返回结果为空或条数不符");
+        } catch (Exception e) {
+            log.error("批量调用DashScope嵌入API失败，条数:{}", texts.size(), e);
+        }
+        return texts.stream().map(this::generateFallbackEmbedding).collect(Collectors.toList());
+    }
+
+    private float[] toFloatArray(List<Double> embedding) {
+        float[] vector = new float[embedding.size()];
+        for (int i = 0; i < embedding.size(); i++) {
+            vector[i] = embedding.get(i).floatValue();
+        }
+        return vector;
+    }
+
     /**
      * 备用的嵌入向量生成方法
      * 当DashScope API调用失败时使用
@@ -85,6 +243,7 @@ public class DashScopeEmbeddingService {
         log.warn("使用备用方法生成嵌入向量，文本: {}", text != null ? text.substring(0, Math.min(text.length(), 50)) + "..." : "null");
 
         float[] vector = new float[VECTOR_DIMENSION];
+        degradedVectors.add(vector);
 
         if (text == null || text.trim().isEmpty()) {
             return vector; // 返回零向量
@@ -109,30 +268,8 @@ public class DashScopeEmbeddingService {
         }
 
         // 归一化向量
-        normalizeVector(vector);
+        VectorMath.normalize(vector);
 
         return vector;
     }
-
-    /**
-     * 将向量归一化为单位向量（L2）
-     *
-     * @param vector 待归一化的浮点数向量数组
-     */
-    private void normalizeVector(float[] vector) {
-        // 计算向量的模长（欧几里得范数）
-        float norm = 0;
-        for (float v : vector) {
-            norm += v * v;
-        }
-        norm = (float) Math.sqrt(norm);
-
-        // 避免除零错误，当模长大于0时进行归一化处理
-        if (norm > 0) {
-            for (int i = 0; i < vector.length; i++) {
-                vector[i] /= norm;
-            }
-        }
-
-    }
 }
\ No newline at end of file
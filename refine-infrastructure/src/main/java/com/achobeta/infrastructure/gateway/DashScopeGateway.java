@@ -0,0 +1,147 @@
+package com.achobeta.infrastructure.gateway;
+
+import com.achobeta.domain.ai.adapter.port.IDashScopeGateway;
+import com.alibaba.dashscope.aigc.generation.Generation;
+import com.alibaba.dashscope.aigc.generation.GenerationParam;
+import com.alibaba.dashscope.aigc.generation.GenerationResult;
+import com.alibaba.dashscope.embeddings.TextEmbedding;
+import com.alibaba.dashscope.embeddings.TextEmbeddingParam;
+import com.alibaba.dashscope.embeddings.TextEmbeddingResult;
+import com.alibaba.dashscope.exception.InputRequiredException;
+import com.alibaba.dashscope.exception.NoApiKeyException;
+import com.alibaba.dashscope.protocol.ConnectionOptions;
+import com.alibaba.dashscope.protocol.Protocol;
+import com.alibaba.dashscope.utils.Constants;
+import jakarta.annotation.PostConstruct;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+
+/**
+ * @Desc : DashScope接入网关，阻塞生成、流式生成、向量各持有一个客户端，启动时创建后一直复用
+ * <p>
+ * Generation的call/streamCall会修改实例上的请求模式，同一实例不能并发混用两种调用，
+ * 所以阻塞与流式各用一个实例，加上向量实例，各自带一个按下面参数调优的OkHttp连接池；
+ * HTTP/2由OkHttp通过ALPN自动协商，同一主机的并发流受 maxRequestsPerHost 限制。
+ * 三个客户端使用同一接入地址；调用期限由各自的读超时保证：阻塞生成和向量的响应在处理结束后才返回首字节，
+ * 读超时即整次调用的期限，超时后请求随之结束，不会在后台继续占用连接和限流许可
+ */
+@Slf4j
+@Component
+@ConfigurationProperties(prefix = "dashscope.client")
+public class DashScopeGateway implements IDashScopeGateway {
+
+    @Value("${dashscope.base-url:}")
+    private String baseUrl;
+
+    /**
+     * 建连超时（毫秒）
+     */
+    @Setter
+    private long connectTimeout = 5_000;
+
+    /**
+     * 流式生成的读超时（毫秒），即相邻两次读之间的间隔
+     */
+    @Setter
+    private long readTimeout = 120_000;
+
+    /**
+     * 阻塞生成的读超时（毫秒），即整次调用的期限
+     */
+    @Setter
+    private long callTimeout = 60_000;
+
+    /**
+     * 向量调用的读超时（毫秒），即整次调用的期限
+     */
+    @Setter
+    private long embedTimeout = 20_000;
+
+    /**
+     * 写超时（毫秒）
+     */
+    @Setter
+    private long writeTimeout = 30_000;
+
+    /**
+     * 空闲连接保活时间（毫秒）
+     */
+    @Setter
+    private long keepAlive = 300_000;
+
+    /**
+     * 连接池最大空闲连接数
+     */
+    @Setter
+    private int connectionPoolSize = 32;
+
+    /**
+     * 最大并发请求数
+     */
+    @Setter
+    private int maxRequests = 64;
+
+    /**
+     * 单主机最大并发请求数（HTTP/2下为同一连接上的并发流）
+     */
+    @Setter
+    private int maxRequestsPerHost = 32;
+
+    private Generation chatGeneration;
+
+    private Generation streamGeneration;
+
+    private TextEmbedding textEmbedding;
+
+    @PostConstruct
+    public void init() {
+        String url = StringUtils.isBlank(baseUrl) ? Constants.baseHttpApiUrl : baseUrl;
+
+        chatGeneration = new Generation(Protocol.HTTP.getValue(), url, connectionOptions(callTimeout));
+        streamGeneration = new Generation(Protocol.HTTP.getValue(), url, connectionOptions(readTimeout));
+        textEmbedding = new TextEmbedding(Protocol.HTTP.getValue(), url, connectionOptions(embedTimeout));
+        log.info("DashScope网关初始化完成，baseUrl:{} 连接池:{} 保活:{}ms 期限 阻塞:{}ms 向量:{}ms",
+                url, connectionPoolSize, keepAlive, callTimeout, embedTimeout);
+    }
+
+    private ConnectionOptions connectionOptions(long readTimeoutMillis) {
+        return ConnectionOptions.builder()
+                .connectTimeout(Duration.ofMillis(connectTimeout))
+                .readTimeout(Duration.ofMillis(readTimeoutMillis))
+                .writeTimeout(Duration.ofMillis(writeTimeout))
+                .connectionIdleTimeout(Duration.ofMillis(keepAlive))
+                .connectionPoolSize(connectionPoolSize)
+                .maximumAsyncRequests(maxRequests)
+                .maximumAsyncRequestsPerHost(maxRequestsPerHost)
+                .build();
+    }
+
+    @Override
+    public GenerationResult call(GenerationParam param) throws NoApiKeyException, InputRequiredException {
+        return chatGeneration.call(param);
+    }
+
+    @Override
+    public Flux<GenerationResult> streamCall(GenerationParam param) {
+        return Flux.defer(() -> {
+            try {
+                return Flux.from(streamGeneration.streamCall(param));
+            } catch (NoApiKeyException | InputRequiredException e) {
+                return Flux.error(e);
+            }
+        });
+    }
+
+    @Override
+    public TextEmbeddingResult embed(TextEmbeddingParam param) throws NoApiKeyException {
+        return textEmbedding.call(param);
+    }
+
+}
@@ -0,0 +1,232 @@
+package com.achobeta.infrastructure.gateway;
+
+import com.achobeta.domain.IRedisService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.Normalizer;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * @Desc : 嵌入向量缓存，键为（模型ID，规范化文本的SHA-256）
+ * <p>
+ * L1为本地内存映射文件，每个模型一个文件，重启后仍然命中且不占堆；
+ * L2为可选的Redis，多节点共享计算结果，L2命中后回填L1
+ */
+@Slf4j
+@Component
+@ConfigurationProperties(prefix = "vector.database.embedding.cache")
+public class EmbeddingCache {
+
+    private static final String REDIS_EMBEDDING_PREFIX = "embedding:cache:";
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    private IRedisService redisService;
+
+    @Setter
+    private boolean enabled = true;
+
+    /**
+     * 本地缓存文件目录
+     */
+    @Setter
+    private String directory = "data/embedding-cache";
+
+    /**
+     * 每个模型最多缓存的向量条数，决定文件大小（条数 ×（40 + 维度 × 4）字节）
+     */
+    @Setter
+    private long maxEntries = 200_000;
+
+    /**
+     * 是否启用Redis二级缓存
+     */
+    @Setter
+    private boolean l2Enabled = false;
+
+    /**
+     * Redis二级缓存过期时间（毫秒）
+     */
+    @Setter
+    private long l2Ttl = 7 * 24 * 60 * 60 * 1000L;
+
+    private final Map<String, MappedEmbeddingStore> stores = new ConcurrentHashMap<>();
+
+    /**
+     * 本地还没有缓存文件（或无法打开）的模型，避免每次未命中都检查磁盘
+     */
+    private final Set<String> absentStores = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 打开失败的模型，不再重试
+     */
+    private final Set<String> failedStores = ConcurrentHashMap.newKeySet();
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 查询缓存，未命中返回null
+     */
+    public float[] get(String modelId, String text) {
+        byte[] key = key(modelId, text);
+
+        MappedEmbeddingStore store = store(modelId, -1);
+        float[] vector = store == null ? null : store.get(key);
+        if (vector != null) {
+            count(modelId, "l1");
+            return vector;
+        }
+
+        if (l2Enabled) {
+            vector = getL2(modelId, key);
+            if (vector != null) {
+                count(modelId, "l2");
+                putL1(modelId, key, vector);
+                return vector;
+            }
+        }
+        count(modelId, "miss");
+        return null;
+    }
+
+    public void put(String modelId, String text, float[] vector) {
+        if (vector == null || vector.length == 0) {
+            return;
+        }
+        byte[] key = key(modelId, text);
+        putL1(modelId, key, vector);
+        if (l2Enabled) {
+            try {
+                redisService.setValue(REDIS_EMBEDDING_PREFIX + modelId + ":" + Hex.encodeHexString(key), vector, l2Ttl);
+            } catch (Exception e) {
+                log.warn("写入嵌入向量二级缓存失败，model:{}", modelId, e);
+            }
+        }
+    }
+
+    /**
+     * 规范化文本：Unicode NFKC、去首尾空白、连续空白合并为一个空格
+     */
+    static String normalize(String text) {
+        return WHITESPACE.matcher(Normalizer.normalize(text, Normalizer.Form.NFKC).trim()).replaceAll(" ");
+    }
+
+    @PreDestroy
+    public void destroy() {
+        stores.forEach((modelId, store) -> {
+            try {
+                store.close();
+            } catch (IOException e) {
+                log.warn("关闭嵌入向量缓存文件失败，model:{}", modelId, e);
+            }
+        });
+    }
+
+    private byte[] key(String modelId, String text) {
+        return DigestUtils.sha256((modelId + '\u0000' + normalize(text)).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private float[] getL2(String modelId, byte[] key) {
+        try {
+            return redisService.getValue(REDIS_EMBEDDING_PREFIX + modelId + ":" + Hex.encodeHexString(key));
+        } catch (Exception e) {
+            log.warn("读取嵌入向量二级缓存失败，model:{}", modelId, e);
+            return null;
+        }
+    }
+
+    private void putL1(String modelId, byte[] key, float[] vector) {
+        MappedEmbeddingStore store = store(modelId, vector.length);
+        if (store != null) {
+            store.put(key, vector);
+        }
+    }
+
+    /**
+     * 获取模型对应的本地文件；dimension为-1时只打开已有文件，否则不存在就按该维度创建
+     */
+    private MappedEmbeddingStore store(String modelId, int dimension) {
+        MappedEmbeddingStore store = stores.get(modelId);
+        if (store != null || failedStores.contains(modelId) || (dimension < 0 && absentStores.contains(modelId))) {
+            return store;
+        }
+        synchronized (stores) {
+            store = stores.get(modelId);
+            if (store != null) {
+                return store;
+            }
+            Path file = Paths.get(directory, modelId.replaceAll("[^A-Za-z0-9._-]", "_") + ".emb");
+            int existing = MappedEmbeddingStore.readDimension(file);
+            int target = existing > 0 ? existing : dimension;
+            if (target <= 0) {
+                absentStores.add(modelId);
+                return null;
+            }
+            try {
+                MappedEmbeddingStore opened = new MappedEmbeddingStore(file, target, maxEntries);
+                stores.put(modelId, opened);
+                absentStores.remove(modelId);
+                Gauge.builder("embedding.cache.size", opened, MappedEmbeddingStore::size)
+                        .description("本地嵌入向量缓存条数")
+                        .tag("model", modelId)
+                        .register(meterRegistry);
+                Gauge.builder("embedding.cache.hit.ratio", this, cache -> cache.hitRatio(modelId))
+                        .description("嵌入向量缓存命中率（L1+L2）")
+                        .tag("model", modelId)
+                        .register(meterRegistry);
+                log.info("嵌入向量缓存文件已打开，model:{} 维度:{} 已有条数:{}", modelId, target, opened.size());
+                return opened;
+            } catch (IOException e) {
+                failedStores.add(modelId);
+                log.error("打开嵌入向量缓存文件失败，本地缓存不可用，model:{} file:{}", modelId, file, e);
+                return null;
+            }
+        }
+    }
+
+    private void count(String modelId, String result) {
+        counters.computeIfAbsent(modelId + ":" + result, k -> Counter.builder("embedding.cache.requests")
+                .description("嵌入向量缓存查询次数")
+                .tag("model", modelId)
+                .tag("result", result)
+                .register(meterRegistry)).increment();
+    }
+
+    private double hitRatio(String modelId) {
+        double l1 = counted(modelId, "l1");
+        double l2 = counted(modelId, "l2");
+        double total = l1 + l2 + counted(modelId, "miss");
+        return total == 0 ? 0 : (l1 + l2) / total;
+    }
+
+    private double counted(String modelId, String result) {
+        Counter counter = counters.get(modelId + ":" + result);
+        return counter == null ? 0 : counter.count();
+    }
+
+}
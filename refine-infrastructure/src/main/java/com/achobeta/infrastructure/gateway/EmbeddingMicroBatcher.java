@@ -0,0 +1,123 @@
+package com.achobeta.infrastructure.gateway;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * @Desc : 嵌入请求微批合并
+ * <p>
+ * 并发到达的单条请求先进入队列，由分发线程攒到 maxBatchSize 条或等满 maxWait 后合成一次批量调用，
+ * 批量结果按顺序分别完成各调用方的future；批量调用在有界线程池上执行，分发线程不被阻塞
+ */
+@Slf4j
+class EmbeddingMicroBatcher {
+
+    private record Pending(String text, CompletableFuture<float[]> future) {
+    }
+
+    private final Function<List<String>, List<float[]>> batchCall;
+
+    private final int maxBatchSize;
+
+    private final long maxWaitNanos;
+
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+
+    private final ExecutorService batchExecutor;
+
+    private final Thread dispatcher;
+
+    private volatile boolean running = true;
+
+    EmbeddingMicroBatcher(String name, Function<List<String>, List<float[]>> batchCall,
+                          int maxBatchSize, Duration maxWait, int concurrency) {
+        this.batchCall = batchCall;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = maxWait.toNanos();
+
+        AtomicInteger index = new AtomicInteger();
+        this.batchExecutor = new ThreadPoolExecutor(concurrency, concurrency,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(concurrency * 4),
+                runnable -> {
+                    Thread thread = new Thread(runnable, name + "-batch-" + index.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                // 批量调用全部在途且排队已满时由分发线程自己执行，天然形成背压
+                new ThreadPoolExecutor.CallerRunsPolicy());
+
+        this.dispatcher = new Thread(this::dispatchLoop, name + "-dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    CompletableFuture<float[]> submit(String text) {
+        CompletableFuture<float[]> future = new CompletableFuture<>();
+        if (!running) {
+            future.completeExceptionally(new IllegalStateException("嵌入批处理已关闭"));
+            return future;
+        }
+        queue.add(new Pending(text, future));
+        return future;
+    }
+
+    void shutdown() {
+        running = false;
+        dispatcher.interrupt();
+        batchExecutor.shutdown();
+        List<Pending> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        rest.forEach(pending -> pending.future().completeExceptionally(new IllegalStateException("嵌入批处理已关闭")));
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            try {
+                List<Pending> batch = new ArrayList<>(maxBatchSize);
+                batch.add(queue.take());
+
+                // 第一条到达后开始计时，攒满或超时即发出
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                batchExecutor.execute(() -> execute(batch));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("嵌入批处理分发异常", e);
+            }
+        }
+    }
+
+    private void execute(List<Pending> batch) {
+        try {
+            List<float[]> vectors = batchCall.apply(batch.stream().map(Pending::text).toList());
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future().complete(vectors.get(i));
+            }
+        } catch (Exception e) {
+            batch.forEach(pending -> pending.future().completeExceptionally(e));
+        }
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.achobeta.infrastructure.gateway;
+
+import com.achobeta.domain.rag.adapter.port.IEmbeddingService;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.onnx.allminilml6v2.AllMiniLmL6V2EmbeddingModel;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @Desc : 进程内ONNX嵌入模型（all-MiniLM-L6-v2），输出384维向量，与现有向量表结构一致，离线可用
+ * <p>
+ * 单条文本在调用线程上推理；批量推理按 batch-size 切分后交给有界推理线程池并行执行，
+ * 队列满时由调用线程自己执行，避免推理任务无限堆积
+ */
+@Slf4j
+@Service("rawEmbeddingService")
+@ConditionalOnProperty(prefix = "vector.database.embedding", name = "provider", havingValue = "local")
+@ConfigurationProperties(prefix = "vector.database.embedding.local")
+public class LocalEmbeddingService implements IEmbeddingService {
+
+    private static final int VECTOR_DIMENSION = 384;
+
+    /**
+     * 推理线程数，默认与CPU核数一致
+     */
+    @Setter
+    private int inferenceThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * 推理线程池队列长度
+     */
+    @Setter
+    private int queueCapacity = 256;
+
+    /**
+     * 每批推理的最大文本条数
+     */
+    @Setter
+    private int batchSize = 32;
+
+    private ThreadPoolExecutor inferenceExecutor;
+
+    private AllMiniLmL6V2EmbeddingModel embeddingModel;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger index = new AtomicInteger();
+        inferenceExecutor = new ThreadPoolExecutor(inferenceThreads, inferenceThreads,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "embedding-inference-" + index.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        embeddingModel = new AllMiniLmL6V2EmbeddingModel(inferenceExecutor);
+        log.info("本地嵌入模型加载完成，推理线程数:{} 批大小:{}", inferenceThreads, batchSize);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        inferenceExecutor.shutdown();
+    }
+
+    @Override
+    public float[] embed(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            return new float[VECTOR_DIMENSION];
+        }
+        return embeddingModel.embed(text.trim()).content().vector();
+    }
+
+    @Override
+    public List<float[]> embedAll(List<String> texts) {
+        List<float[]> vectors = new ArrayList<>(texts.size());
+        for (int from = 0; from < texts.size(); from += batchSize) {
+            vectors.addAll(embedBatch(texts.subList(from, Math.min(from + batchSize, texts.size()))));
+        }
+        return vectors;
+    }
+
+    @Override
+    public int dimension() {
+        return VECTOR_DIMENSION;
+    }
+
+    @Override
+    public String modelId() {
+        return "local:all-minilm-l6-v2";
+    }
+
+    private List<float[]> embedBatch(List<String> texts) {
+        List<TextSegment> segments = texts.stream()
+                .filter(text -> text != null && !text.trim().isEmpty())
+                .map(text -> TextSegment.from(text.trim()))
+                .toList();
+        List<Embedding> embeddings = segments.isEmpty() ? List.of() : embeddingModel.embedAll(segments).content();
+
+        // 空文本补零向量，保持与输入一一对应
+        List<float[]> vectors = new ArrayList<>(texts.size());
+        int next = 0;
+        for (String text : texts) {
+            vectors.add(text == null || text.trim().isEmpty() ? new float[VECTOR_DIMENSION] : embeddings.get(next++).vector());
+        }
+        return vectors;
+    }
+
+}
@@ -0,0 +1,276 @@
+package com.achobeta.infrastructure.gateway;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32C;
+
+/**
+ * @Desc : 基于内存映射文件的定长向量哈希表，数据在堆外，进程重启后仍然有效
+ * <p>
+ * 文件由64字节头和若干桶组成，每桶8个槽，槽 = 32字节键（内容哈希）+ 4字节CRC32C（覆盖键和向量）+ 4字节填充 + dimension个float；
+ * 键按前8字节落到桶内顺序填充，桶满后随机淘汰一个槽；每个桶由分段读写锁保护。
+ * 进程在写槽中途退出时校验和对不上，读取按未命中处理，不会把旧键对应到新向量。
+ * 文件打开期间持有排他文件锁，多个进程共用同一目录时只有一个能使用
+ */
+final class MappedEmbeddingStore implements Closeable {
+
+    private static final int MAGIC = 0x52454D42;
+
+    private static final int VERSION = 2;
+
+    private static final int HEADER_BYTES = 64;
+
+    static final int KEY_BYTES = 32;
+
+    private static final int CHECKSUM_OFFSET = KEY_BYTES;
+
+    /**
+     * 向量相对槽起点的偏移：键 + 校验和 + 填充（保持8字节对齐）
+     */
+    private static final int VECTOR_OFFSET = KEY_BYTES + Long.BYTES;
+
+    private static final int BUCKET_SLOTS = 8;
+
+    private static final int LOCK_STRIPES = 256;
+
+    private final int dimension;
+
+    private final int slotBytes;
+
+    private final int bucketBytes;
+
+    private final long buckets;
+
+    private final int bucketsPerSegment;
+
+    private final FileChannel channel;
+
+    private final MappedByteBuffer header;
+
+    private final MappedByteBuffer[] segments;
+
+    private final ReentrantReadWriteLock[] locks = new ReentrantReadWriteLock[LOCK_STRIPES];
+
+    private final AtomicLong size = new AtomicLong();
+
+    MappedEmbeddingStore(Path file, int dimension, long maxEntries) throws IOException {
+        this.dimension = dimension;
+        this.slotBytes = VECTOR_OFFSET + dimension * Float.BYTES;
+        this.bucketBytes = slotBytes * BUCKET_SLOTS;
+        this.buckets = Math.max(1, (maxEntries + BUCKET_SLOTS - 1) / BUCKET_SLOTS);
+        // 单个映射区不能超过2GB，按整桶切分成多段
+        this.bucketsPerSegment = (int) Math.min(buckets, Integer.MAX_VALUE / bucketBytes);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantReadWriteLock();
+        }
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileLock fileLock;
+        try {
+            fileLock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // 本进程内已打开同一文件
+            fileLock = null;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        if (fileLock == null) {
+            channel.close();
+            throw new IOException("嵌入向量缓存文件已被其他进程占用：" + file);
+        }
+        boolean compatible = channel.size() >= HEADER_BYTES && compatible(channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES));
+        if (!compatible) {
+            // 新文件或参数变化（维度、容量）时整体重建
+            channel.truncate(0);
+        }
+        this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+
+        int segmentCount = (int) ((buckets + bucketsPerSegment - 1) / bucketsPerSegment);
+        this.segments = new MappedByteBuffer[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            long firstBucket = (long) i * bucketsPerSegment;
+            long count = Math.min(bucketsPerSegment, buckets - firstBucket);
+            segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + firstBucket * bucketBytes, count * bucketBytes);
+        }
+
+        if (compatible) {
+            size.set(header.getLong(24));
+        } else {
+            header.putInt(0, MAGIC);
+            header.putInt(4, VERSION);
+            header.putInt(8, dimension);
+            header.putInt(12, BUCKET_SLOTS);
+            header.putLong(16, buckets);
+            header.putLong(24, 0);
+        }
+    }
+
+    /**
+     * 读取已有文件记录的维度，文件不存在或格式不符时返回-1
+     */
+    static int readDimension(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return -1;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                return -1;
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            return header.getInt(0) == MAGIC && header.getInt(4) == VERSION ? header.getInt(8) : -1;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    int dimension() {
+        return dimension;
+    }
+
+    long size() {
+        return size.get();
+    }
+
+    float[] get(byte[] key) {
+        long[] k = toLongs(key);
+        long bucket = bucketOf(k);
+        ReentrantReadWriteLock.ReadLock lock = lockOf(bucket).readLock();
+        lock.lock();
+        try {
+            ByteBuffer segment = segments[(int) (bucket / bucketsPerSegment)];
+            int base = (int) (bucket % bucketsPerSegment) * bucketBytes;
+            for (int slot = 0; slot < BUCKET_SLOTS; slot++) {
+                int offset = base + slot * slotBytes;
+                if (isEmpty(segment, offset)) {
+                    return null;
+                }
+                if (matches(segment, offset, k)) {
+                    // 写入中途中断的槽校验和对不上，按未命中处理，之后的 put 会覆盖它
+                    if (segment.getInt(offset + CHECKSUM_OFFSET) != checksum(segment, offset)) {
+                        return null;
+                    }
+                    float[] vector = new float[dimension];
+                    segment.slice(offset + VECTOR_OFFSET, dimension * Float.BYTES).asFloatBuffer().get(vector);
+                    return vector;
+                }
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void put(byte[] key, float[] vector) {
+        if (vector.length != dimension) {
+            return;
+        }
+        long[] k = toLongs(key);
+        long bucket = bucketOf(k);
+        ReentrantReadWriteLock.WriteLock lock = lockOf(bucket).writeLock();
+        lock.lock();
+        try {
+            ByteBuffer segment = segments[(int) (bucket / bucketsPerSegment)];
+            int base = (int) (bucket % bucketsPerSegment) * bucketBytes;
+            int target = -1;
+            boolean fresh = false;
+            for (int slot = 0; slot < BUCKET_SLOTS; slot++) {
+                int offset = base + slot * slotBytes;
+                if (isEmpty(segment, offset)) {
+                    target = offset;
+                    fresh = true;
+                    break;
+                }
+                if (matches(segment, offset, k)) {
+                    target = offset;
+                    break;
+                }
+            }
+            if (target < 0) {
+                target = base + ThreadLocalRandom.current().nextInt(BUCKET_SLOTS) * slotBytes;
+            }
+
+            segment.slice(target + VECTOR_OFFSET, dimension * Float.BYTES).asFloatBuffer().put(vector);
+            for (int i = 0; i < k.length; i++) {
+                segment.putLong(target + i * Long.BYTES, k[i]);
+            }
+            segment.putInt(target + CHECKSUM_OFFSET, checksum(segment, target));
+            if (fresh) {
+                header.putLong(24, size.incrementAndGet());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        header.force();
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+        channel.close();
+    }
+
+    private boolean compatible(ByteBuffer existing) {
+        return existing.getInt(0) == MAGIC
+                && existing.getInt(4) == VERSION
+                && existing.getInt(8) == dimension
+                && existing.getInt(12) == BUCKET_SLOTS
+                && existing.getLong(16) == buckets;
+    }
+
+    /**
+     * 槽内键和向量的 CRC32C
+     */
+    private int checksum(ByteBuffer segment, int offset) {
+        CRC32C crc = new CRC32C();
+        crc.update(segment.slice(offset, KEY_BYTES));
+        crc.update(segment.slice(offset + VECTOR_OFFSET, dimension * Float.BYTES));
+        return (int) crc.getValue();
+    }
+
+    private long bucketOf(long[] key) {
+        return Math.floorMod(key[0], buckets);
+    }
+
+    private ReentrantReadWriteLock lockOf(long bucket) {
+        return locks[(int) (bucket % LOCK_STRIPES)];
+    }
+
+    private boolean isEmpty(ByteBuffer segment, int offset) {
+        for (int i = 0; i < KEY_BYTES; i += Long.BYTES) {
+            if (segment.getLong(offset + i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean matches(ByteBuffer segment, int offset, long[] key) {
+        for (int i = 0; i < key.length; i++) {
+            if (segment.getLong(offset + i * Long.BYTES) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long[] toLongs(byte[] key) {
+        ByteBuffer buffer = ByteBuffer.wrap(key);
+        return new long[]{buffer.getLong(0), buffer.getLong(8), buffer.getLong(16), buffer.getLong(24)};
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.achobeta.infrastructure.gateway;
+
+import dev.langchain4j.rag.content.Content;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @Desc : RAG 检索结果缓存，键为（知识库版本号，规范化查询文本）
+ * <p>
+ * 知识库提交新版本后版本号变化，旧版本的结果不会再命中；入库提交时同时调用 {@link #invalidate()} 释放旧条目。
+ * 查询向量由 {@link CachingEmbeddingModel} 缓存，这里缓存的是向量检索的结果
+ */
+@Slf4j
+@Component
+@ConfigurationProperties(prefix = "rag.retrieval.cache")
+public class RetrievalCache {
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Setter
+    private boolean enabled = true;
+
+    /**
+     * 结果有效期（毫秒）
+     */
+    @Setter
+    private long ttl = 10 * 60 * 1000L;
+
+    /**
+     * 最多缓存的查询条数，超出后淘汰最久未使用的
+     */
+    @Setter
+    private int maxEntries = 2000;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 查询缓存，未命中或已过期返回null
+     */
+    public List<Content> get(String generation, String query) {
+        String key = key(generation, query);
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && entry.expireAt() < System.currentTimeMillis()) {
+                entries.remove(key);
+                entry = null;
+            }
+        }
+        meterRegistry.counter("rag.retrieval.cache.requests", "result", entry == null ? "miss" : "hit").increment();
+        return entry == null ? null : entry.contents();
+    }
+
+    public void put(String generation, String query, List<Content> contents) {
+        Entry entry = new Entry(List.copyOf(contents), System.currentTimeMillis() + ttl);
+        synchronized (entries) {
+            entries.put(key(generation, query), entry);
+        }
+    }
+
+    /**
+     * 知识库提交新版本后清空
+     */
+    public void invalidate() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+            entries.clear();
+        }
+        if (size > 0) {
+            log.info("知识库版本变化，清空检索结果缓存 {} 条", size);
+        }
+    }
+
+    private String key(String generation, String query) {
+        return generation + '\u0000' + EmbeddingCache.normalize(query);
+    }
+
+    private record Entry(List<Content> contents, long expireAt) {
+    }
+}
@@ -43,6 +43,11 @@ public class RedissonService implements IRedisService {
         return redissonClient.getBlockingQueue(key);
     }
 
+    @Override
+    public <T> RBlockingDeque<T> getBlockingDeque(String key) {
+        return redissonClient.getBlockingDeque(key);
+    }
+
     @Override
     public <T> RDelayedQueue<T> getDelayedQueue(RBlockingQueue<T> rBlockingQueue) {
         return redissonClient.getDelayedQueue(rBlockingQueue);
@@ -0,0 +1,322 @@
+package com.achobeta.infrastructure.vector;
+
+import com.achobeta.types.support.util.VectorMath;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * @Desc : 纯Java实现的HNSW（分层可导航小世界图）近似最近邻索引，余弦相似度
+ * <p>
+ * 向量写入时归一化，距离为 1 - 点积。节点数不超过 exactThreshold 时直接线性扫描，结果精确且更快。
+ * 开启 int8 量化时节点只保存量化码（内存为 float 的 1/4），查询向量保持 float 做非对称距离计算。
+ * 读多写少，使用读写锁保护；按 key 去重，重复写入同一条数据不会产生重复节点
+ */
+public class HnswIndex<T> {
+
+    private static final Comparator<Candidate> NEAREST_FIRST = Comparator.comparingDouble(Candidate::distance);
+
+    private static final Comparator<Candidate> FARTHEST_FIRST = NEAREST_FIRST.reversed();
+
+    private final int dimension;
+
+    private final int m;
+
+    private final int maxM0;
+
+    private final int efConstruction;
+
+    private final int exactThreshold;
+
+    private final double levelMultiplier;
+
+    private final boolean quantized;
+
+    private final SplittableRandom random;
+
+    private final List<Node<T>> nodes = new ArrayList<>();
+
+    private final Set<String> keys = new HashSet<>();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int entryPoint = -1;
+
+    private int maxLevel = -1;
+
+    public HnswIndex(int dimension, int m, int efConstruction, int exactThreshold, long seed) {
+        this(dimension, m, efConstruction, exactThreshold, seed, false);
+    }
+
+    public HnswIndex(int dimension, int m, int efConstruction, int exactThreshold, long seed, boolean quantized) {
+        this.dimension = dimension;
+        this.m = Math.max(2, m);
+        this.maxM0 = this.m * 2;
+        this.efConstruction = Math.max(this.m, efConstruction);
+        this.exactThreshold = exactThreshold;
+        this.levelMultiplier = 1 / Math.log(this.m);
+        this.random = new SplittableRandom(seed);
+        this.quantized = quantized;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return nodes.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * 写入向量，维度不符或 key 已存在时返回false
+     */
+    public boolean add(String key, float[] vector, T payload) {
+        if (vector == null || vector.length != dimension) {
+            return false;
+        }
+        float[] normalized = VectorMath.normalized(vector);
+
+        lock.writeLock().lock();
+        try {
+            if (!keys.add(key)) {
+                return false;
+            }
+            int level = randomLevel();
+            int id = nodes.size();
+            Node<T> node = quantized
+                    ? new Node<>(null, ScalarQuantizer.quantize(normalized), payload, level, m, maxM0)
+                    : new Node<>(normalized, null, payload, level, m, maxM0);
+            nodes.add(node);
+
+            if (entryPoint < 0) {
+                entryPoint = id;
+                maxLevel = level;
+                return true;
+            }
+
+            int current = entryPoint;
+            for (int l = maxLevel; l > level; l--) {
+                current = greedy(normalized, current, l);
+            }
+            for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+                List<Candidate> candidates = searchLayer(normalized, current, efConstruction, l);
+                int cap = l == 0 ? maxM0 : m;
+                int selected = Math.min(m, candidates.size());
+                for (int i = 0; i < selected; i++) {
+                    int neighbor = candidates.get(i).id();
+                    node.link(l, neighbor);
+                    connect(neighbor, id, l, cap);
+                }
+                current = candidates.get(0).id();
+            }
+            if (level > maxLevel) {
+                maxLevel = level;
+                entryPoint = id;
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 检索与 query 最相似的 k 条，按相似度从高到低
+     */
+    public List<Hit<T>> search(float[] query, int k, int ef) {
+        if (query == null || query.length != dimension || k <= 0) {
+            return List.of();
+        }
+        float[] normalized = VectorMath.normalized(query);
+
+        lock.readLock().lock();
+        try {
+            if (nodes.isEmpty()) {
+                return List.of();
+            }
+            List<Candidate> candidates;
+            if (nodes.size() <= exactThreshold) {
+                candidates = scan(normalized);
+            } else {
+                int current = entryPoint;
+                for (int l = maxLevel; l > 0; l--) {
+                    current = greedy(normalized, current, l);
+                }
+                candidates = searchLayer(normalized, current, Math.max(ef, k), 0);
+            }
+
+            int count = Math.min(k, candidates.size());
+            List<Hit<T>> hits = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Candidate candidate = candidates.get(i);
+                hits.add(new Hit<>(nodes.get(candidate.id()).payload, 1 - candidate.distance()));
+            }
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Candidate> scan(float[] query) {
+        List<Candidate> all = new ArrayList<>(nodes.size());
+        for (int i = 0; i < nodes.size(); i++) {
+            all.add(new Candidate(i, distance(query, i)));
+        }
+        all.sort(NEAREST_FIRST);
+        return all;
+    }
+
+    /**
+     * 在高层逐步贪心移动到更近的节点
+     */
+    private int greedy(float[] query, int start, int level) {
+        int current = start;
+        float best = distance(query, current);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            Node<T> node = nodes.get(current);
+            for (int i = 0; i < node.counts[level]; i++) {
+                int neighbor = node.links[level][i];
+                float d = distance(query, neighbor);
+                if (d < best) {
+                    best = d;
+                    current = neighbor;
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 单层束搜索，返回按距离升序的最多 ef 个候选
+     */
+    private List<Candidate> searchLayer(float[] query, int start, int ef, int level) {
+        BitSet visited = new BitSet(nodes.size());
+        PriorityQueue<Candidate> frontier = new PriorityQueue<>(NEAREST_FIRST);
+        PriorityQueue<Candidate> results = new PriorityQueue<>(FARTHEST_FIRST);
+
+        Candidate first = new Candidate(start, distance(query, start));
+        visited.set(start);
+        frontier.add(first);
+        results.add(first);
+
+        while (!frontier.isEmpty()) {
+            Candidate closest = frontier.poll();
+            if (closest.distance() > results.peek().distance() && results.size() >= ef) {
+                break;
+            }
+            Node<T> node = nodes.get(closest.id());
+            if (level > node.level) {
+                continue;
+            }
+            for (int i = 0; i < node.counts[level]; i++) {
+                int neighbor = node.links[level][i];
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                float d = distance(query, neighbor);
+                if (results.size() < ef || d < results.peek().distance()) {
+                    Candidate candidate = new Candidate(neighbor, d);
+                    frontier.add(candidate);
+                    results.add(candidate);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+
+        List<Candidate> sorted = new ArrayList<>(results);
+        sorted.sort(NEAREST_FIRST);
+        return sorted;
+    }
+
+    /**
+     * 为已有节点增加反向连接，超过上限时只保留最近的 cap 个
+     */
+    private void connect(int from, int to, int level, int cap) {
+        Node<T> node = nodes.get(from);
+        if (node.counts[level] < cap) {
+            node.link(level, to);
+            return;
+        }
+        List<Candidate> candidates = new ArrayList<>(cap + 1);
+        for (int i = 0; i < node.counts[level]; i++) {
+            int neighbor = node.links[level][i];
+            candidates.add(new Candidate(neighbor, distance(from, neighbor)));
+        }
+        candidates.add(new Candidate(to, distance(from, to)));
+        candidates.sort(NEAREST_FIRST);
+        node.counts[level] = 0;
+        for (int i = 0; i < cap; i++) {
+            node.link(level, candidates.get(i).id());
+        }
+    }
+
+    private int randomLevel() {
+        double r = 1.0 - random.nextDouble();
+        return (int) (-Math.log(r) * levelMultiplier);
+    }
+
+    /**
+     * 查询向量与节点的距离
+     */
+    private float distance(float[] query, int id) {
+        Node<T> node = nodes.get(id);
+        return 1 - (node.vector != null ? VectorMath.dot(query, node.vector) : ScalarQuantizer.dot(query, node.codes));
+    }
+
+    /**
+     * 两个节点之间的距离
+     */
+    private float distance(int a, int b) {
+        Node<T> x = nodes.get(a);
+        Node<T> y = nodes.get(b);
+        return 1 - (x.vector != null ? VectorMath.dot(x.vector, y.vector) : ScalarQuantizer.dot(x.codes, y.codes));
+    }
+
+    private static final class Node<T> {
+        private final float[] vector;
+        private final ScalarQuantizer.Quantized codes;
+        private final T payload;
+        private final int level;
+        private final int[][] links;
+        private final int[] counts;
+
+        private Node(float[] vector, ScalarQuantizer.Quantized codes, T payload, int level, int m, int maxM0) {
+            this.vector = vector;
+            this.codes = codes;
+            this.payload = payload;
+            this.level = level;
+            this.links = new int[level + 1][];
+            this.counts = new int[level + 1];
+            for (int l = 0; l <= level; l++) {
+                links[l] = new int[l == 0 ? maxM0 : m];
+            }
+        }
+
+        private void link(int level, int neighbor) {
+            links[level][counts[level]++] = neighbor;
+        }
+    }
+
+    private record Candidate(int id, float distance) {
+    }
+
+    public record Hit<T>(T payload, double similarity) {
+    }
+}
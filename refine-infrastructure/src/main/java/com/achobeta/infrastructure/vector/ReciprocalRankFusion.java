@@ -0,0 +1,45 @@
+package com.achobeta.infrastructure.vector;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * @Desc : 倒数排名融合（RRF），score(d) = Σ 1 / (k + rank_i(d))，rank 从1开始
+ * <p>
+ * 只用名次不用原始分数，余弦相似度与词法得分量纲不同也能直接合并；
+ * 同一条目出现在多路结果中时保留第一路中的对象
+ */
+public final class ReciprocalRankFusion {
+
+    private ReciprocalRankFusion() {
+    }
+
+    /**
+     * 融合多路排序结果，按融合得分从高到低返回最多 limit 条
+     *
+     * @param k        平滑常数，越大越弱化头部名次的优势，常用60
+     * @param key      条目唯一标识
+     * @param rankings 各路结果，每路按相关性从高到低
+     */
+    public static <T> List<Fused<T>> fuse(int k, int limit, Function<T, String> key, List<List<T>> rankings) {
+        Map<String, Fused<T>> fused = new LinkedHashMap<>();
+        for (List<T> ranking : rankings) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                T item = ranking.get(rank);
+                double score = 1.0 / (k + rank + 1);
+                fused.merge(key.apply(item), new Fused<>(item, score),
+                        (existing, added) -> new Fused<>(existing.item(), existing.score() + added.score()));
+            }
+        }
+        List<Fused<T>> sorted = new ArrayList<>(fused.values());
+        sorted.sort(Comparator.comparingDouble((Fused<T> f) -> f.score()).reversed());
+        return sorted.size() > limit ? sorted.subList(0, limit) : sorted;
+    }
+
+    public record Fused<T>(T item, double score) {
+    }
+}
@@ -0,0 +1,408 @@
+package com.achobeta.infrastructure.vector;
+
+import com.achobeta.domain.IRedisService;
+import com.achobeta.domain.rag.adapter.port.IEmbeddingService;
+import com.achobeta.infrastructure.dao.IVectorDao;
+import com.achobeta.infrastructure.dao.po.LearningVector;
+import com.achobeta.types.support.util.VectorMath;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.achobeta.types.common.Constants.LEARNING_DATA_VERSION_KEY;
+
+/**
+ * @Desc : 按用户划分的进程内HNSW索引，pgvector 仍为数据源
+ * <p>
+ * 用户首次检索时从 pgvector 加载其全部学习向量建索引，写入路径同步追加；
+ * 加载时记下用户的学习数据版本号，检索时发现版本号已变化（其他实例写入）则丢弃并重新加载；
+ * 按最近访问顺序淘汰（LRU），受用户数和向量总数双重限制。默认以 int8 量化码保存向量，
+ * 加载时用原始向量抽样对比，统计量化索引的召回率。
+ * 向量数超过单用户上限、加载失败或超时时返回null，由调用方回退到 pgvector 检索
+ */
+@Slf4j
+@Component
+@ConfigurationProperties(prefix = "vector.database.local-index")
+public class UserVectorIndexCache {
+
+    @Resource
+    private IVectorDao vectorDao;
+
+    @Resource
+    private IEmbeddingService embeddingService;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    private IRedisService redisService;
+
+    @Setter
+    private boolean enabled = true;
+
+    /**
+     * 最多缓存的用户数
+     */
+    @Setter
+    private int maxUsers = 500;
+
+    /**
+     * 所有用户索引的向量总数上限（384维 float 约1.5KB/条，int8 约0.4KB/条）
+     */
+    @Setter
+    private long maxTotalVectors = 300_000;
+
+    /**
+     * 单用户向量数上限，超过的用户不建进程内索引
+     */
+    @Setter
+    private int maxVectorsPerUser = 10_000;
+
+    /**
+     * HNSW 每层最大连接数
+     */
+    @Setter
+    private int m = 16;
+
+    /**
+     * HNSW 构建候选列表大小
+     */
+    @Setter
+    private int efConstruction = 100;
+
+    /**
+     * HNSW 查询候选列表下限
+     */
+    @Setter
+    private int efSearch = 64;
+
+    /**
+     * 向量数不超过该值时线性扫描
+     */
+    @Setter
+    private int exactThreshold = 256;
+
+    /**
+     * 向量量化方式：int8（内存为原始的1/4）或 none
+     */
+    @Setter
+    private String quantization = "int8";
+
+    /**
+     * 每次加载时用于召回率统计的抽样查询数，0 关闭
+     */
+    @Setter
+    private int recallSamples = 5;
+
+    /**
+     * 等待其他线程加载同一用户索引的最长时间（毫秒）
+     */
+    @Setter
+    private long loadTimeout = 5000;
+
+    /**
+     * 访问顺序的 LinkedHashMap，最久未访问的在最前，读写均在其监视器内
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * 最近一次加载测得的召回率
+     */
+    private final AtomicReference<Double> recall = new AtomicReference<>(Double.NaN);
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("vector.local.index.recall", recall, AtomicReference::get)
+                .tag("quantization", quantization)
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 在用户的进程内索引中检索，返回带相似度的结果；无法在进程内回答时返回null
+     */
+    public List<LearningVector> search(String userId, float[] query, int limit) {
+        Long version = currentVersion(userId);
+        Entry entry;
+        boolean loader = false;
+        synchronized (entries) {
+            entry = entries.get(userId);
+            if (entry != null && entry.isStale(version)) {
+                // 其他实例写入了该用户的学习向量，本地索引缺少这些数据，重新加载
+                entries.remove(userId);
+                entry = null;
+            }
+            if (entry == null) {
+                entry = new Entry(userId);
+                entries.put(userId, entry);
+                loader = true;
+            }
+        }
+        if (loader) {
+            load(entry);
+        }
+
+        HnswIndex<LearningVector> index;
+        try {
+            index = entry.ready.get(loadTimeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("等待用户向量索引加载超时，回退到数据库检索，userId:{}", userId);
+            return null;
+        } catch (Exception e) {
+            return null;
+        }
+        if (index == null || index.dimension() != query.length) {
+            return null;
+        }
+
+        List<HnswIndex.Hit<LearningVector>> hits = index.search(query, limit, Math.max(efSearch, limit * 2));
+        List<LearningVector> results = new ArrayList<>(hits.size());
+        for (HnswIndex.Hit<LearningVector> hit : hits) {
+            LearningVector result = slim(hit.payload());
+            result.setSimilarity(hit.similarity());
+            results.add(result);
+        }
+        return results;
+    }
+
+    /**
+     * 写入路径回调：已加载索引的用户同步追加，正在加载的先暂存，加载完成后补入
+     *
+     * @param versions 本次写入后各用户的学习数据版本号，缺失表示未知
+     */
+    public void onInserted(List<LearningVector> vectors, Map<String, Long> versions) {
+        if (!enabled) {
+            return;
+        }
+        for (LearningVector vector : vectors) {
+            Entry entry;
+            synchronized (entries) {
+                entry = entries.get(vector.getUserId());
+            }
+            if (entry != null) {
+                entry.add(vector, versions.get(vector.getUserId()));
+            }
+        }
+    }
+
+    /**
+     * 用户当前的学习数据版本号，读取失败返回null（不做版本校验）
+     */
+    private Long currentVersion(String userId) {
+        try {
+            return redisService.getAtomicLong(LEARNING_DATA_VERSION_KEY + userId);
+        } catch (Exception e) {
+            log.warn("读取学习数据版本号失败，userId:{}", userId, e);
+            return null;
+        }
+    }
+
+    private void load(Entry entry) {
+        try {
+            // 先读版本号再读数据，加载期间的写入会使版本号前进，下次检索时重新加载
+            entry.version = currentVersion(entry.userId);
+            List<LearningVector> rows = vectorDao.getUserIndexVectors(entry.userId, maxVectorsPerUser + 1);
+            if (rows.size() > maxVectorsPerUser) {
+                // 超出容量的用户保留空条目，避免每次检索都重新加载
+                log.info("用户向量数超过进程内索引上限 {}，使用数据库检索，userId:{}", maxVectorsPerUser, entry.userId);
+                entry.ready.complete(null);
+                return;
+            }
+
+            HnswIndex<LearningVector> index = new HnswIndex<>(embeddingService.dimension(), m, efConstruction,
+                    exactThreshold, entry.userId.hashCode(), "int8".equalsIgnoreCase(quantization));
+            for (LearningVector row : rows) {
+                if (index.add(key(row), row.getEmbedding(), slim(row))) {
+                    entry.weight.incrementAndGet();
+                }
+            }
+            measureRecall(index, rows);
+            entry.publish(index);
+            log.info("用户向量索引加载完成，userId:{} 向量数:{}", entry.userId, index.size());
+        } catch (Exception e) {
+            log.warn("加载用户向量索引失败，userId:{}", entry.userId, e);
+            entry.ready.complete(null);
+            synchronized (entries) {
+                entries.remove(entry.userId, entry);
+            }
+            return;
+        }
+        evictIfNecessary();
+    }
+
+    /**
+     * 以部分已加载向量为查询，对比索引结果与原始 float 向量精确检索的 top-k
+     */
+    private void measureRecall(HnswIndex<LearningVector> index, List<LearningVector> rows) {
+        int k = 10;
+        if (recallSamples <= 0 || rows.size() <= k * 2) {
+            return;
+        }
+        // 只归一化一次，按行平铺后每个样本做一次批量 top-k
+        List<LearningVector> valid = rows.stream()
+                .filter(row -> row.getEmbedding() != null && row.getEmbedding().length == index.dimension())
+                .toList();
+        if (valid.size() <= k * 2) {
+            return;
+        }
+        int dimension = index.dimension();
+        float[] matrix = new float[valid.size() * dimension];
+        for (int i = 0; i < valid.size(); i++) {
+            System.arraycopy(VectorMath.normalized(valid.get(i).getEmbedding()), 0, matrix, i * dimension, dimension);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double sum = 0;
+        int measured = 0;
+        for (int s = 0; s < recallSamples; s++) {
+            float[] query = valid.get(random.nextInt(valid.size())).getEmbedding();
+            Set<String> expected = new HashSet<>();
+            for (int row : VectorMath.topK(VectorMath.normalized(query), matrix, dimension, k).indices()) {
+                expected.add(key(valid.get(row)));
+            }
+            long found = index.search(query, k, Math.max(efSearch, k * 2)).stream()
+                    .filter(hit -> expected.contains(key(hit.payload())))
+                    .count();
+            sum += (double) found / expected.size();
+            measured++;
+        }
+        if (measured > 0) {
+            recall.set(sum / measured);
+            log.debug("用户向量索引召回率 recall@{}:{} 向量数:{}", k, sum / measured, rows.size());
+        }
+    }
+
+    /**
+     * 超过用户数或向量总数上限时，从最久未访问的用户开始淘汰
+     */
+    private void evictIfNecessary() {
+        synchronized (entries) {
+            long totalVectors = 0;
+            for (Entry entry : entries.values()) {
+                totalVectors += entry.weight.get();
+            }
+            Iterator<Entry> iterator = entries.values().iterator();
+            while ((entries.size() > maxUsers || totalVectors > maxTotalVectors) && entries.size() > 1 && iterator.hasNext()) {
+                Entry eldest = iterator.next();
+                iterator.remove();
+                totalVectors -= eldest.weight.get();
+            }
+        }
+    }
+
+    /**
+     * 学习向量的唯一标识：优先 ingestId（写入路径追加的条目还没有数据库id），否则取id
+     */
+    public static String key(LearningVector vector) {
+        return vector.getIngestId() != null ? vector.getIngestId() : "id:" + vector.getId();
+    }
+
+    /**
+     * 索引中只保留检索结果需要的字段，向量本身由索引持有
+     */
+    private static LearningVector slim(LearningVector vector) {
+        return LearningVector.builder()
+                .id(vector.getId())
+                .userId(vector.getUserId())
+                .questionId(vector.getQuestionId())
+                .actionType(vector.getActionType())
+                .questionContent(vector.getQuestionContent())
+                .subject(vector.getSubject())
+                .knowledgePointId(vector.getKnowledgePointId())
+                .ingestId(vector.getIngestId())
+                .createdAt(vector.getCreatedAt() != null ? vector.getCreatedAt() : LocalDateTime.now())
+                .build();
+    }
+
+    private final class Entry {
+        private final String userId;
+        private final CompletableFuture<HnswIndex<LearningVector>> ready = new CompletableFuture<>();
+        private final AtomicInteger weight = new AtomicInteger();
+        private final List<LearningVector> pending = new ArrayList<>();
+
+        /**
+         * 索引内容对应的学习数据版本号，null 表示未知
+         */
+        private volatile Long version;
+
+        private Entry(String userId) {
+            this.userId = userId;
+        }
+
+        /**
+         * 已加载完成且版本号落后于当前版本；加载中的条目由加载结束后的检索再判断
+         */
+        private boolean isStale(Long current) {
+            Long loaded = version;
+            return ready.isDone() && current != null && loaded != null && !current.equals(loaded);
+        }
+
+        /**
+         * @param newVersion 本次写入后的版本号，恰好比索引版本大1时说明期间没有其他写入，索引版本随之前进
+         */
+        private void add(LearningVector vector, Long newVersion) {
+            synchronized (this) {
+                if (!ready.isDone()) {
+                    pending.add(vector);
+                    return;
+                }
+            }
+            HnswIndex<LearningVector> index = ready.getNow(null);
+            if (index == null) {
+                return;
+            }
+            if (index.size() >= maxVectorsPerUser) {
+                // 超出容量后转为数据库检索，下次访问重新加载并标记为超限
+                synchronized (entries) {
+                    entries.remove(userId, this);
+                }
+                return;
+            }
+            if (index.add(key(vector), vector.getEmbedding(), slim(vector))) {
+                weight.incrementAndGet();
+                evictIfNecessary();
+            }
+            Long loaded = version;
+            if (newVersion != null && loaded != null && newVersion == loaded + 1) {
+                version = newVersion;
+            }
+        }
+
+        /**
+         * 补入加载期间到达的写入后再对检索可见
+         */
+        private void publish(HnswIndex<LearningVector> index) {
+            synchronized (this) {
+                for (LearningVector vector : pending) {
+                    if (index.add(key(vector), vector.getEmbedding(), slim(vector))) {
+                        weight.incrementAndGet();
+                    }
+                }
+                pending.clear();
+                ready.complete(index);
+            }
+        }
+    }
+}
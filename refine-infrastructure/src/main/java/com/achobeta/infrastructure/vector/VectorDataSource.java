@@ -0,0 +1,192 @@
+package com.achobeta.infrastructure.vector;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Properties;
+
+/**
+ * @Desc : pgvector 数据库的连接池，LangChain4j 知识库存储、向量 DAO 与向量表维护共用
+ * <p>
+ * 与 MySQL 业务连接池完全隔离：不注册为 DataSource / 事务管理器 Bean，不影响 Spring Boot 对 MySQL 的自动配置，
+ * 向量检索占满连接时也不会挤占业务事务。向量 DAO 使用独立的 SqlSessionFactory（映射文件在 mybatis/vector 下），
+ * 需要事务时使用 {@link #transactionManager()}。
+ * 建索引、会话级 advisory lock 等长时间占用或修改会话状态的操作使用 {@link #openDedicatedConnection()}，不占用池内连接
+ */
+@Slf4j
+@Component
+@ConfigurationProperties(prefix = "pgvector.pool")
+public class VectorDataSource {
+
+    private static final String MAPPER_LOCATIONS = "classpath:/mybatis/vector/*.xml";
+
+    private static final String MYBATIS_CONFIG = "mybatis/config/mybatis-config.xml";
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Value("${pgvector.config.host}")
+    private String host;
+
+    @Value("${pgvector.config.port}")
+    private int port;
+
+    @Value("${pgvector.config.database}")
+    private String database;
+
+    @Value("${pgvector.config.user}")
+    private String user;
+
+    @Value("${pgvector.config.password}")
+    private String password;
+
+    @Setter
+    private String poolName = "Vector_HikariCP";
+
+    /**
+     * 最大连接数
+     */
+    @Setter
+    private int maximumPoolSize = 10;
+
+    /**
+     * 最小空闲连接数
+     */
+    @Setter
+    private int minimumIdle = 2;
+
+    /**
+     * 获取连接的最长等待时间（毫秒），池耗尽时快速失败，由调用方降级
+     */
+    @Setter
+    private long connectionTimeout = 3000;
+
+    @Setter
+    private long idleTimeout = 600_000;
+
+    @Setter
+    private long maxLifetime = 1_800_000;
+
+    /**
+     * 连接借出超过该时间（毫秒）未归还时打印泄漏告警，0 关闭
+     */
+    @Setter
+    private long leakDetectionThreshold = 60_000;
+
+    /**
+     * 单条语句超时（毫秒），0 不限制；只作用于池内连接
+     */
+    @Setter
+    private long statementTimeout = 0;
+
+    private HikariDataSource dataSource;
+
+    private SqlSessionTemplate sqlSessionTemplate;
+
+    private PlatformTransactionManager transactionManager;
+
+    @PostConstruct
+    public void init() {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(poolName);
+        config.setJdbcUrl(jdbcUrl());
+        config.setUsername(user);
+        config.setPassword(password);
+        config.setMaximumPoolSize(maximumPoolSize);
+        config.setMinimumIdle(minimumIdle);
+        config.setConnectionTimeout(connectionTimeout);
+        config.setIdleTimeout(idleTimeout);
+        config.setMaxLifetime(maxLifetime);
+        config.setLeakDetectionThreshold(leakDetectionThreshold);
+        // 启动时数据库不可用也不阻塞启动，首次借出连接时再建立
+        config.setInitializationFailTimeout(-1);
+        config.addDataSourceProperty("ApplicationName", poolName);
+        if (statementTimeout > 0) {
+            config.addDataSourceProperty("options", "-c statement_timeout=" + statementTimeout);
+        }
+        config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        dataSource = new HikariDataSource(config);
+
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        sqlSessionTemplate = new SqlSessionTemplate(buildSqlSessionFactory());
+        log.info("向量数据库连接池初始化完成，pool:{} 最大连接数:{}", poolName, maximumPoolSize);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (dataSource != null) {
+            dataSource.close();
+        }
+    }
+
+    public DataSource dataSource() {
+        return dataSource;
+    }
+
+    /**
+     * 从池中借出连接，用完必须关闭归还；不要修改会话级设置（SET、advisory lock），需要时使用 SET LOCAL 或专用连接
+     */
+    public Connection getConnection() throws SQLException {
+        return dataSource.getConnection();
+    }
+
+    /**
+     * 不经过连接池的专用连接，用于建索引、持有会话级锁等长时间操作，关闭即断开
+     */
+    public Connection openDedicatedConnection() throws SQLException {
+        Properties properties = new Properties();
+        properties.setProperty("user", user);
+        properties.setProperty("password", password);
+        properties.setProperty("ApplicationName", poolName + "-maintenance");
+        return DriverManager.getConnection(jdbcUrl(), properties);
+    }
+
+    /**
+     * 向量库事务管理器，只用于向量 DAO，不参与 MySQL 的 @Transactional
+     */
+    public PlatformTransactionManager transactionManager() {
+        return transactionManager;
+    }
+
+    public <T> T getMapper(Class<T> type) {
+        return sqlSessionTemplate.getMapper(type);
+    }
+
+    private SqlSessionFactory buildSqlSessionFactory() {
+        SqlSessionFactoryBean factory = new SqlSessionFactoryBean();
+        factory.setDataSource(dataSource);
+        // 与 MySQL 共用 mybatis-config.xml（含 pgvector 类型处理器），映射文件单独加载
+        factory.setConfigLocation(new ClassPathResource(MYBATIS_CONFIG));
+        try {
+            factory.setMapperLocations(new PathMatchingResourcePatternResolver().getResources(MAPPER_LOCATIONS));
+            return factory.getObject();
+        } catch (Exception e) {
+            throw new IllegalStateException("向量库 SqlSessionFactory 初始化失败", e);
+        }
+    }
+
+    private String jdbcUrl() {
+        return String.format("jdbc:postgresql://%s:%d/%s", host, port, database);
+    }
+}
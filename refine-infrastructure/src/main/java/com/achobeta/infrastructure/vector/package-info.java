@@ -0,0 +1,4 @@
+/**
+ * 进程内向量索引
+ */
+package com.achobeta.infrastructure.vector;
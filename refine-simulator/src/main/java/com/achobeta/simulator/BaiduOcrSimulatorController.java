@@ -0,0 +1,61 @@
+package com.achobeta.simulator;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * @Desc : 模拟百度OCR鉴权与通用文字识别接口
+ */
+@Profile("sim")
+@RestController
+@RequestMapping("/sim/baidu/")
+@RequiredArgsConstructor
+public class BaiduOcrSimulatorController {
+
+    private final SimulatorProperties properties;
+
+    private final SimulatedWorkload workload;
+
+    @PostMapping(value = "oauth/2.0/token", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, Object> token() {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("access_token", "sim." + workload.requestId());
+        body.put("expires_in", 2592000);
+        return body;
+    }
+
+    @PostMapping(value = "rest/2.0/ocr/v1/general_basic", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Map<String, Object>>> generalBasic() {
+        long logId = ThreadLocalRandom.current().nextLong(Long.MAX_VALUE);
+        Map<String, Object> body = new LinkedHashMap<>();
+        if (workload.shouldFail()) {
+            // 百度接口限流时仍返回200，通过error_code区分
+            body.put("error_code", 18);
+            body.put("error_msg", "Open api qps request limit reached");
+            body.put("log_id", logId);
+            return Mono.just(ResponseEntity.status(HttpStatus.OK).body(body));
+        }
+
+        List<Map<String, Object>> words = workload.ocrLines().stream()
+                .map(line -> Map.<String, Object>of("words", line))
+                .toList();
+        body.put("words_result", words);
+        body.put("words_result_num", words.size());
+        body.put("log_id", logId);
+        return Mono.just(ResponseEntity.ok(body)).delayElement(Duration.ofMillis(properties.getOcrLatency()));
+    }
+
+}
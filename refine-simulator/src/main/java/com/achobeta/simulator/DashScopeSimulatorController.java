@@ -0,0 +1,238 @@
+package com.achobeta.simulator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @Desc : 模拟DashScope文本生成与文本向量HTTP接口，供离线压测与延迟测试使用
+ */
+@Slf4j
+@Profile("sim")
+@RestController
+@RequestMapping("/sim/dashscope/api/v1/services/")
+@RequiredArgsConstructor
+public class DashScopeSimulatorController {
+
+    private final SimulatorProperties properties;
+
+    private final SimulatedWorkload workload;
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 流式生成，按配置的首包延迟与吐字速度逐个推送result事件
+     */
+    @PostMapping(value = "aigc/text-generation/generation", headers = "X-DashScope-SSE=enable")
+    public Flux<ServerSentEvent<String>> streamGeneration(@RequestBody Map<String, Object> request,
+                                                          HttpServletResponse response) throws IOException {
+        if (workload.shouldFail()) {
+            writeThrottling(response);
+            return null;
+        }
+
+        String requestId = workload.requestId();
+        boolean incremental = Boolean.TRUE.equals(parameters(request).get("incremental_output"));
+        boolean messageFormat = isMessageFormat(request);
+        int inputTokens = inputTokens(request);
+        int total = properties.getResponseTokens();
+        int emitted = workload.shouldAbortStream() ? total / 2 : total;
+
+        Duration interval = workload.tokenInterval();
+        Flux<Long> ticks = interval.isZero()
+                ? Flux.range(0, emitted).map(Integer::longValue).delaySubscription(workload.firstTokenDelay())
+                : Flux.interval(workload.firstTokenDelay(), interval).take(emitted);
+
+        StringBuilder content = new StringBuilder();
+        AtomicInteger sequence = new AtomicInteger();
+        Flux<ServerSentEvent<String>> events = ticks.map(index -> {
+            String token = workload.token(index.intValue());
+            content.append(token);
+            boolean last = index == total - 1;
+            Map<String, Object> body = generationBody(requestId, incremental ? token : content.toString(),
+                    last ? "stop" : "null", messageFormat, inputTokens, index.intValue() + 1);
+            return resultEvent(sequence.incrementAndGet(), body);
+        });
+
+        if (emitted < total) {
+            events = events.concatWith(Mono.fromSupplier(() -> errorEvent(sequence.incrementAndGet(), requestId)));
+        }
+        return events.doOnCancel(() -> log.debug("模拟流式生成被客户端取消，requestId:{}", requestId));
+    }
+
+    /**
+     * 非流式生成，等待全部token"生成"完毕后一次性返回
+     */
+    @PostMapping(value = "aigc/text-generation/generation", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Map<String, Object>>> generation(@RequestBody Map<String, Object> request) {
+        String requestId = workload.requestId();
+        if (workload.shouldFail()) {
+            return Mono.just(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(throttlingBody(requestId)));
+        }
+
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < properties.getResponseTokens(); i++) {
+            content.append(workload.token(i));
+        }
+        Map<String, Object> body = generationBody(requestId, content.toString(), "stop",
+                isMessageFormat(request), inputTokens(request), properties.getResponseTokens());
+        return Mono.just(ResponseEntity.ok(body)).delayElement(workload.completionDelay());
+    }
+
+    /**
+     * 文本向量，每条文本返回确定性的单位向量
+     */
+    @PostMapping(value = "embeddings/text-embedding/text-embedding", produces = MediaType.APPLICATION_JSON_VALUE)
+    @SuppressWarnings("unchecked")
+    public Mono<ResponseEntity<Map<String, Object>>> embedding(@RequestBody Map<String, Object> request) {
+        String requestId = workload.requestId();
+        if (workload.shouldFail()) {
+            return Mono.just(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(throttlingBody(requestId)));
+        }
+
+        Map<String, Object> input = (Map<String, Object>) request.getOrDefault("input", Map.of());
+        List<String> texts = (List<String>) input.getOrDefault("texts", List.of());
+        Object dimension = parameters(request).get("dimension");
+        int dim = dimension instanceof Number number ? number.intValue() : properties.getEmbeddingDimension();
+
+        List<Map<String, Object>> embeddings = new ArrayList<>(texts.size());
+        int tokens = 0;
+        for (int i = 0; i < texts.size(); i++) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("text_index", i);
+            item.put("embedding", workload.embedding(texts.get(i), dim));
+            embeddings.add(item);
+            tokens += texts.get(i) == null ? 0 : texts.get(i).length();
+        }
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("output", Map.of("embeddings", embeddings));
+        body.put("usage", Map.of("total_tokens", tokens));
+        body.put("request_id", requestId);
+        return Mono.just(ResponseEntity.ok(body)).delayElement(Duration.ofMillis(properties.getEmbeddingLatency()));
+    }
+
+    private Map<String, Object> generationBody(String requestId, String text, String finishReason,
+                                               boolean messageFormat, int inputTokens, int outputTokens) {
+        Map<String, Object> output = new LinkedHashMap<>();
+        if (messageFormat) {
+            Map<String, Object> choice = new LinkedHashMap<>();
+            choice.put("finish_reason", finishReason);
+            choice.put("message", Map.of("role", "assistant", "content", text));
+            output.put("choices", List.of(choice));
+        } else {
+            output.put("text", text);
+            output.put("finish_reason", finishReason);
+        }
+
+        Map<String, Object> usage = new LinkedHashMap<>();
+        usage.put("input_tokens", inputTokens);
+        usage.put("output_tokens", outputTokens);
+        usage.put("total_tokens", inputTokens + outputTokens);
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("output", output);
+        body.put("usage", usage);
+        body.put("request_id", requestId);
+        return body;
+    }
+
+    private ServerSentEvent<String> resultEvent(int id, Map<String, Object> body) {
+        return ServerSentEvent.<String>builder()
+                .id(String.valueOf(id))
+                .event("result")
+                .comment("HTTP_STATUS/200")
+                .data(toJson(body))
+                .build();
+    }
+
+    private ServerSentEvent<String> errorEvent(int id, String requestId) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("code", "InternalError");
+        body.put("message", "simulated stream interruption");
+        body.put("request_id", requestId);
+        return ServerSentEvent.<String>builder()
+                .id(String.valueOf(id))
+                .event("error")
+                .comment("HTTP_STATUS/500")
+                .data(toJson(body))
+                .build();
+    }
+
+    private Map<String, Object> throttlingBody(String requestId) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("code", "Throttling.RateQuota");
+        body.put("message", "Requests rate limit exceeded, please try again later.");
+        body.put("request_id", requestId);
+        return body;
+    }
+
+    private void writeThrottling(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write(toJson(throttlingBody(workload.requestId())));
+        response.flushBuffer();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> parameters(Map<String, Object> request) {
+        Object parameters = request.get("parameters");
+        return parameters instanceof Map ? (Map<String, Object>) parameters : Map.of();
+    }
+
+    private boolean isMessageFormat(Map<String, Object> request) {
+        return "message".equals(parameters(request).get("result_format"));
+    }
+
+    /**
+     * 按输入字符数粗略估算输入token
+     */
+    @SuppressWarnings("unchecked")
+    private int inputTokens(Map<String, Object> request) {
+        Object input = request.get("input");
+        if (!(input instanceof Map)) {
+            return 0;
+        }
+        Map<String, Object> inputMap = (Map<String, Object>) input;
+        int tokens = inputMap.get("prompt") instanceof String prompt ? prompt.length() : 0;
+        if (inputMap.get("messages") instanceof List<?> messages) {
+            for (Object message : messages) {
+                if (message instanceof Map<?, ?> map && map.get("content") instanceof String content) {
+                    tokens += content.length();
+                }
+            }
+        }
+        return tokens;
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (Exception e) {
+            throw new IllegalStateException("模拟响应序列化失败", e);
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.achobeta.simulator;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * @Desc : 生成模拟响应所需的延迟、文本与向量，相同输入得到相同向量，便于验证缓存命中
+ */
+@Component
+@Profile("sim")
+@RequiredArgsConstructor
+public class SimulatedWorkload {
+
+    private static final String CORPUS = "解题思路首先分析已知条件然后列出方程求解注意单位换算最后检验结果是否符合题意"
+            + "本题考查函数的单调性与极值需要先求导再讨论导数符号变化确定区间";
+
+    private final SimulatorProperties properties;
+
+    public boolean shouldFail() {
+        return hit(properties.getErrorRate());
+    }
+
+    public boolean shouldAbortStream() {
+        return hit(properties.getStreamAbortRate());
+    }
+
+    public Duration firstTokenDelay() {
+        long jitter = properties.getTtftJitter() > 0
+                ? ThreadLocalRandom.current().nextLong(properties.getTtftJitter() + 1) : 0;
+        return Duration.ofMillis(properties.getTtft() + jitter);
+    }
+
+    public Duration tokenInterval() {
+        double tps = properties.getTokensPerSecond();
+        return tps <= 0 ? Duration.ZERO : Duration.ofNanos((long) (1_000_000_000L / tps));
+    }
+
+    /**
+     * 非流式调用的总耗时：首包延迟加上全部token的生成时间
+     */
+    public Duration completionDelay() {
+        return firstTokenDelay().plus(tokenInterval().multipliedBy(properties.getResponseTokens()));
+    }
+
+    /**
+     * 第index个token的文本，一个token对应两个汉字
+     */
+    public String token(int index) {
+        int start = (index * 2) % (CORPUS.length() - 1);
+        return CORPUS.substring(start, start + 2);
+    }
+
+    public List<String> ocrLines() {
+        List<String> lines = new ArrayList<>(properties.getOcrLines());
+        for (int i = 0; i < properties.getOcrLines(); i++) {
+            StringBuilder line = new StringBuilder(properties.getOcrLineLength());
+            for (int j = 0; j < properties.getOcrLineLength(); j++) {
+                line.append(CORPUS.charAt((i * 7 + j) % CORPUS.length()));
+            }
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+
+    /**
+     * 以文本哈希为种子生成单位向量
+     */
+    public float[] embedding(String text, int dimension) {
+        Random random = new Random(text == null ? 0 : text.hashCode());
+        float[] vector = new float[dimension];
+        double norm = 0;
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        float scale = norm == 0 ? 0 : (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < dimension; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+
+    public String requestId() {
+        return UUID.randomUUID().toString();
+    }
+
+    private boolean hit(double rate) {
+        return rate > 0 && ThreadLocalRandom.current().nextDouble() < rate;
+    }
+
+}
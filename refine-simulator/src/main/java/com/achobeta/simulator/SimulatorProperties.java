@@ -0,0 +1,74 @@
+package com.achobeta.simulator;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * @Desc : 模拟器参数，调节首包延迟、吐字速度、错误率与响应体大小以复现不同的上游表现
+ */
+@Getter
+@Setter
+@Component
+@Profile("sim")
+@ConfigurationProperties(prefix = "simulator")
+public class SimulatorProperties {
+
+    /**
+     * 首个token到达前的延迟（毫秒）
+     */
+    private long ttft = 800;
+
+    /**
+     * 首包延迟的随机抖动上限（毫秒）
+     */
+    private long ttftJitter = 200;
+
+    /**
+     * 每秒输出的token数
+     */
+    private double tokensPerSecond = 30;
+
+    /**
+     * 每次回复输出的token数
+     */
+    private int responseTokens = 200;
+
+    /**
+     * 请求被拒绝的概率（0~1），命中时按DashScope限流格式返回429
+     */
+    private double errorRate = 0;
+
+    /**
+     * 流式输出中途断开的概率（0~1）
+     */
+    private double streamAbortRate = 0;
+
+    /**
+     * 嵌入接口延迟（毫秒）
+     */
+    private long embeddingLatency = 50;
+
+    /**
+     * 嵌入向量维度
+     */
+    private int embeddingDimension = 384;
+
+    /**
+     * OCR接口延迟（毫秒）
+     */
+    private long ocrLatency = 300;
+
+    /**
+     * OCR返回的文字行数
+     */
+    private int ocrLines = 8;
+
+    /**
+     * OCR每行的字数
+     */
+    private int ocrLineLength = 24;
+
+}
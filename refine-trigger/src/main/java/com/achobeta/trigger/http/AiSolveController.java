@@ -1,13 +1,14 @@
 package com.achobeta.trigger.http;
 
 import com.achobeta.domain.ai.service.IAiService;
+import com.achobeta.domain.ai.service.IStreamCoalescer;
+import com.achobeta.types.conversation.ConversationConstants;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
-
-import java.io.IOException;
+import reactor.core.publisher.Flux;
 
 /**
  * @Auth : Malog
@@ -25,29 +26,22 @@ public class AiSolveController {
 
     private final IAiService aiService;
 
+    private final IStreamCoalescer streamCoalescer;
+
     @PostMapping("stream")
-    public SseEmitter stream(@RequestParam("question") String question) {
-        SseEmitter emitter = new SseEmitter();
-
-        try {
-            aiService.aiSolveQuestion(question, content -> {
-                try {
-                    emitter.send(SseEmitter.event().data(content));
-                } catch (IOException e) {
-                    log.error("Error sending SSE event", e);
-                    emitter.completeWithError(e);
-                }
-            });
-
-            // 当aiSolveQuestion方法执行完毕（流式输出完成）后，完成emitter
-            emitter.complete();
-
-        } catch (Exception e) {
-            log.error("Error during AI stream call", e);
-            emitter.completeWithError(e);
-        }
-
-        return emitter;
+    public Flux<ServerSentEvent<String>> stream(@RequestParam("question") String question) {
+        // 直接返回片段流，由Spring MVC订阅并逐个写出，流结束即完成响应；细碎片段先合并再写出
+        return streamCoalescer.coalesce(aiService.aiSolveQuestionStream(question))
+                .map(content -> ServerSentEvent.<String>builder()
+                        .data(content)
+                        .build())
+                .onErrorResume(e -> {
+                    log.error("Error during AI stream call", e);
+                    return Flux.just(ServerSentEvent.<String>builder()
+                            .event(ConversationConstants.SseEventTypes.ERROR)
+                            .data(e.getMessage() == null ? "" : e.getMessage())
+                            .build());
+                });
     }
 
 
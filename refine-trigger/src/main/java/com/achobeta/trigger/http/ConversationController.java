@@ -4,17 +4,17 @@ import com.achobeta.domain.conversation.service.IConversationService;
 import com.achobeta.types.Response;
 import com.achobeta.types.annotation.GlobalInterception;
 import com.achobeta.types.common.UserContext;
-import com.achobeta.types.conversation.AiResponseHandler;
+import com.achobeta.types.conversation.ConversationConstants;
 import com.achobeta.api.dto.SendMessageRequestDTO;
 import com.achobeta.api.dto.SolveWithContextRequestDTO;
+import com.achobeta.types.exception.AppException;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
-
-import java.io.IOException;
+import reactor.core.publisher.Flux;
 
 /**
  * @Auth : Malog
@@ -35,56 +35,14 @@ public class ConversationController {
      * 发送消息并获取AI回复（流式）
      */
     @PostMapping("send-message")
-    public SseEmitter sendMessage(@Valid @RequestBody SendMessageRequestDTO requestDTO) {
-        SseEmitter emitter = new SseEmitter();
-
-        try {
-            log.info("发送消息开始，conversationId:{}", requestDTO.getConversationId());
-
-            // 创建AI回复处理器
-            AiResponseHandler responseHandler = AiResponseHandler.builder()
-                    .onStreaming(pureContent -> {
-                        try {
-                            emitter.send(SseEmitter.event().data(pureContent));
-                        } catch (IOException e) {
-                            log.error("发送SSE流式事件失败", e);
-                            emitter.completeWithError(e);
-                        }
-                    })
-                    .onCompleted(pureContent -> {
-                        try {
-                            emitter.send(SseEmitter.event().data(pureContent));
-                        } catch (IOException e) {
-                            log.error("发送SSE完成事件失败", e);
-                            emitter.completeWithError(e);
-                        }
-                    })
-                    .onError(errorContent -> {
-                        log.error("AI回复错误: {}", errorContent);
-                        emitter.completeWithError(new RuntimeException("AI回复错误: " + errorContent));
-                    })
-                    .onFinish(emitter::complete)
-                    .build();
-
-            // 调用会话服务，使用Redis存储上下文
-            boolean success = conversationService.sendMessageWithStream(
-                    requestDTO.getConversationId(),
-                    requestDTO.getMessage(),
-                    responseHandler::handle);
-
-            if (!success) {
-                log.error("发送消息失败，conversationId:{}", requestDTO.getConversationId());
-                emitter.completeWithError(new RuntimeException("发送消息失败"));
-            } else {
-                log.info("发送消息成功，conversationId:{}", requestDTO.getConversationId());
-            }
-
-        } catch (Exception e) {
-            log.error("发送消息时发生异常，conversationId:{}", requestDTO.getConversationId(), e);
-            emitter.completeWithError(e);
-        }
-
-        return emitter;
+    public Flux<ServerSentEvent<String>> sendMessage(@Valid @RequestBody SendMessageRequestDTO requestDTO) {
+        log.info("发送消息开始，conversationId:{}", requestDTO.getConversationId());
+
+        // 调用会话服务，使用Redis存储上下文；订阅后由模型推送驱动，不占用请求线程
+        return toServerSentEvents(conversationService.sendMessageStream(
+                        requestDTO.getConversationId(),
+                        requestDTO.getMessage()))
+                .doOnComplete(() -> log.info("发送消息成功，conversationId:{}", requestDTO.getConversationId()));
     }
 
     /**
@@ -92,62 +50,19 @@ public class ConversationController {
      */
     @GlobalInterception
     @PostMapping("solve-with-context")
-    public SseEmitter solveWithContext(@Valid @RequestBody SolveWithContextRequestDTO requestDTO) {
-        SseEmitter emitter = new SseEmitter();
-
-        try {
-            String userId = UserContext.getUserId();
-            if (userId == null) {
-                emitter.completeWithError(new RuntimeException("用户信息获取失败"));
-                return emitter;
-            }
-
-            log.info("基于错题ID的AI对话开始，userId:{} questionId:{}", userId, requestDTO.getQuestionId());
-
-            // 创建AI回复处理器
-            AiResponseHandler responseHandler = AiResponseHandler.builder()
-                    .onStreaming(pureContent -> {
-                        try {
-                            emitter.send(SseEmitter.event().data(pureContent));
-                        } catch (IOException e) {
-                            log.error("发送SSE流式事件失败", e);
-                            emitter.completeWithError(e);
-                        }
-                    })
-                    .onCompleted(pureContent -> {
-                        try {
-                            emitter.send(SseEmitter.event().data(pureContent));
-                        } catch (IOException e) {
-                            log.error("发送SSE完成事件失败", e);
-                            emitter.completeWithError(e);
-                        }
-                    })
-                    .onError(errorContent -> {
-                        log.error("AI回复错误: {}", errorContent);
-                        emitter.completeWithError(new RuntimeException("AI回复错误: " + errorContent));
-                    })
-                    .onFinish(emitter::complete)
-                    .build();
-
-            // 直接使用错题ID作为会话ID进行对话（不需要创建数据库会话）
-            boolean success = conversationService.sendMessageWithStream(
-                    requestDTO.getQuestionId(), // 使用错题ID作为会话ID
-                    requestDTO.getUserQuestion(),
-                    responseHandler::handle);
-
-            if (!success) {
-                log.error("AI对话失败，questionId:{}", requestDTO.getQuestionId());
-                emitter.completeWithError(new RuntimeException("AI对话失败"));
-            } else {
-                log.info("AI对话成功，questionId:{}", requestDTO.getQuestionId());
-            }
-
-        } catch (Exception e) {
-            log.error("基于错题ID的AI对话时发生异常，questionId:{}", requestDTO.getQuestionId(), e);
-            emitter.completeWithError(e);
+    public Flux<ServerSentEvent<String>> solveWithContext(@Valid @RequestBody SolveWithContextRequestDTO requestDTO) {
+        String userId = UserContext.getUserId();
+        if (userId == null) {
+            return toServerSentEvents(Flux.error(new AppException("用户信息获取失败")));
         }
 
-        return emitter;
+        log.info("基于错题ID的AI对话开始，userId:{} questionId:{}", userId, requestDTO.getQuestionId());
+
+        // 直接使用错题ID作为会话ID进行对话（不需要创建数据库会话）
+        return toServerSentEvents(conversationService.sendMessageStream(
+                        requestDTO.getQuestionId(), // 使用错题ID作为会话ID
+                        requestDTO.getUserQuestion()))
+                .doOnComplete(() -> log.info("AI对话成功，questionId:{}", requestDTO.getQuestionId()));
     }
 
     /**
@@ -172,4 +87,21 @@ public class ConversationController {
             return Response.SERVICE_ERROR("系统异常: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 将回复片段转换为SSE事件（片段已在会话服务中合并），异常时下发错误事件后结束
+     */
+    private Flux<ServerSentEvent<String>> toServerSentEvents(Flux<String> contents) {
+        return contents
+                .map(content -> ServerSentEvent.<String>builder()
+                        .data(content)
+                        .build())
+                .onErrorResume(e -> {
+                    log.error("AI回复错误", e);
+                    return Flux.just(ServerSentEvent.<String>builder()
+                            .event(ConversationConstants.SseEventTypes.ERROR)
+                            .data("AI回复错误: " + e.getMessage())
+                            .build());
+                });
+    }
+}
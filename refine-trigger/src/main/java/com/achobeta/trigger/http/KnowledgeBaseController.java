@@ -0,0 +1,111 @@
+package com.achobeta.trigger.http;
+
+import com.achobeta.api.dto.KnowledgeIngestionProgressDTO;
+import com.achobeta.domain.rag.model.valobj.KnowledgeIngestionProgressVO;
+import com.achobeta.domain.rag.service.IKnowledgeIngestionService;
+import com.achobeta.types.Response;
+import com.achobeta.types.annotation.GlobalInterception;
+import com.achobeta.types.enums.GlobalServiceStatusCode;
+import com.achobeta.types.exception.AppException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * @Desc : 知识库管理接口，触发目录同步、热添加文档、查看入库进度
+ * <p>
+ * 不走用户登录，通过请求头 X-Admin-Token 与 rag.ingestion.admin-token 比对，口令未配置时全部拒绝
+ */
+@Slf4j
+@Validated
+@RestController()
+@CrossOrigin("${app.config.cross-origin}:*")
+@RequestMapping("/api/${app.config.api-version}/knowledge/")
+@RequiredArgsConstructor
+public class KnowledgeBaseController {
+
+    private static final String ADMIN_TOKEN_HEADER = "X-Admin-Token";
+
+    private final IKnowledgeIngestionService knowledgeIngestionService;
+
+    @Value("${rag.ingestion.admin-token:}")
+    private String adminToken;
+
+    /**
+     * 后台增量同步文档目录
+     *
+     * @return 是否已开始（已有任务在执行时为 false）
+     */
+    @GlobalInterception(checkLogin = false)
+    @PostMapping("sync")
+    public Response<Boolean> sync(@RequestHeader(value = ADMIN_TOKEN_HEADER, required = false) String token) {
+        checkAdmin(token);
+        boolean started = knowledgeIngestionService.sync();
+        log.info("触发知识库目录同步，started:{}", started);
+        return success(started);
+    }
+
+    /**
+     * 热添加文档（UTF-8 文本），同名文档视为新版本
+     *
+     * @param file 文档文件
+     * @return 是否已开始（已有任务在执行时为 false）
+     */
+    @GlobalInterception(checkLogin = false)
+    @PostMapping(value = "documents", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public Response<Boolean> addDocument(@RequestHeader(value = ADMIN_TOKEN_HEADER, required = false) String token,
+                                         @RequestPart("file") MultipartFile file) throws IOException {
+        checkAdmin(token);
+        boolean started = knowledgeIngestionService.addDocument(file.getOriginalFilename(), file.getBytes());
+        log.info("上传知识库文档：{} 大小:{} started:{}", file.getOriginalFilename(), file.getSize(), started);
+        return success(started);
+    }
+
+    /**
+     * 最近一次入库任务的进度与吞吐
+     */
+    @GlobalInterception(checkLogin = false)
+    @GetMapping("progress")
+    public Response<KnowledgeIngestionProgressDTO> progress(@RequestHeader(value = ADMIN_TOKEN_HEADER, required = false) String token) {
+        checkAdmin(token);
+        KnowledgeIngestionProgressVO vo = knowledgeIngestionService.progress();
+        return success(KnowledgeIngestionProgressDTO.builder()
+                .running(vo.isRunning())
+                .job(vo.getJob())
+                .startedAt(vo.getStartedAt())
+                .finishedAt(vo.getFinishedAt())
+                .documentsTotal(vo.getDocumentsTotal())
+                .documentsDone(vo.getDocumentsDone())
+                .documentsFailed(vo.getDocumentsFailed())
+                .segmentsEmbedded(vo.getSegmentsEmbedded())
+                .segmentsWritten(vo.getSegmentsWritten())
+                .bytesProcessed(vo.getBytesProcessed())
+                .segmentsPerSecond(vo.getSegmentsPerSecond())
+                .megabytesPerSecond(vo.getMegabytesPerSecond())
+                .lastError(vo.getLastError())
+                .build());
+    }
+
+    private void checkAdmin(String token) {
+        if (adminToken == null || adminToken.isBlank() || token == null
+                || !MessageDigest.isEqual(adminToken.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8))) {
+            throw new AppException(GlobalServiceStatusCode.USER_NO_PERMISSION);
+        }
+    }
+
+    private <T> Response<T> success(T data) {
+        return Response.<T>builder()
+                .code(GlobalServiceStatusCode.SYSTEM_SUCCESS.getCode())
+                .info(GlobalServiceStatusCode.SYSTEM_SUCCESS.getMessage())
+                .data(data)
+                .build();
+    }
+}
@@ -21,6 +21,17 @@ public class Constants {
 
     public static final String USER_REFRESH_TOKEN_KEY = "user:token:refresh:";
 
+    // 学习动态缓存、学习数据版本号（写入学习向量时递增）、刷新任务锁
+    public static final String LEARNING_DYNAMICS_CACHE_KEY = "learning:dynamics:";
+    public static final String LEARNING_DATA_VERSION_KEY = "learning:dynamics:version:";
+    public static final String LEARNING_DYNAMICS_REFRESH_LOCK_KEY = "learning:dynamics:refresh:";
+
+    // 学习向量异步写入队列、处理中队列前缀（每个实例一个，崩溃恢复用）、实例心跳、死信队列
+    public static final String LEARNING_VECTOR_INGEST_QUEUE_KEY = "learning:vector:ingest:queue";
+    public static final String LEARNING_VECTOR_INGEST_PROCESSING_KEY = "learning:vector:ingest:processing:";
+    public static final String LEARNING_VECTOR_INGEST_INSTANCES_KEY = "learning:vector:ingest:instances";
+    public static final String LEARNING_VECTOR_INGEST_DLQ_KEY = "learning:vector:ingest:dlq";
+
     // 密码正则
     public static final String REGEX_PASSWORD = "^(?=.*\\d)(?=.*[a-zA-Z])[\\da-zA-Z~!@#$%^&*_]{8,18}$";
 
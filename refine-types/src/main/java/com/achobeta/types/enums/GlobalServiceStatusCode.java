@@ -57,6 +57,8 @@ public enum GlobalServiceStatusCode {
     QUESTION_GENERATION_FAIL(10001, "题目生成失败,请稍后再试"),
     QUESTION_IS_EXPIRED(10002, "题目已过期或不存在" ),
     OCR_ERROR(10003, "OCR图片识别错误"),
+    AI_SERVICE_BUSY(10004, "AI服务繁忙,请稍后再试"),
+    AI_SERVICE_UNAVAILABLE(10005, "AI服务暂不可用,请稍后再试"),
 
     ;
 
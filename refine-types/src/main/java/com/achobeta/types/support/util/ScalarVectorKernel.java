@@ -0,0 +1,46 @@
+package com.achobeta.types.support.util;
+
+/**
+ * @Desc : 标量实现，未启用 jdk.incubator.vector 时使用
+ */
+final class ScalarVectorKernel implements VectorKernel {
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float dot(float[] query, byte[] codes, int length) {
+        float sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += query[i] * codes[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public int dot(byte[] a, byte[] b, int length) {
+        int sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void scale(float[] vector, float factor) {
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= factor;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "scalar";
+    }
+}
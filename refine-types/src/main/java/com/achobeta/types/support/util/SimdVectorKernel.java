@@ -0,0 +1,101 @@
+package com.achobeta.types.support.util;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * @Desc : 基于 Vector API 的 SIMD 实现，使用平台首选位宽（AVX2 为8路、AVX-512 为16路 float）
+ * <p>
+ * 只能通过 {@link VectorMath} 反射创建，保证未启用孵化模块时不会被加载
+ */
+final class SimdVectorKernel implements VectorKernel {
+
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+
+    /**
+     * 与 float 通道数相同的 byte 向量，用于 int8 量化码转 float；位宽不足64时无法构造，回退标量
+     */
+    private static final VectorSpecies<Byte> BYTES = FLOATS.length() * Byte.SIZE >= 64
+            ? VectorSpecies.of(byte.class, VectorShape.forBitSize(FLOATS.length() * Byte.SIZE))
+            : null;
+
+    private final ScalarVectorKernel scalar = new ScalarVectorKernel();
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector acc = FloatVector.zero(FLOATS);
+        int bound = FLOATS.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += FLOATS.length()) {
+            FloatVector x = FloatVector.fromArray(FLOATS, a, aOffset + i);
+            FloatVector y = FloatVector.fromArray(FLOATS, b, bOffset + i);
+            acc = x.fma(y, acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float dot(float[] query, byte[] codes, int length) {
+        if (BYTES == null) {
+            return scalar.dot(query, codes, length);
+        }
+        FloatVector acc = FloatVector.zero(FLOATS);
+        int bound = FLOATS.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += FLOATS.length()) {
+            FloatVector q = FloatVector.fromArray(FLOATS, query, i);
+            FloatVector c = (FloatVector) ByteVector.fromArray(BYTES, codes, i).convertShape(VectorOperators.B2F, FLOATS, 0);
+            acc = q.fma(c, acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += query[i] * codes[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public int dot(byte[] a, byte[] b, int length) {
+        if (BYTES == null) {
+            return scalar.dot(a, b, length);
+        }
+        // 单个乘积不超过 127²，按 float 累加在向量维度（数千）内不会丢失精度
+        FloatVector acc = FloatVector.zero(FLOATS);
+        int bound = FLOATS.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += FLOATS.length()) {
+            FloatVector x = (FloatVector) ByteVector.fromArray(BYTES, a, i).convertShape(VectorOperators.B2F, FLOATS, 0);
+            FloatVector y = (FloatVector) ByteVector.fromArray(BYTES, b, i).convertShape(VectorOperators.B2F, FLOATS, 0);
+            acc = x.fma(y, acc);
+        }
+        int sum = (int) acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void scale(float[] vector, float factor) {
+        int bound = FLOATS.loopBound(vector.length);
+        int i = 0;
+        for (; i < bound; i += FLOATS.length()) {
+            FloatVector.fromArray(FLOATS, vector, i).mul(factor).intoArray(vector, i);
+        }
+        for (; i < vector.length; i++) {
+            vector[i] *= factor;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "simd(" + FLOATS + ")";
+    }
+}
@@ -0,0 +1,15 @@
+package com.achobeta.types.support.util;
+
+/**
+ * @Desc : 向量运算内核，标量与 SIMD 两种实现
+ */
+interface VectorKernel {
+
+    float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    float dot(float[] query, byte[] codes, int length);
+
+    int dot(byte[] a, byte[] b, int length);
+
+    void scale(float[] vector, float factor);
+}
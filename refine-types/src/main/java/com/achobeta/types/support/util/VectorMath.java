@@ -0,0 +1,145 @@
+package com.achobeta.types.support.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * @Desc : 向量运算工具，点积、余弦、L2归一化、批量 top-k
+ * <p>
+ * 运行时带 --add-modules jdk.incubator.vector 时使用 Vector API 的 SIMD 实现，
+ * 否则（或 -Drefine.vector.simd=false）回退到标量实现，两者结果一致（浮点求和顺序不同，误差在 1e-6 量级）
+ */
+@Slf4j
+public final class VectorMath {
+
+    private static final VectorKernel KERNEL = selectKernel();
+
+    private VectorMath() {
+    }
+
+    /**
+     * 当前是否使用 SIMD 实现
+     */
+    public static boolean simdEnabled() {
+        return !(KERNEL instanceof ScalarVectorKernel);
+    }
+
+    public static float dot(float[] a, float[] b) {
+        return KERNEL.dot(a, 0, b, 0, Math.min(a.length, b.length));
+    }
+
+    /**
+     * a[aOffset, aOffset + length) 与 b[bOffset, bOffset + length) 的点积
+     */
+    public static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        return KERNEL.dot(a, aOffset, b, bOffset, length);
+    }
+
+    /**
+     * float 查询与 int8 量化码的点积（未乘缩放系数）
+     */
+    public static float dot(float[] query, byte[] codes) {
+        return KERNEL.dot(query, codes, Math.min(query.length, codes.length));
+    }
+
+    /**
+     * 两个 int8 量化码的点积（未乘缩放系数）
+     */
+    public static int dot(byte[] a, byte[] b) {
+        return KERNEL.dot(a, b, Math.min(a.length, b.length));
+    }
+
+    public static float norm(float[] vector) {
+        return (float) Math.sqrt(dot(vector, vector));
+    }
+
+    /**
+     * 余弦相似度，任一向量为零向量时返回0
+     */
+    public static float cosine(float[] a, float[] b) {
+        float na = dot(a, a);
+        float nb = dot(b, b);
+        if (na == 0 || nb == 0) {
+            return 0;
+        }
+        return (float) (dot(a, b) / Math.sqrt((double) na * nb));
+    }
+
+    /**
+     * 原地 L2 归一化，零向量保持不变
+     */
+    public static void normalize(float[] vector) {
+        float norm = norm(vector);
+        if (norm > 0) {
+            KERNEL.scale(vector, 1 / norm);
+        }
+    }
+
+    /**
+     * 返回归一化后的副本，原数组不变
+     */
+    public static float[] normalized(float[] vector) {
+        float[] copy = vector.clone();
+        normalize(copy);
+        return copy;
+    }
+
+    /**
+     * 在按行平铺的矩阵（rows × dimension）中找与 query 点积最大的 k 行，结果按得分从高到低
+     * <p>
+     * 向量均已归一化时即为余弦相似度 top-k
+     */
+    public static TopK topK(float[] query, float[] matrix, int dimension, int k) {
+        int rows = matrix.length / dimension;
+        int size = Math.min(k, rows);
+        if (size <= 0) {
+            return new TopK(new int[0], new float[0]);
+        }
+        // 小顶堆保存当前最好的 size 个，堆顶为其中得分最低的
+        PriorityQueue<Scored> heap = new PriorityQueue<>(size, Comparator.comparingDouble(Scored::score));
+        for (int row = 0; row < rows; row++) {
+            float score = KERNEL.dot(query, 0, matrix, row * dimension, dimension);
+            if (heap.size() < size) {
+                heap.add(new Scored(row, score));
+            } else if (score > heap.peek().score()) {
+                heap.poll();
+                heap.add(new Scored(row, score));
+            }
+        }
+        int[] indices = new int[heap.size()];
+        float[] scores = new float[heap.size()];
+        for (int i = heap.size() - 1; i >= 0; i--) {
+            Scored top = heap.poll();
+            indices[i] = top.row();
+            scores[i] = top.score();
+        }
+        return new TopK(indices, scores);
+    }
+
+    private static VectorKernel selectKernel() {
+        if (Boolean.parseBoolean(System.getProperty("refine.vector.simd", "true"))
+                && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                // 反射加载，未启用孵化模块时不会触发 jdk.incubator.vector 的类链接
+                VectorKernel kernel = (VectorKernel) Class.forName("com.achobeta.types.support.util.SimdVectorKernel")
+                        .getDeclaredConstructor().newInstance();
+                log.info("向量运算使用SIMD实现：{}", kernel);
+                return kernel;
+            } catch (Throwable e) {
+                log.warn("SIMD向量运算初始化失败，使用标量实现", e);
+            }
+        }
+        return new ScalarVectorKernel();
+    }
+
+    /**
+     * top-k 结果，indices 为矩阵行号
+     */
+    public record TopK(int[] indices, float[] scores) {
+    }
+
+    private record Scored(int row, float score) {
+    }
+}
@@ -0,0 +1,121 @@
+package com.achobeta.types.support.util;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * @Desc : SIMD 内核与标量内核的结果对比，覆盖不足一个向量宽度的尾部长度、带偏移的行读取和 int8 量化码的边界值
+ */
+class SimdVectorKernelTest {
+
+    /**
+     * 覆盖 0 到 AVX-512 三倍宽度的所有尾部长度，另加线上常用维度
+     */
+    private static final int[] LENGTHS = lengths(0, 50, 384, 1024, 1536);
+
+    private static final ScalarVectorKernel SCALAR = new ScalarVectorKernel();
+
+    private static VectorKernel simd;
+
+    private final Random random = new Random(42);
+
+    @BeforeAll
+    static void setUp() {
+        assumeTrue(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent(), "未启用 jdk.incubator.vector");
+        simd = new SimdVectorKernel();
+    }
+
+    @Test
+    void floatDotMatchesScalar() {
+        for (int length : LENGTHS) {
+            float[] a = randomFloats(length + 7);
+            float[] b = randomFloats(length + 3);
+            assertClose(SCALAR.dot(a, 0, b, 0, length), simd.dot(a, 0, b, 0, length), length, length);
+            // 按行读取平铺矩阵时的偏移
+            assertClose(SCALAR.dot(a, 7, b, 3, length), simd.dot(a, 7, b, 3, length), length, length);
+        }
+    }
+
+    @Test
+    void floatInt8DotMatchesScalar() {
+        for (int length : LENGTHS) {
+            float[] query = randomFloats(length);
+            byte[] codes = randomCodes(length);
+            assertClose(SCALAR.dot(query, codes, length), simd.dot(query, codes, length), 128f * length, length);
+        }
+    }
+
+    @Test
+    void int8DotMatchesScalarExactly() {
+        for (int length : LENGTHS) {
+            byte[] a = randomCodes(length);
+            byte[] b = randomCodes(length);
+            assertEquals(SCALAR.dot(a, b, length), simd.dot(a, b, length), "length " + length);
+        }
+    }
+
+    @Test
+    void int8DotHandlesExtremeCodes() {
+        for (int length : LENGTHS) {
+            byte[] min = filled(length, Byte.MIN_VALUE);
+            byte[] max = filled(length, Byte.MAX_VALUE);
+            assertEquals(SCALAR.dot(min, min, length), simd.dot(min, min, length), "length " + length);
+            assertEquals(SCALAR.dot(min, max, length), simd.dot(min, max, length), "length " + length);
+            assertEquals(SCALAR.dot(max, max, length), simd.dot(max, max, length), "length " + length);
+        }
+    }
+
+    @Test
+    void scaleMatchesScalar() {
+        for (int length : LENGTHS) {
+            float[] expected = randomFloats(length);
+            float[] actual = expected.clone();
+            SCALAR.scale(expected, 0.37f);
+            simd.scale(actual, 0.37f);
+            assertArrayEquals(expected, actual, 1e-6f, "length " + length);
+        }
+    }
+
+    /**
+     * SIMD 分通道累加与标量的求和顺序不同，按各项绝对值之和的上界允许舍入误差
+     */
+    private static void assertClose(float expected, float actual, float magnitude, int length) {
+        assertEquals(expected, actual, 1e-5f * Math.max(1, magnitude), "length " + length);
+    }
+
+    private float[] randomFloats(int length) {
+        float[] vector = new float[length];
+        for (int i = 0; i < length; i++) {
+            vector[i] = random.nextFloat() * 2 - 1;
+        }
+        return vector;
+    }
+
+    private byte[] randomCodes(int length) {
+        byte[] codes = new byte[length];
+        random.nextBytes(codes);
+        return codes;
+    }
+
+    private static byte[] filled(int length, byte value) {
+        byte[] codes = new byte[length];
+        Arrays.fill(codes, value);
+        return codes;
+    }
+
+    private static int[] lengths(int from, int to, int... extra) {
+        int[] lengths = new int[to - from + 1 + extra.length];
+        for (int i = from; i <= to; i++) {
+            lengths[i - from] = i;
+        }
+        System.arraycopy(extra, 0, lengths, to - from + 1, extra.length);
+        return lengths;
+    }
+}
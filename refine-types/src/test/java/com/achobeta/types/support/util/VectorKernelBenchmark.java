@@ -0,0 +1,116 @@
+package com.achobeta.types.support.util;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * @Desc : SIMD 与标量内核的耗时对比（手写预热循环，构建中没有 JMH）
+ * <p>
+ * 运行方式（在 refine-types 目录下）：
+ * <pre>
+ * mvn test-compile
+ * java --add-modules jdk.incubator.vector -cp target/classes:target/test-classes \
+ *      com.achobeta.types.support.util.VectorKernelBenchmark [维度] [矩阵行数]
+ * </pre>
+ * 默认 1536 维、20000 行。每项先预热再取多轮平均，结果累加后输出，避免被 JIT 当作死代码消除
+ */
+public class VectorKernelBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+
+    private static final int MEASURE_ROUNDS = 10;
+
+    private static final int TOP_K = 10;
+
+    public static void main(String[] args) {
+        int dimension = args.length > 0 ? Integer.parseInt(args[0]) : 1536;
+        int rows = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+
+        Random random = new Random(42);
+        float[] query = randomFloats(random, dimension);
+        float[] other = randomFloats(random, dimension);
+        byte[] codes = randomCodes(random, dimension);
+        byte[] otherCodes = randomCodes(random, dimension);
+        float[] matrix = randomFloats(random, rows * dimension);
+        int dotIterations = 100_000;
+
+        VectorKernel scalar = new ScalarVectorKernel();
+        VectorKernel simd = new SimdVectorKernel();
+        System.out.printf(Locale.ROOT, "JDK %s  dimension=%d rows=%d  simd=%s%n",
+                Runtime.version(), dimension, rows, simd);
+
+        for (VectorKernel kernel : new VectorKernel[]{scalar, simd}) {
+            report(kernel, "float dot", dotIterations, k -> {
+                double sink = 0;
+                for (int i = 0; i < dotIterations; i++) {
+                    sink += k.dot(query, 0, other, 0, dimension);
+                }
+                return sink;
+            });
+            report(kernel, "float x int8", dotIterations, k -> {
+                double sink = 0;
+                for (int i = 0; i < dotIterations; i++) {
+                    sink += k.dot(query, codes, dimension);
+                }
+                return sink;
+            });
+            report(kernel, "int8 x int8", dotIterations, k -> {
+                double sink = 0;
+                for (int i = 0; i < dotIterations; i++) {
+                    sink += k.dot(codes, otherCodes, dimension);
+                }
+                return sink;
+            });
+            report(kernel, "top-" + TOP_K + " of " + rows, 1, k -> topK(k, query, matrix, dimension, rows));
+        }
+    }
+
+    /**
+     * 与 {@link VectorMath#topK} 相同的逐行点积，只保留 k 个最大分数，内核可替换
+     */
+    private static double topK(VectorKernel kernel, float[] query, float[] matrix, int dimension, int rows) {
+        float[] best = new float[TOP_K];
+        Arrays.fill(best, Float.NEGATIVE_INFINITY);
+        for (int row = 0; row < rows; row++) {
+            float score = kernel.dot(query, 0, matrix, row * dimension, dimension);
+            if (score > best[0]) {
+                best[0] = score;
+                Arrays.sort(best);
+            }
+        }
+        return best[TOP_K - 1];
+    }
+
+    private static void report(VectorKernel kernel, String name, int operations, ToDoubleFunction<VectorKernel> body) {
+        double sink = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            sink += body.applyAsDouble(kernel);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURE_ROUNDS; i++) {
+            sink += body.applyAsDouble(kernel);
+        }
+        double nanos = (double) (System.nanoTime() - start) / MEASURE_ROUNDS / operations;
+        String time = nanos >= 1_000_000 ? String.format(Locale.ROOT, "%.2f ms", nanos / 1_000_000)
+                : nanos >= 1_000 ? String.format(Locale.ROOT, "%.2f us", nanos / 1_000)
+                : String.format(Locale.ROOT, "%.1f ns", nanos);
+        System.out.printf(Locale.ROOT, "%-8s %-20s %12s   (sink %.1f)%n", kernel.toString().startsWith("simd") ? "simd" : "scalar",
+                name, time, sink);
+    }
+
+    private static float[] randomFloats(Random random, int length) {
+        float[] vector = new float[length];
+        for (int i = 0; i < length; i++) {
+            vector[i] = random.nextFloat() * 2 - 1;
+        }
+        return vector;
+    }
+
+    private static byte[] randomCodes(Random random, int length) {
+        byte[] codes = new byte[length];
+        random.nextBytes(codes);
+        return codes;
+    }
+}